@@ -0,0 +1,35 @@
+package no.uio.ifi.trackfind.backend.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Serializable;
+
+/**
+ * Cache key for entries that belong to a particular hub.
+ * Contains ID of the hub's current version, so that entries computed for older versions are never hit again.
+ *
+ * @author Dmytro Titov
+ */
+@Data
+@AllArgsConstructor
+public class HubCacheKey implements Serializable {
+
+    private String repository;
+    private String hub;
+    private Long versionId;
+    private Object parameters;
+
+    /**
+     * Checks whether this key belongs to the specified hub.
+     *
+     * @param repository Repository name.
+     * @param hub        Hub name.
+     * @return true if the key was generated for this hub.
+     */
+    public boolean belongsTo(String repository, String hub) {
+        return StringUtils.equals(this.repository, repository) && StringUtils.equals(this.hub, hub);
+    }
+
+}
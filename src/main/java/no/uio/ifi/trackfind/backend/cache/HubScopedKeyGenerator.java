@@ -0,0 +1,42 @@
+package no.uio.ifi.trackfind.backend.cache;
+
+import no.uio.ifi.trackfind.backend.services.impl.CacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKeyGenerator;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Key generator for methods which take repository and hub names as the first two parameters.
+ * Produces {@link HubCacheKey} instances, so that cache entries can be evicted per hub.
+ *
+ * @author Dmytro Titov
+ */
+@Component("hubScopedKeyGenerator")
+public class HubScopedKeyGenerator implements KeyGenerator {
+
+    private CacheService cacheService;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        if (params.length < 2) {
+            throw new IllegalArgumentException("Method " + method.getName() + " should accept repository and hub names as first parameters");
+        }
+        String repository = String.valueOf(params[0]);
+        String hub = String.valueOf(params[1]);
+        Object parameters = SimpleKeyGenerator.generateKey(Arrays.copyOfRange(params, 2, params.length));
+        return new HubCacheKey(repository, hub, cacheService.getCurrentVersionId(repository, hub), parameters);
+    }
+
+    @Autowired
+    public void setCacheService(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+}
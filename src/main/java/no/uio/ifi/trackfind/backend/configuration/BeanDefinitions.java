@@ -2,17 +2,17 @@ package no.uio.ifi.trackfind.backend.configuration;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.netopyr.coffee4java.CoffeeScriptEngine;
-import com.netopyr.coffee4java.CoffeeScriptEngineFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolExecutorFactoryBean;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.time.Clock;
+import java.util.concurrent.ForkJoinPool;
 
 @Slf4j
 @Configuration
@@ -36,24 +36,86 @@ public class BeanDefinitions {
         return new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().setDateFormat(DATE_FORMAT).create();
     }
 
+    /**
+     * Pool for fetching the data by providers.
+     */
     @Bean
-    public CoffeeScriptEngine coffeeScriptEngine() {
-        return (CoffeeScriptEngine) new CoffeeScriptEngineFactory().getScriptEngine();
+    public ThreadPoolExecutorFactoryBean ingestionPool(@Value("${trackfind.pools.ingestion-size}") int size) {
+        return createPool("ingestion-", size);
     }
 
+    /**
+     * Pool for fetching the data from sources which can't handle many concurrent requests.
+     */
     @Bean
-    public ExecutorService workStealingPool() {
-        return Executors.newWorkStealingPool(10);
+    public ThreadPoolExecutorFactoryBean throttledIngestionPool(@Value("${trackfind.pools.throttled-ingestion-size}") int size) {
+        return createPool("throttled-ingestion-", size);
     }
 
+    /**
+     * Pool for listening to cluster notifications.
+     */
     @Bean
-    public ExecutorService singleThreadExecutor() {
-        return Executors.newSingleThreadExecutor();
+    public ThreadPoolExecutorFactoryBean notificationPool() {
+        return createPool("notification-", 1);
     }
 
+    /**
+     * Pool for dry-running curation off the UI thread.
+     */
     @Bean
-    public ExecutorService fixedThreadPool() {
-        return Executors.newFixedThreadPool(4);
+    public ThreadPoolExecutorFactoryBean dryRunPool() {
+        return createPool("dry-run-", 1);
+    }
+
+    /**
+     * Pool for applying mappings to documents in parallel during curation (size 0 means number of cores).
+     */
+    @Bean
+    public ForkJoinPool curationPool(@Value("${trackfind.pools.curation-size}") int size) {
+        return new ForkJoinPool(size > 0 ? size : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Pool for validating documents in parallel (size 0 means number of cores).
+     */
+    @Bean
+    public ForkJoinPool validationPool(@Value("${trackfind.pools.validation-size}") int size) {
+        return new ForkJoinPool(size > 0 ? size : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Pool for running crawling and curation jobs.
+     */
+    @Bean
+    public ThreadPoolExecutorFactoryBean jobsPool(@Value("${trackfind.jobs.parallelism}") int size) {
+        return createPool("job-", size);
+    }
+
+    /**
+     * Scheduler for delayed (retried) jobs.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler jobsScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("jobs-scheduler-");
+        return scheduler;
+    }
+
+    /**
+     * Clock for scheduling.
+     */
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+
+    private ThreadPoolExecutorFactoryBean createPool(String threadNamePrefix, int size) {
+        ThreadPoolExecutorFactoryBean factoryBean = new ThreadPoolExecutorFactoryBean();
+        factoryBean.setThreadNamePrefix(threadNamePrefix);
+        factoryBean.setCorePoolSize(size);
+        factoryBean.setMaxPoolSize(size);
+        return factoryBean;
     }
 
 }
@@ -0,0 +1,32 @@
+package no.uio.ifi.trackfind.backend.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Structured settings of {@link no.uio.ifi.trackfind.backend.services.impl.JobService}, bound from
+ * <code>trackfind.jobs</code>: unlike map literals, entries can be set from the environment, e.g.
+ * <code>TRACKFIND_JOBS_PROVIDERPARALLELISMOVERRIDES_TRACKHUBREGISTRY=4</code> (keys are matched ignoring case).
+ *
+ * @author Dmytro Titov
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "trackfind.jobs")
+public class JobsProperties {
+
+    /**
+     * Parallelism limits of particular providers, by names.
+     */
+    private Map<String, Integer> providerParallelismOverrides = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    public void setProviderParallelismOverrides(Map<String, Integer> providerParallelismOverrides) {
+        this.providerParallelismOverrides = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.providerParallelismOverrides.putAll(providerParallelismOverrides);
+    }
+
+}
@@ -43,6 +43,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
                 "/login/**",
                 "/curation/**",
                 "/hubs/**",
+                "/jobs/**",
                 "/monitor/**",
                 "/references/**",
                 "/versions/**",
@@ -65,6 +66,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
                         "/actuator/**",
                         "/curation/**",
                         "/hubs/**",
+                        "/jobs/**",
                         "/monitor/**",
                         "/references/**",
                         "/versions/**",
@@ -183,7 +183,7 @@ public class TrackFindController {
             @RequestParam(required = false, defaultValue = "0") long limit) {
         try {
             Collection<SearchResult> datasets = searchService.search(repository, hub, query, Arrays.stream(StringUtils.split(categories, ",")).map(String::trim).collect(Collectors.toSet()), limit).getValue();
-            return ResponseEntity.ok(gSuiteService.apply(datasets, attributes));
+            return ResponseEntity.ok(gSuiteService.apply(repository, hub, datasets, attributes));
         } catch (SQLException e) {
             return ResponseEntity.badRequest().body(null);
         }
@@ -0,0 +1,164 @@
+package no.uio.ifi.trackfind.backend.data;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+/**
+ * Compiled path of the attribute in the (Gson-parsed) JSON document: the string path is parsed once, then the accessor
+ * is reused for every document without string processing. Compiled paths are cached per path string.
+ * Segments are keys of objects or indices of arrays. Reading with {@link #getAll(Object)} also fans out over arrays:
+ * non-index segment applied to an array is applied to every element of it.
+ *
+ * @author Dmytro Titov
+ */
+public final class AttributePath {
+
+    private static final LoadingCache<Pair<String, String>, AttributePath> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .build(
+                    new CacheLoader<Pair<String, String>, AttributePath>() {
+                        public AttributePath load(Pair<String, String> key) {
+                            return new AttributePath(key.getLeft().replace("'", "").split(key.getRight()));
+                        }
+                    });
+
+    private final String[] segments;
+    private final int[] indices;
+
+    private AttributePath(String[] segments) {
+        this.segments = segments;
+        this.indices = new int[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            indices[i] = toIndex(segments[i]);
+        }
+    }
+
+    /**
+     * Compiles attribute path (quotes are stripped, as in SQL paths).
+     *
+     * @param path      Attribute path, e.g. <code>'experiment'->'target'</code>.
+     * @param separator Separator of the segments.
+     * @return Compiled (cached) path.
+     */
+    public static AttributePath compile(String path, String separator) {
+        return CACHE.getUnchecked(Pair.of(path, separator));
+    }
+
+    /**
+     * Creates path from already split segments.
+     *
+     * @param segments Segments.
+     * @return Compiled path.
+     */
+    public static AttributePath of(List<String> segments) {
+        return new AttributePath(segments.toArray(new String[0]));
+    }
+
+    /**
+     * @return Segments of the path.
+     */
+    public List<String> getSegments() {
+        return Collections.unmodifiableList(Arrays.asList(segments));
+    }
+
+    /**
+     * Reads the value at the path.
+     *
+     * @param root Document.
+     * @return Value or null if absent.
+     */
+    public Object get(Object root) {
+        Object current = root;
+        for (int i = 0; i < segments.length && current != null; i++) {
+            current = step(current, i);
+        }
+        return current;
+    }
+
+    /**
+     * Reads all the values at the path, fanning out over arrays. Array values are flattened.
+     *
+     * @param root Document.
+     * @return Values found (nulls are skipped).
+     */
+    public List<Object> getAll(Object root) {
+        List<Object> values = new ArrayList<>();
+        collect(root, 0, values);
+        return values;
+    }
+
+    /**
+     * Writes the value at the path, creating missing intermediate objects.
+     *
+     * @param root  Document.
+     * @param value Value to write.
+     */
+    @SuppressWarnings("unchecked")
+    public void put(Map<String, Object> root, Object value) {
+        Map<String, Object> current = root;
+        for (int i = 0; i < segments.length - 1; i++) {
+            current = (Map<String, Object>) current.computeIfAbsent(segments[i], k -> new HashMap<String, Object>());
+        }
+        current.put(segments[segments.length - 1], value);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void collect(Object current, int i, List<Object> values) {
+        if (current == null) {
+            return;
+        }
+        if (i == segments.length) {
+            if (current instanceof List) {
+                for (Object element : (List) current) {
+                    if (element != null) {
+                        values.add(element);
+                    }
+                }
+            } else {
+                values.add(current);
+            }
+            return;
+        }
+        if (current instanceof List && indices[i] < 0) {
+            for (Object element : (List) current) {
+                collect(element, i, values);
+            }
+            return;
+        }
+        collect(step(current, i), i + 1, values);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Object step(Object current, int i) {
+        if (current instanceof Map) {
+            return ((Map) current).get(segments[i]);
+        }
+        if (current instanceof List) {
+            List list = (List) current;
+            return indices[i] >= 0 && indices[i] < list.size() ? list.get(indices[i]) : null;
+        }
+        return null;
+    }
+
+    private static int toIndex(String segment) {
+        if (segment.isEmpty() || segment.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(segment);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(", ", segments);
+    }
+
+}
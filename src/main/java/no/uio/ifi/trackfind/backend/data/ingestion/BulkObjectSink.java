@@ -0,0 +1,107 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+import no.uio.ifi.trackfind.backend.data.storage.BulkObjectWriter;
+import no.uio.ifi.trackfind.backend.data.storage.CanonicalJson;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sink storing objects of a version using {@link BulkObjectWriter}. Object types are created on the fly,
+ * content is stored in the canonical form (see {@link CanonicalJson}), duplicate objects (within the same object type)
+ * are skipped by the database when the writer merges them.
+ * Thread-safe: objects can be passed from several fetching threads.
+ *
+ * @author Dmytro Titov
+ */
+public class BulkObjectSink implements ObjectSink {
+
+    private final BulkObjectWriter writer;
+    private final long versionId;
+    private final Map<String, Long> objectTypeIds = new HashMap<>();
+
+    public BulkObjectSink(BulkObjectWriter writer, long versionId) {
+        this.writer = writer;
+        this.versionId = versionId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void accept(String objectTypeName, String content) {
+        store(objectTypeName, CanonicalJson.canonicalize(content));
+    }
+
+    /**
+     * Accepts object produced in memory (e.g. by curation).
+     *
+     * @param objectTypeName Name of the object type.
+     * @param value          Content of the object (map).
+     * @return Content hash of the object.
+     */
+    public String acceptValue(String objectTypeName, Object value) {
+        return store(objectTypeName, CanonicalJson.toJson(value));
+    }
+
+    /**
+     * Accepts object which content is already stored (e.g. carried forward from the previous curation).
+     *
+     * @param objectTypeName Name of the object type.
+     * @param contentHash    Hash of the stored document.
+     */
+    public synchronized void acceptExisting(String objectTypeName, String contentHash) {
+        writer.writeExisting(getObjectTypeId(objectTypeName), contentHash);
+    }
+
+    /**
+     * Copies objects of unchanged fetch units from the previous version.
+     *
+     * @param previousVersionId ID of the previous version.
+     * @param fetchUnitIds      IDs of unchanged fetch units.
+     * @return Number of copied objects.
+     */
+    public synchronized int carryForward(long previousVersionId, Collection<Long> fetchUnitIds) {
+        writer.getCarriedObjectTypeNames(previousVersionId, fetchUnitIds).forEach(this::getObjectTypeId);
+        return writer.carryForward(previousVersionId, versionId, fetchUnitIds);
+    }
+
+    /**
+     * Copies staged objects of specified fetch units to the version.
+     *
+     * @param fetchUnitIds IDs of staged fetch units.
+     * @return Number of copied objects.
+     */
+    public synchronized int promote(Collection<Long> fetchUnitIds) {
+        writer.getStagedObjectTypeNames(fetchUnitIds).forEach(this::getObjectTypeId);
+        return writer.promote(versionId, fetchUnitIds);
+    }
+
+    /**
+     * Writes buffered objects (and their documents) to the database, so that they can be referenced.
+     */
+    public synchronized void flush() {
+        writer.flush();
+    }
+
+    /**
+     * @return Names of object types created so far (copy).
+     */
+    public synchronized Set<String> getObjectTypeNames() {
+        return new HashSet<>(objectTypeIds.keySet());
+    }
+
+    private synchronized String store(String objectTypeName, String content) {
+        String contentHash = BulkObjectWriter.hash(content);
+        writer.write(getObjectTypeId(objectTypeName), content, contentHash, null);
+        return contentHash;
+    }
+
+    private long getObjectTypeId(String objectTypeName) {
+        return objectTypeIds.computeIfAbsent(objectTypeName, name -> writer.writeObjectType(versionId, name));
+    }
+
+}
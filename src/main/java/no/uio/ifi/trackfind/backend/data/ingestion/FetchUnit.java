@@ -0,0 +1,30 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Unit of fetching (single remote resource of the hub) with validators of its last fetched state.
+ *
+ * @author Dmytro Titov
+ */
+@Data
+@NoArgsConstructor
+public class FetchUnit {
+
+    private Long id;
+    private String uri;
+    private String etag;
+    private String lastModified;
+
+    /**
+     * Whether the resource is fetched and staged (checkpointed) during the pending crawling.
+     */
+    private volatile boolean staged;
+
+    /**
+     * Whether the resource was reported as not modified (HTTP 304) during the pending crawling.
+     */
+    private volatile boolean unchanged;
+
+}
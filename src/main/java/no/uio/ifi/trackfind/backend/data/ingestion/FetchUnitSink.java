@@ -0,0 +1,26 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+/**
+ * Consumer of raw JSON objects fetched unit by unit (see {@link FetchUnitTask}): every object belongs to some fetch unit.
+ *
+ * @author Dmytro Titov
+ */
+public interface FetchUnitSink {
+
+    /**
+     * Accepts object fetched as a part of the fetch unit.
+     *
+     * @param objectTypeName Name of the object type.
+     * @param content        Raw JSON content of the object.
+     * @param fetchUnitId    ID of the fetch unit.
+     */
+    void accept(String objectTypeName, String content, long fetchUnitId);
+
+    /**
+     * Marks the fetch unit as complete: all its objects are passed to the sink.
+     *
+     * @param fetchUnit Fetch unit.
+     */
+    void checkpoint(FetchUnit fetchUnit);
+
+}
@@ -0,0 +1,74 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.services.impl.HttpService;
+
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Task fetching single unit using conditional GET: if the resource is not modified since the last crawling, it's not downloaded.
+ * Validators (ETag, Last-Modified) of the unit are updated only if the resource is read successfully.
+ * The unit is checkpointed when all its objects are passed to the sink.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+public class FetchUnitTask {
+
+    private final HttpService httpService;
+    private final String provider;
+    private final FetchUnit fetchUnit;
+    private final boolean conditional;
+    private final UnitReader reader;
+
+    /**
+     * @param httpService HTTP client.
+     * @param provider    Name of the provider fetching the unit.
+     * @param fetchUnit   Unit to fetch.
+     * @param conditional Whether to send validators of the previous fetch.
+     * @param reader      Parser of the fetched resource.
+     */
+    public FetchUnitTask(HttpService httpService, String provider, FetchUnit fetchUnit, boolean conditional, UnitReader reader) {
+        this.httpService = httpService;
+        this.provider = provider;
+        this.fetchUnit = fetchUnit;
+        this.conditional = conditional;
+        this.reader = reader;
+    }
+
+    /**
+     * Runs the task.
+     *
+     * @param sink Sink to pass objects (and the checkpoint) of the unit to.
+     * @throws Exception in case of some problems.
+     */
+    public void run(FetchUnitSink sink) throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        if (conditional && fetchUnit.getEtag() != null) {
+            headers.put("If-None-Match", fetchUnit.getEtag());
+        }
+        if (conditional && fetchUnit.getLastModified() != null) {
+            headers.put("If-Modified-Since", fetchUnit.getLastModified());
+        }
+        String etag;
+        String lastModified;
+        try (HttpService.Response response = httpService.get(provider, fetchUnit.getUri(), headers)) {
+            if (response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                log.info("{} is not modified.", fetchUnit.getUri());
+                fetchUnit.setUnchanged(true);
+                sink.checkpoint(fetchUnit);
+                return;
+            }
+            etag = response.getHeader("ETag");
+            lastModified = response.getHeader("Last-Modified");
+            ObjectSink unitSink = (objectTypeName, content) -> sink.accept(objectTypeName, content, fetchUnit.getId());
+            reader.read(fetchUnit.getUri(), response.getBody(), unitSink);
+        }
+        fetchUnit.setEtag(etag);
+        fetchUnit.setLastModified(lastModified);
+        sink.checkpoint(fetchUnit);
+    }
+
+}
@@ -0,0 +1,203 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded ingestion pipeline: fetch tasks run concurrently on the executor and pass parsed objects to a bounded queue,
+ * objects are persisted from the queue by the calling thread (the one holding the transaction).
+ * When the queue is full, fetch tasks are blocked until the persisting stage catches up (back-pressure).
+ * Failure of any task aborts the whole run.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+public class IngestionPipeline {
+
+    private static final long POLLING_TIMEOUT = 100;
+
+    private final String name;
+    private final BlockingQueue<Item> queue;
+    private final MeterRegistry meterRegistry;
+
+    private volatile boolean aborted;
+
+    public IngestionPipeline(String name, int capacity, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs fetch tasks and persists the objects they produce.
+     *
+     * @param executorService Executor to run fetch tasks with.
+     * @param tasks           Fetch tasks.
+     * @param sink            Persisting sink (called from the current thread only).
+     * @throws InterruptedException if the current thread is interrupted.
+     * @throws ExecutionException   if some of the tasks failed.
+     */
+    public void run(ExecutorService executorService, Collection<IngestionTask> tasks, ObjectSink sink) throws InterruptedException, ExecutionException {
+        execute(executorService, tasks.stream().map(task -> (Job) task::run).collect(Collectors.toList()), item -> sink.accept(item.objectTypeName, item.content));
+    }
+
+    /**
+     * Runs fetch unit tasks and persists the objects they produce, along with checkpoints of the units.
+     *
+     * @param executorService Executor to run fetch tasks with.
+     * @param tasks           Fetch unit tasks.
+     * @param sink            Persisting sink (called from the current thread only).
+     * @throws InterruptedException if the current thread is interrupted.
+     * @throws ExecutionException   if some of the tasks failed.
+     */
+    public void run(ExecutorService executorService, Collection<FetchUnitTask> tasks, FetchUnitSink sink) throws InterruptedException, ExecutionException {
+        execute(executorService, tasks.stream().map(task -> (Job) task::run).collect(Collectors.toList()), item -> {
+            if (item.checkpoint != null) {
+                sink.checkpoint(item.checkpoint);
+            } else {
+                sink.accept(item.objectTypeName, item.content, item.fetchUnitId);
+            }
+        });
+    }
+
+    private void execute(ExecutorService executorService, Collection<Job> tasks, ItemSink sink) throws InterruptedException, ExecutionException {
+        Counter fetched = meterRegistry.counter("trackfind.ingestion.objects", "provider", name, "stage", "fetch");
+        Counter persisted = meterRegistry.counter("trackfind.ingestion.objects", "provider", name, "stage", "persist");
+        Timer taskTimer = meterRegistry.timer("trackfind.ingestion.tasks", "provider", name);
+        Gauge queueDepth = Gauge.builder("trackfind.ingestion.queue.depth", queue, Collection::size).tag("provider", name).register(meterRegistry);
+
+        CountDownLatch countDownLatch = new CountDownLatch(tasks.size());
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        QueueSink queueSink = new QueueSink() {
+            @Override
+            public void accept(String objectTypeName, String content) {
+                enqueue(new Item(objectTypeName, content, null, null));
+                fetched.increment();
+            }
+
+            @Override
+            public void accept(String objectTypeName, String content, long fetchUnitId) {
+                enqueue(new Item(objectTypeName, content, fetchUnitId, null));
+                fetched.increment();
+            }
+
+            @Override
+            public void checkpoint(FetchUnit fetchUnit) {
+                // objects of the unit are queued before, so the checkpoint is persisted after them
+                enqueue(new Item(null, null, fetchUnit.getId(), fetchUnit));
+            }
+        };
+        Collection<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Job task : tasks) {
+                futures.add(executorService.submit(() -> {
+                    try {
+                        taskTimer.recordCallable(() -> {
+                            task.run(queueSink);
+                            return null;
+                        });
+                    } catch (CancellationException e) {
+                        log.debug("Task cancelled.");
+                    } catch (Exception e) {
+                        log.error(e.getMessage(), e);
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }));
+            }
+            long total = 0;
+            while ((countDownLatch.getCount() != 0 || !queue.isEmpty()) && failure.get() == null) {
+                Item item = queue.poll(POLLING_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    continue;
+                }
+                sink.persist(item);
+                if (item.checkpoint == null) {
+                    persisted.increment();
+                    total++;
+                }
+            }
+            if (failure.get() != null) {
+                throw new ExecutionException(failure.get());
+            }
+            log.info("{} objects persisted.", total);
+        } finally {
+            if (countDownLatch.getCount() != 0) {
+                aborted = true;
+                futures.forEach(f -> f.cancel(true));
+            }
+            queue.clear();
+            meterRegistry.remove(queueDepth);
+        }
+    }
+
+    private void enqueue(Item item) {
+        try {
+            // not relying on interruption: tasks of ForkJoinPool can't be interrupted by cancellation
+            while (!queue.offer(item, POLLING_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                if (aborted) {
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Sink passing objects (and checkpoints) of the fetching stage to the queue.
+     */
+    private interface QueueSink extends ObjectSink, FetchUnitSink {
+    }
+
+    /**
+     * Fetch task of either kind, running against the queue.
+     */
+    @FunctionalInterface
+    private interface Job {
+
+        void run(QueueSink sink) throws Exception;
+
+    }
+
+    /**
+     * Persisting stage for items taken from the queue.
+     */
+    @FunctionalInterface
+    private interface ItemSink {
+
+        void persist(Item item);
+
+    }
+
+    /**
+     * Object or checkpoint of the fetch unit passed from fetching stage to persisting stage.
+     */
+    private static final class Item {
+
+        private final String objectTypeName;
+        private final String content;
+        private final Long fetchUnitId;
+        private final FetchUnit checkpoint;
+
+        private Item(String objectTypeName, String content, Long fetchUnitId, FetchUnit checkpoint) {
+            this.objectTypeName = objectTypeName;
+            this.content = content;
+            this.fetchUnitId = fetchUnitId;
+            this.checkpoint = checkpoint;
+        }
+
+    }
+
+}
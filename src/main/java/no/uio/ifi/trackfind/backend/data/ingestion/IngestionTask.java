@@ -0,0 +1,19 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+/**
+ * Task fetching data and passing objects to the sink.
+ *
+ * @author Dmytro Titov
+ */
+@FunctionalInterface
+public interface IngestionTask {
+
+    /**
+     * Runs the task.
+     *
+     * @param sink Sink to pass objects to.
+     * @throws Exception in case of some problems.
+     */
+    void run(ObjectSink sink) throws Exception;
+
+}
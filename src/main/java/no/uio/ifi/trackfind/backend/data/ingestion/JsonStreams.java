@@ -0,0 +1,119 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Helpers for pull-based processing of JSON: objects are extracted from the stream one by one,
+ * without building the tree of the whole document.
+ *
+ * @author Dmytro Titov
+ */
+public final class JsonStreams {
+
+    private JsonStreams() {
+    }
+
+    /**
+     * Skips properties of the current object until the property with specified name.
+     *
+     * @param reader JSON reader positioned inside of the object.
+     * @param name   Property name.
+     * @return true if property is found (reader is positioned at its value), false if the end of the object is reached.
+     * @throws IOException in case of malformed JSON.
+     */
+    public static boolean seek(JsonReader reader, String name) throws IOException {
+        while (reader.hasNext()) {
+            if (name.equals(reader.nextName())) {
+                return true;
+            }
+            reader.skipValue();
+        }
+        return false;
+    }
+
+    /**
+     * Reads the next value as raw JSON.
+     *
+     * @param reader JSON reader.
+     * @return Compact JSON.
+     * @throws IOException in case of malformed JSON.
+     */
+    public static String read(JsonReader reader) throws IOException {
+        return read(reader, null, null);
+    }
+
+    /**
+     * Reads the next object as raw JSON, adding an extra property to it.
+     *
+     * @param reader JSON reader.
+     * @param name   Name of the extra property (or null).
+     * @param value  Value of the extra property.
+     * @return Compact JSON.
+     * @throws IOException in case of malformed JSON.
+     */
+    public static String read(JsonReader reader, String name, String value) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(stringWriter)) {
+            if (name != null && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                writer.beginObject();
+                writer.name(name).value(value);
+                copyProperties(reader, writer);
+                reader.endObject();
+                writer.endObject();
+            } else {
+                copy(reader, writer);
+            }
+        }
+        return stringWriter.toString();
+    }
+
+    private static void copy(JsonReader reader, JsonWriter writer) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                writer.beginArray();
+                while (reader.hasNext()) {
+                    copy(reader, writer);
+                }
+                reader.endArray();
+                writer.endArray();
+                break;
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                writer.beginObject();
+                copyProperties(reader, writer);
+                reader.endObject();
+                writer.endObject();
+                break;
+            case STRING:
+                writer.value(reader.nextString());
+                break;
+            case NUMBER:
+                writer.jsonValue(reader.nextString());
+                break;
+            case BOOLEAN:
+                writer.value(reader.nextBoolean());
+                break;
+            case NULL:
+                reader.nextNull();
+                writer.nullValue();
+                break;
+            default:
+                throw new IllegalStateException("Unexpected token: " + reader.peek());
+        }
+    }
+
+    private static void copyProperties(JsonReader reader, JsonWriter writer) throws IOException {
+        while (reader.hasNext()) {
+            writer.name(reader.nextName());
+            copy(reader, writer);
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+/**
+ * Consumer of raw JSON objects produced by data providers.
+ *
+ * @author Dmytro Titov
+ */
+@FunctionalInterface
+public interface ObjectSink {
+
+    /**
+     * Accepts object.
+     *
+     * @param objectTypeName Name of the object type.
+     * @param content        Raw JSON content of the object.
+     */
+    void accept(String objectTypeName, String content);
+
+}
@@ -0,0 +1,39 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+import no.uio.ifi.trackfind.backend.data.storage.BulkObjectWriter;
+import no.uio.ifi.trackfind.backend.data.storage.CanonicalJson;
+
+/**
+ * Sink storing objects of the pending crawling in the staging area, one fetch unit at a time:
+ * objects of the unit become durable when the unit is checkpointed, so that interrupted crawling can be resumed.
+ * Not thread-safe: meant to be used as a persisting stage of {@link IngestionPipeline}.
+ *
+ * @author Dmytro Titov
+ */
+public class StagingSink implements FetchUnitSink {
+
+    private final BulkObjectWriter writer;
+
+    public StagingSink(BulkObjectWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void accept(String objectTypeName, String content, long fetchUnitId) {
+        String canonicalContent = CanonicalJson.canonicalize(content);
+        writer.stage(fetchUnitId, objectTypeName, canonicalContent, BulkObjectWriter.hash(canonicalContent));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void checkpoint(FetchUnit fetchUnit) {
+        writer.checkpoint(fetchUnit.getId(), fetchUnit.isUnchanged(), fetchUnit.getEtag(), fetchUnit.getLastModified());
+        fetchUnit.setStaged(true);
+    }
+
+}
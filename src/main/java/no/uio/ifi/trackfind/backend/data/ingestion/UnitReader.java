@@ -0,0 +1,25 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+import java.io.InputStream;
+
+/**
+ * Parser of a fetched resource.
+ *
+ * @author Dmytro Titov
+ */
+@FunctionalInterface
+public interface UnitReader {
+
+    /**
+     * Parses resource and passes objects to the sink. The reader may close the stream as soon as it's consumed,
+     * e.g. before fetching other resources (connections per host are limited, see
+     * {@link no.uio.ifi.trackfind.backend.services.impl.HttpService}).
+     *
+     * @param uri         URI of the resource.
+     * @param inputStream Content of the resource.
+     * @param sink        Sink to pass objects to.
+     * @throws Exception in case of some problems.
+     */
+    void read(String uri, InputStream inputStream, ObjectSink sink) throws Exception;
+
+}
@@ -1,32 +1,46 @@
 package no.uio.ifi.trackfind.backend.data.providers;
 
-import alexh.weak.Dynamic;
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.gson.Gson;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.data.AttributePath;
+import no.uio.ifi.trackfind.backend.data.ingestion.*;
+import no.uio.ifi.trackfind.backend.data.storage.BulkObjectWriter;
+import no.uio.ifi.trackfind.backend.data.storage.CanonicalJson;
 import no.uio.ifi.trackfind.backend.events.DataReloadEvent;
 import no.uio.ifi.trackfind.backend.operations.Operation;
 import no.uio.ifi.trackfind.backend.pojo.*;
 import no.uio.ifi.trackfind.backend.repositories.*;
 import no.uio.ifi.trackfind.backend.scripting.ScriptingEngine;
 import no.uio.ifi.trackfind.backend.services.impl.CacheService;
+import no.uio.ifi.trackfind.backend.services.impl.CurationFingerprintService;
+import no.uio.ifi.trackfind.backend.services.impl.FetchUnitService;
+import no.uio.ifi.trackfind.backend.services.impl.HttpService;
 import no.uio.ifi.trackfind.backend.services.impl.MetamodelService;
+import no.uio.ifi.trackfind.backend.services.impl.ObjectStorageService;
 import no.uio.ifi.trackfind.backend.services.impl.SchemaService;
 import no.uio.ifi.trackfind.backend.services.impl.SearchService;
+import no.uio.ifi.trackfind.backend.services.impl.SqlCurationService;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -45,20 +59,45 @@ public abstract class AbstractDataProvider implements DataProvider {
     @Value("${trackfind.scripting.language}")
     protected String scriptingLanguage;
 
+    @Value("${trackfind.ingestion.queue-capacity}")
+    protected int ingestionQueueCapacity;
+
+    @Value("${trackfind.curation.chunk-size}")
+    protected int curationChunkSize;
+
+    @Value("${trackfind.curation.push-down}")
+    protected boolean curationPushDown;
+
+    @Value("${trackfind.curation.incremental}")
+    protected boolean curationIncremental;
+
+    @Value("${trackfind.scripting.batch-size}")
+    protected int scriptingBatchSize;
+
+    @Value("${trackfind.curation.dry-run-max-sample-size}")
+    protected int dryRunMaxSampleSize;
+
     protected ApplicationEventPublisher applicationEventPublisher;
     protected MetamodelService metamodelService;
     protected SchemaService schemaService;
     protected CacheService cacheService;
     protected SearchService searchService;
+    protected SqlCurationService sqlCurationService;
+    protected CurationFingerprintService curationFingerprintService;
     protected JdbcTemplate jdbcTemplate;
     protected HubRepository hubRepository;
     protected ObjectTypeRepository objectTypeRepository;
     protected VersionRepository versionRepository;
     protected ObjectRepository objectRepository;
+    protected ObjectStorageService objectStorageService;
+    protected FetchUnitService fetchUnitService;
+    protected HttpService httpService;
     protected ReferenceRepository referenceRepository;
     protected ExecutorService executorService;
+    protected ForkJoinPool curationPool;
     protected Gson gson;
     protected Collection<ScriptingEngine> scriptingEngines;
+    protected MeterRegistry meterRegistry;
 
     /**
      * {@inheritDoc}
@@ -94,57 +133,181 @@ public abstract class AbstractDataProvider implements DataProvider {
     /**
      * {@inheritDoc}
      */
-    @CacheEvict(cacheNames = {
-            "metamodel-array-of-objects-attributes",
-            "metamodel-flat",
-            "metamodel-tree",
-            "metamodel-categories",
-            "metamodel-attributes",
-            "metamodel-attributes-flat",
-            "metamodel-attribute-types",
-            "metamodel-values",
-            "metamodel-references",
-            "metamodel-categories-by-name",
-            "search",
-            "gsuite"
-    }, allEntries = true)
     @Override
-    public synchronized void crawlRemoteRepository(String hubName) {
+    public void crawlRemoteRepository(String hubName) {
         log.info("Fetching data for {}: {}", getName(), hubName);
         try {
             fetchData(hubName);
-            applicationEventPublisher.publishEvent(new DataReloadEvent(getName(), Operation.CRAWLING));
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
-            log.error(e.getMessage(), e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        if (TransactionAspectSupport.currentTransactionStatus().isRollbackOnly()) {
+            log.info("No changes detected for {}: {}", getName(), hubName);
             return;
         }
+        objectStorageService.compact(hubRepository.findByRepositoryAndName(getName(), hubName));
+        applicationEventPublisher.publishEvent(new DataReloadEvent(getName(), hubName, Operation.CRAWLING));
         log.info("Success!");
     }
 
     /**
-     * Saves datasets to the database.
+     * Saves datasets to the database. Nothing is saved if the content is the same as in the previous crawling version.
      *
      * @param hubName Hub name.
      * @param objects Object-type to object map.
      */
     protected void save(String hubName, Map<String, Collection<String>> objects) {
+        Optional<TfVersion> previousVersionOptional = getLatestCrawlingVersion(hubName);
         TfVersion version = createVersion(hubName, Operation.CRAWLING, false);
+        try (BulkObjectWriter writer = objectStorageService.openWriter()) {
+            BulkObjectSink sink = new BulkObjectSink(writer, version.getId());
+            objects.forEach((objectTypeName, objs) -> objs.forEach(obj -> sink.accept(objectTypeName, obj)));
+        }
+        createStandardObjectTypes(version, objects.keySet());
+        rollbackIfUnchanged(previousVersionOptional, version);
+    }
 
-        Set<String> standardObjectTypeNames = new HashSet<>(schemaService.getAttributes().keySet());
-        Collection<TfObject> objectsToSave = new ArrayList<>();
-        for (String objectTypeName : objects.keySet()) {
-            standardObjectTypeNames.remove(objectTypeName);
-            TfObjectType objectType = createObjectType(version, objectTypeName);
-            for (String obj : objects.get(objectTypeName)) {
-                TfObject tfObject = new TfObject();
-                tfObject.setObjectType(objectType);
-                tfObject.setContent(obj);
-                objectsToSave.add(tfObject);
+    /**
+     * Saves datasets to the database in a streaming fashion: objects are written as soon as the task passes them to the sink.
+     * Nothing is saved if the content is the same as in the previous crawling version.
+     *
+     * @param hubName Hub name.
+     * @param task    Task fetching the data.
+     * @throws Exception in case of some problems.
+     */
+    protected void save(String hubName, IngestionTask task) throws Exception {
+        Optional<TfVersion> previousVersionOptional = getLatestCrawlingVersion(hubName);
+        TfVersion version = createVersion(hubName, Operation.CRAWLING, false);
+        Set<String> objectTypeNames;
+        try (BulkObjectWriter writer = objectStorageService.openWriter()) {
+            BulkObjectSink sink = new BulkObjectSink(writer, version.getId());
+            task.run(sink);
+            objectTypeNames = sink.getObjectTypeNames();
+        }
+        createStandardObjectTypes(version, objectTypeNames);
+        rollbackIfUnchanged(previousVersionOptional, version);
+    }
+
+    /**
+     * Saves datasets fetched by several concurrent tasks, using bounded {@link IngestionPipeline}.
+     *
+     * @param hubName Hub name.
+     * @param tasks   Tasks fetching the data.
+     * @throws Exception in case of some problems.
+     */
+    protected void save(String hubName, Collection<IngestionTask> tasks) throws Exception {
+        IngestionPipeline pipeline = new IngestionPipeline(getName(), ingestionQueueCapacity, meterRegistry);
+        save(hubName, sink -> pipeline.run(executorService, tasks, sink));
+    }
+
+    /**
+     * Saves datasets incrementally: resources are fetched using conditional requests, objects of not modified resources
+     * are carried forward from the previous crawling version. If the content turns out to be the same as in the previous
+     * crawling version, the transaction is marked as rollback-only, so no new version is created.
+     * Crawling is resumable: every fetched resource is checkpointed to the staging area, so that after failure (or restart)
+     * only remaining resources are fetched. The version is created only when all the resources are staged.
+     *
+     * @param hubName Hub name.
+     * @param uris    URIs of the resources to fetch.
+     * @param reader  Parser of the fetched resources.
+     * @throws Exception in case of some problems.
+     */
+    protected void saveIncrementally(String hubName, Collection<String> uris, UnitReader reader) throws Exception {
+        TfHub hub = hubRepository.findByRepositoryAndName(getName(), hubName);
+        Optional<TfVersion> previousVersionOptional = getLatestCrawlingVersion(hubName);
+        Collection<FetchUnit> fetchUnits = fetchUnitService.getFetchUnits(hub.getId(), uris);
+        Collection<FetchUnitTask> tasks = fetchUnits
+                .stream()
+                .filter(fu -> !fu.isStaged())
+                .map(fu -> new FetchUnitTask(httpService, getName(), fu, previousVersionOptional.isPresent(), reader))
+                .collect(Collectors.toList());
+        if (tasks.size() < fetchUnits.size()) {
+            log.info("Resuming crawling: {} of {} resources are already staged.", fetchUnits.size() - tasks.size(), fetchUnits.size());
+        }
+        IngestionPipeline pipeline = new IngestionPipeline(getName(), ingestionQueueCapacity, meterRegistry);
+        try (BulkObjectWriter stagingWriter = objectStorageService.openStagingWriter()) {
+            pipeline.run(executorService, tasks, new StagingSink(stagingWriter));
+        }
+        if (!fetchUnits.stream().allMatch(FetchUnit::isStaged)) {
+            throw new IllegalStateException("Not all resources are fetched, crawling can't be finalized.");
+        }
+
+        TfVersion version = createVersion(hubName, Operation.CRAWLING, false);
+        Set<String> objectTypeNames;
+        try (BulkObjectWriter writer = objectStorageService.openWriter()) {
+            BulkObjectSink sink = new BulkObjectSink(writer, version.getId());
+            Collection<Long> modifiedFetchUnitIds = fetchUnits.stream().filter(fu -> !fu.isUnchanged()).map(FetchUnit::getId).collect(Collectors.toList());
+            int promoted = sink.promote(modifiedFetchUnitIds);
+            log.info("{} objects of {} modified resources stored.", promoted, modifiedFetchUnitIds.size());
+            Collection<Long> unchangedFetchUnitIds = fetchUnits.stream().filter(FetchUnit::isUnchanged).map(FetchUnit::getId).collect(Collectors.toList());
+            if (previousVersionOptional.isPresent() && !unchangedFetchUnitIds.isEmpty()) {
+                int carried = sink.carryForward(previousVersionOptional.get().getId(), unchangedFetchUnitIds);
+                log.info("{} objects of {} not modified resources carried forward.", carried, unchangedFetchUnitIds.size());
             }
+            objectTypeNames = sink.getObjectTypeNames();
+        }
+        createStandardObjectTypes(version, objectTypeNames);
+
+        if (rollbackIfUnchanged(previousVersionOptional, version)) {
+            fetchUnitService.commitCheckpointsInNewTransaction(hub.getId());
+        } else {
+            fetchUnitService.commitCheckpoints(hub.getId());
         }
-        // create standard object-types, if not present yet
-        standardObjectTypeNames.forEach(sotn -> objectTypeRepository.save(createObjectType(version, sotn)));
-        objectRepository.saveAll(objectsToSave);
+    }
+
+    /**
+     * Fetches resource using shared HTTP client (with TLS settings of this provider).
+     *
+     * @param uri URI of the resource.
+     * @return Content of the resource (to be closed by the caller).
+     * @throws IOException in case of some problems.
+     */
+    protected InputStream openStream(String uri) throws IOException {
+        return httpService.openStream(getName(), uri);
+    }
+
+    /**
+     * Gets the latest crawling version of the hub.
+     *
+     * @param hubName Hub name.
+     * @return Latest crawling version, if any.
+     */
+    protected Optional<TfVersion> getLatestCrawlingVersion(String hubName) {
+        TfHub hub = hubRepository.findByRepositoryAndName(getName(), hubName);
+        return CollectionUtils.isEmpty(hub.getVersions()) ? Optional.empty() : hub.getVersions()
+                .stream()
+                .filter(v -> Operation.CRAWLING.equals(v.getOperation()))
+                .max(Comparator.comparing(TfVersion::getVersion));
+    }
+
+    /**
+     * Marks the transaction as rollback-only if the crawled content is the same as in the previous crawling version,
+     * so that no new version is created and no reload is triggered.
+     *
+     * @param previousVersionOptional Previous crawling version.
+     * @param version                 New version.
+     * @return true if the content is unchanged.
+     */
+    protected boolean rollbackIfUnchanged(Optional<TfVersion> previousVersionOptional, TfVersion version) {
+        if (previousVersionOptional.isEmpty() || objectStorageService.differs(previousVersionOptional.get().getId(), version.getId())) {
+            return false;
+        }
+        TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        return true;
+    }
+
+    /**
+     * Creates standard object-types, if not present yet.
+     *
+     * @param version         Version.
+     * @param objectTypeNames Names of already existing object-types.
+     */
+    protected void createStandardObjectTypes(TfVersion version, Collection<String> objectTypeNames) {
+        Set<String> standardObjectTypeNames = new HashSet<>(schemaService.getAttributes().keySet());
+        standardObjectTypeNames.removeAll(objectTypeNames);
+        standardObjectTypeNames.forEach(sotn -> createObjectType(version, sotn));
     }
 
     protected TfObjectType createObjectType(TfVersion version, String objectTypeName) {
@@ -182,6 +345,8 @@ public abstract class AbstractDataProvider implements DataProvider {
         if (Operation.CURATION.equals(operation) && currentVersionOptional.isPresent()) {
             newVersion.setBasedOn(currentVersionOptional.get());
         }
+        newVersion.setDelta(newVersion.getBasedOn() != null);
+        newVersion.setMaterialized(!newVersion.getDelta());
 
         newVersion = versionRepository.saveAndFlush(newVersion);
         log.info("New version: {}", newVersion);
@@ -196,118 +361,322 @@ public abstract class AbstractDataProvider implements DataProvider {
     /**
      * {@inheritDoc}
      */
-    @CacheEvict(cacheNames = {
-            "metamodel-array-of-objects-attributes",
-            "metamodel-flat",
-            "metamodel-tree",
-            "metamodel-categories",
-            "metamodel-attributes",
-            "metamodel-attributes-flat",
-            "metamodel-attribute-types",
-            "metamodel-values",
-            "metamodel-references",
-            "metamodel-categories-by-name",
-            "search",
-            "gsuite"
-    }, allEntries = true)
     @Override
-    public synchronized void runCuration(String hubName) {
+    public void runCuration(String hubName) {
         log.info("Curating {} - {}...", getName(), hubName);
         try {
             Collection<TfMapping> mappings = metamodelService.getMappings(getName(), hubName);
-            HashMultimap<TfObjectType, TfMapping> mappingsByCategories = HashMultimap.create();
-            mappings.forEach(m -> mappingsByCategories.put(m.getToObjectType(), m));
-            Collection<SearchResult> allEntries = searchService.search(getName(), hubName, Boolean.TRUE.toString(), Collections.emptySet(), 0).getValue();
-            for (TfMapping mapping : mappings) {
-                if (mapping.getFromObjectType() != null) {
-                    runStaticMappings(allEntries, mapping);
-                } else {
-                    Optional<ScriptingEngine> scriptingEngineOptional = getScriptingEngine();
-                    if (!scriptingEngineOptional.isPresent()) {
-                        log.warn("Scripting engine for {} language is not registered. Skipping mapping: {}", scriptingLanguage, mapping);
-                        continue;
-                    }
-                    ScriptingEngine scriptingEngine = scriptingEngineOptional.get();
-                    runDynamicMappings(allEntries, mapping, scriptingEngine);
+            TfVersion newVersion = createVersion(hubName, Operation.CURATION, false);
+            if (newVersion.getDelta()) {
+                objectStorageService.createKeptObjects();
+            }
+            if (curationPushDown && newVersion.getDelta() && sqlCurationService.isEligible(mappings)) {
+                sqlCurationService.run(getName(), hubName, newVersion, mappings);
+            } else {
+                long[] counts = new long[3];
+                boolean incremental = curationIncremental && newVersion.getDelta();
+                String chainFingerprint = incremental ? curationFingerprintService.getChainFingerprint(mappings) : null;
+                Optional<Long> previousVersionId = incremental ? curationFingerprintService.getPreviousVersionId(newVersion) : Optional.empty();
+                try (BulkObjectWriter writer = objectStorageService.openWriter()) {
+                    BulkObjectSink sink = new BulkObjectSink(writer, newVersion.getId());
+                    searchService.stream(getName(), hubName, Boolean.TRUE.toString(), Collections.emptySet(), curationChunkSize, originalEntries -> {
+                        if (incremental) {
+                            curateIncrementally(originalEntries, mappings, chainFingerprint, previousVersionId, newVersion, sink, counts);
+                        } else {
+                            List<SearchResult> mappedEntries = originalEntries.stream().map(this::copy).collect(Collectors.toList());
+                            runMappings(mappedEntries, mappings);
+                            storeMappedObjects(originalEntries, mappedEntries, newVersion, sink, counts, null);
+                        }
+                    });
+                }
+                if (incremental) {
+                    curationFingerprintService.prune(newVersion);
                 }
+                log.info("{} objects kept, {} objects changed or added, {} entries carried forward from the previous curation.", counts[0], counts[1], counts[2]);
             }
-            TfVersion newVersion = createVersion(hubName, Operation.CURATION, false);
-            storeMappedObjects(allEntries, newVersion);
-            applicationEventPublisher.publishEvent(new DataReloadEvent(hubName, Operation.CURATION));
+            if (newVersion.getDelta()) {
+                int removed = objectStorageService.storeRemovals(newVersion.getId(), newVersion.getBasedOn().getId());
+                log.info("{} objects removed.", removed);
+                objectStorageService.materialize(newVersion);
+            }
+            // the previous version is compacted only now: it's the base the curation has been reading and diffing against
+            objectStorageService.compact(newVersion.getHub());
+            applicationEventPublisher.publishEvent(new DataReloadEvent(getName(), hubName, Operation.CURATION));
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            return;
+            throw new RuntimeException(e.getMessage(), e);
         }
         log.info("Success!");
     }
 
-    protected void storeMappedObjects(Collection<SearchResult> allEntries, TfVersion newVersion) {
-        List<TfObjectType> objectTypes = new ArrayList<>();
-        List<TfObject> objectsToSave = allEntries.stream().map(entry -> {
-            List<TfObject> result = new ArrayList<>();
-            for (String objectTypeName : entry.getContent().keySet()) {
-                TfObjectType objectType = objectTypes.stream().filter(ot -> ot.getName().equalsIgnoreCase(objectTypeName)).findAny().orElse(null);
-                if (objectType == null) {
-                    objectType = createObjectType(newVersion, objectTypeName);
-                    objectTypes.add(objectType);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CurationReport dryRunCuration(String hubName, int sampleSize) {
+        sampleSize = Math.min(sampleSize, dryRunMaxSampleSize);
+        log.info("Dry-running curation of {} - {} on {} entries...", getName(), hubName, sampleSize);
+        try {
+            List<SearchResult> entries = searchService.sample(getName(), hubName, sampleSize);
+            int totalEntries = searchService.count(getName(), hubName, Boolean.TRUE.toString(), Collections.emptySet());
+            CurationReport report = new CurationReport(entries.size(), totalEntries, curationPool.getParallelism());
+            ScriptingEngine scriptingEngine = getScriptingEngine().orElse(null);
+            List<List<SearchResult>> batches = Lists.partition(entries, scriptingBatchSize);
+            for (TfMapping mapping : getApplicableMappings(metamodelService.getMappings(getName(), hubName), scriptingEngine)) {
+                List<Map<String, Object>> attributesBefore = entries.stream().map(e -> flatten(e.getContent())).collect(Collectors.toList());
+                long start = System.nanoTime();
+                for (List<SearchResult> batch : batches) {
+                    runMapping(batch, mapping, scriptingEngine);
                 }
-                TfObject tfObject = new TfObject();
-                tfObject.setObjectType(objectType);
-                tfObject.setContent(gson.toJson(entry.getContent().get(objectTypeName)));
-                result.add(tfObject);
+                long nanos = System.nanoTime() - start;
+                long changedAttributes = 0;
+                for (int i = 0; i < entries.size(); i++) {
+                    Map<String, Object> before = attributesBefore.get(i);
+                    Map<String, Object> after = flatten(entries.get(i).getContent());
+                    Set<String> paths = new HashSet<>(before.keySet());
+                    paths.addAll(after.keySet());
+                    changedAttributes += paths.stream().filter(p -> !Objects.equals(before.get(p), after.get(p))).count();
+                }
+                report.add(mapping, nanos, changedAttributes);
             }
-            return result;
-        }).flatMap(List::stream).collect(Collectors.toList());
-        objectRepository.saveAll(objectsToSave);
+            log.info("Dry-run finished: estimated curation time is {} ms.", report.getEstimatedMillis());
+            return report;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    protected void runStaticMappings(Collection<SearchResult> allEntries, TfMapping mapping) {
-        for (SearchResult entry : allEntries) {
-            String fromObjectTypeName = mapping.getFromObjectType().getName();
-            String toObjectTypeName = mapping.getToObjectType().getName();
-            Collection<String> values;
-            Dynamic dynamicValues = Dynamic
-                    .from(entry.getContent())
-                    .get(fromObjectTypeName + separator + mapping.getFromAttribute().replace("'", ""), separator);
-            if (dynamicValues.isPresent()) {
-                if (dynamicValues.isList()) {
-                    values = dynamicValues.asList();
+    @SuppressWarnings("rawtypes")
+    private Map<String, Object> flatten(Map<String, Map> content) {
+        Map<String, Object> attributes = new HashMap<>();
+        content.forEach((objectTypeName, object) -> flatten(objectTypeName, object, attributes));
+        return attributes;
+    }
+
+    private void flatten(String path, Object value, Map<String, Object> attributes) {
+        if (value instanceof Map) {
+            ((Map<?, ?>) value).forEach((key, nestedValue) -> flatten(path + separator + key, nestedValue, attributes));
+        } else {
+            attributes.put(path, value);
+        }
+    }
+
+    /**
+     * Stores chunk of curation results. Delta version only gets objects changed (or added) by mappings, objects kept
+     * unchanged are recorded to be inherited from the base version, the rest are recorded as removed at the end of the curation.
+     *
+     * @param originalEntries Entries before the curation.
+     * @param mappedEntries   Entries after the curation (in the same order).
+     * @param newVersion      Curation version.
+     * @param sink            Sink writing objects to the curation version.
+     * @param counts          Counters of kept and stored objects.
+     * @param outputs         List to collect outputs of the entries to (content hashes of stored objects by object
+     *                        type names, null for kept objects), or null.
+     */
+    @SuppressWarnings("rawtypes")
+    protected void storeMappedObjects(List<SearchResult> originalEntries, List<SearchResult> mappedEntries, TfVersion newVersion, BulkObjectSink sink, long[] counts,
+                                      List<Map<String, String>> outputs) {
+        Set<Long> keptIds = new HashSet<>();
+        for (int i = 0; i < mappedEntries.size(); i++) {
+            SearchResult original = originalEntries.get(i);
+            SearchResult mapped = mappedEntries.get(i);
+            Map<String, String> output = new HashMap<>();
+            for (Map.Entry<String, Map> object : mapped.getContent().entrySet()) {
+                Long id = original.getIds().get(object.getKey());
+                if (newVersion.getDelta() && id != null && object.getValue().equals(original.getContent().get(object.getKey()))) {
+                    keptIds.add(id);
+                    output.put(object.getKey(), null);
                 } else {
-                    values = Collections.singletonList(dynamicValues.asString());
+                    output.put(object.getKey(), sink.acceptValue(object.getKey(), object.getValue()));
+                    counts[1]++;
                 }
-            } else {
-                values = Collections.emptyList();
             }
-            String[] path = mapping.getToAttribute().replace("'", "").split(separator);
-            putValueByPath(entry.getContent().computeIfAbsent(toObjectTypeName, k -> new HashMap<String, Object>()), path, values);
+            if (outputs != null) {
+                outputs.add(output);
+            }
+        }
+        if (newVersion.getDelta()) {
+            objectStorageService.keep(keptIds);
+        }
+        counts[0] += keptIds.size();
+    }
+
+    /**
+     * Curates chunk of entries incrementally: entries which fingerprints (see {@link CurationFingerprintService}) are
+     * recorded by the previous curation get the recorded outputs, without running the mappings; the rest is mapped as usual.
+     * Outputs of all the entries are recorded for the next curation.
+     *
+     * @param originalEntries   Entries before the curation.
+     * @param mappings          Mappings in order of application.
+     * @param chainFingerprint  Fingerprint of the mapping chain.
+     * @param previousVersionId ID of the previous curation version with recorded fingerprints, if any.
+     * @param newVersion        Curation version.
+     * @param sink              Sink writing objects to the curation version.
+     * @param counts            Counters of kept and stored objects and of carried forward entries.
+     * @throws Exception in case some mapping fails.
+     */
+    protected void curateIncrementally(List<SearchResult> originalEntries, Collection<TfMapping> mappings, String chainFingerprint,
+                                       Optional<Long> previousVersionId, TfVersion newVersion, BulkObjectSink sink, long[] counts) throws Exception {
+        List<String> fingerprints = curationFingerprintService.getEntryFingerprints(chainFingerprint, originalEntries, mappings, separator);
+        Map<String, Map<String, String>> previousOutputs = previousVersionId.isPresent()
+                ? curationFingerprintService.find(previousVersionId.get(), fingerprints)
+                : Collections.emptyMap();
+        boolean dynamic = curationFingerprintService.isDynamic(mappings);
+        Map<String, Map<String, String>> outputs = new HashMap<>();
+        List<SearchResult> changedEntries = new ArrayList<>();
+        List<String> changedFingerprints = new ArrayList<>();
+        Set<Long> keptIds = new HashSet<>();
+        for (int i = 0; i < originalEntries.size(); i++) {
+            SearchResult original = originalEntries.get(i);
+            Map<String, String> previousOutput = previousOutputs.get(fingerprints.get(i));
+            if (previousOutput == null) {
+                changedEntries.add(original);
+                changedFingerprints.add(fingerprints.get(i));
+                continue;
+            }
+            // static mappings keep objects they don't write, dynamic ones are fingerprinted (and recorded) as a whole
+            original.getIds().forEach((objectTypeName, id) -> {
+                if (previousOutput.containsKey(objectTypeName) ? previousOutput.get(objectTypeName) == null : !dynamic) {
+                    keptIds.add(id);
+                }
+            });
+            previousOutput.forEach((objectTypeName, contentHash) -> {
+                if (contentHash != null) {
+                    sink.acceptExisting(objectTypeName, contentHash);
+                    counts[1]++;
+                }
+            });
+            outputs.put(fingerprints.get(i), previousOutput);
+            counts[2]++;
+        }
+        objectStorageService.keep(keptIds);
+        counts[0] += keptIds.size();
+
+        List<SearchResult> mappedEntries = changedEntries.stream().map(this::copy).collect(Collectors.toList());
+        runMappings(mappedEntries, mappings);
+        List<Map<String, String>> mappedOutputs = new ArrayList<>();
+        storeMappedObjects(changedEntries, mappedEntries, newVersion, sink, counts, mappedOutputs);
+        Set<String> targets = curationFingerprintService.getTargets(mappings);
+        for (int i = 0; i < mappedOutputs.size(); i++) {
+            Map<String, String> output = mappedOutputs.get(i);
+            if (!dynamic) {
+                output.keySet().retainAll(targets);
+            }
+            outputs.put(changedFingerprints.get(i), output);
         }
+        // recorded outputs reference documents, which may still be buffered by the writer
+        sink.flush();
+        curationFingerprintService.store(newVersion.getId(), outputs);
     }
 
     @SuppressWarnings("unchecked")
-    protected void runDynamicMappings(Collection<SearchResult> allEntries, TfMapping mapping, ScriptingEngine scriptingEngine) throws Exception {
-        for (SearchResult entry : allEntries) {
-            String jsonContent = gson.toJson(entry.getContent());
-            String scriptResults = scriptingEngine.execute(mapping.getScript(), jsonContent);
-            entry.setContent(gson.fromJson(scriptResults, Map.class));
+    protected SearchResult copy(SearchResult entry) {
+        SearchResult copy = new SearchResult();
+        copy.setContent(gson.fromJson(gson.toJson(entry.getContent()), Map.class));
+        copy.getIds().putAll(entry.getIds());
+        return copy;
+    }
+
+    /**
+     * Runs mappings over the entries in parallel (using curation pool). Entries are split into batches, every batch is
+     * processed by a single thread, applying all the mappings in their order: static mappings entry by entry,
+     * dynamic mappings with one call to the scripting engine per batch.
+     *
+     * @param allEntries Entries to map (modified in place).
+     * @param mappings   Mappings in order of application.
+     * @throws Exception in case some mapping fails.
+     */
+    protected void runMappings(List<SearchResult> allEntries, Collection<TfMapping> mappings) throws Exception {
+        ScriptingEngine scriptingEngine = getScriptingEngine().orElse(null);
+        List<TfMapping> applicableMappings = getApplicableMappings(mappings, scriptingEngine);
+        if (applicableMappings.isEmpty()) {
+            return;
+        }
+        try {
+            curationPool.submit(() -> Lists.partition(allEntries, scriptingBatchSize).parallelStream().forEach(batch -> {
+                try {
+                    for (TfMapping mapping : applicableMappings) {
+                        runMapping(batch, mapping, scriptingEngine);
+                    }
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            })).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
         }
     }
 
-    protected Optional<ScriptingEngine> getScriptingEngine() {
-        return scriptingEngines.stream().filter(se -> StringUtils.equals(scriptingLanguage, se.getLanguage())).findAny();
+    /**
+     * Filters out dynamic mappings if there's no scripting engine for the configured language.
+     *
+     * @param mappings        Mappings in order of application.
+     * @param scriptingEngine Scripting engine or null.
+     * @return Mappings which can be run.
+     */
+    protected List<TfMapping> getApplicableMappings(Collection<TfMapping> mappings, ScriptingEngine scriptingEngine) {
+        List<TfMapping> applicableMappings = new ArrayList<>();
+        for (TfMapping mapping : mappings) {
+            if (mapping.getFromObjectType() == null && scriptingEngine == null) {
+                log.warn("Scripting engine for {} language is not registered. Skipping mapping: {}", scriptingLanguage, mapping);
+            } else {
+                applicableMappings.add(mapping);
+            }
+        }
+        return applicableMappings;
     }
 
-    @SuppressWarnings("unchecked")
-    private void putValueByPath(Map<String, Object> standardMap, String[] path, Collection<String> values) {
-        Map<String, Object> nestedMap = standardMap;
-        for (int i = 0; i < path.length - 1; i++) {
-            nestedMap = (Map<String, Object>) nestedMap.computeIfAbsent(path[i], k -> new HashMap<String, Object>());
+    /**
+     * Applies single mapping to the batch of entries.
+     *
+     * @param batch           Entries (modified in place).
+     * @param mapping         Mapping.
+     * @param scriptingEngine Scripting engine (for dynamic mappings).
+     * @throws Exception in case the mapping fails.
+     */
+    protected void runMapping(List<SearchResult> batch, TfMapping mapping, ScriptingEngine scriptingEngine) throws Exception {
+        if (mapping.getFromObjectType() != null) {
+            AttributePath fromPath = AttributePath.compile(mapping.getFromAttribute(), separator);
+            AttributePath toPath = AttributePath.compile(mapping.getToAttribute(), separator);
+            batch.forEach(entry -> runStaticMapping(entry, mapping, fromPath, toPath));
+        } else {
+            runDynamicMappings(batch, mapping, scriptingEngine);
         }
-        if (CollectionUtils.size(values) == 1) {
-            nestedMap.put(path[path.length - 1], values.iterator().next());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected void runStaticMapping(SearchResult entry, TfMapping mapping, AttributePath fromPath, AttributePath toPath) {
+        Object value = fromPath.get(entry.getContent().get(mapping.getFromObjectType().getName()));
+        Collection<Object> values;
+        if (value == null) {
+            values = Collections.emptyList();
+        } else if (value instanceof List) {
+            values = (List) value;
         } else {
-            nestedMap.put(path[path.length - 1], values);
+            values = Collections.singletonList(CanonicalJson.toText(value));
         }
+        Map<String, Object> target = entry.getContent().computeIfAbsent(mapping.getToObjectType().getName(), k -> new HashMap<String, Object>());
+        toPath.put(target, values.size() == 1 ? values.iterator().next() : values);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void runDynamicMappings(List<SearchResult> entries, TfMapping mapping, ScriptingEngine scriptingEngine) throws Exception {
+        List<String> jsonContents = entries.stream().map(e -> gson.toJson(e.getContent())).collect(Collectors.toList());
+        List<String> scriptResults = scriptingEngine.executeBatch(mapping.getScript(), jsonContents);
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).setContent(gson.fromJson(scriptResults.get(i), Map.class));
+        }
+    }
+
+    protected Optional<ScriptingEngine> getScriptingEngine() {
+        return scriptingEngines.stream().filter(se -> StringUtils.equals(scriptingLanguage, se.getLanguage())).findAny();
     }
 
     @Autowired
@@ -335,6 +704,16 @@ public abstract class AbstractDataProvider implements DataProvider {
         this.searchService = searchService;
     }
 
+    @Autowired
+    public void setSqlCurationService(SqlCurationService sqlCurationService) {
+        this.sqlCurationService = sqlCurationService;
+    }
+
+    @Autowired
+    public void setCurationFingerprintService(CurationFingerprintService curationFingerprintService) {
+        this.curationFingerprintService = curationFingerprintService;
+    }
+
     @Autowired
     public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
@@ -360,14 +739,34 @@ public abstract class AbstractDataProvider implements DataProvider {
         this.objectRepository = objectRepository;
     }
 
+    @Autowired
+    public void setObjectStorageService(ObjectStorageService objectStorageService) {
+        this.objectStorageService = objectStorageService;
+    }
+
+    @Autowired
+    public void setFetchUnitService(FetchUnitService fetchUnitService) {
+        this.fetchUnitService = fetchUnitService;
+    }
+
+    @Autowired
+    public void setHttpService(HttpService httpService) {
+        this.httpService = httpService;
+    }
+
     @Autowired
     public void setReferenceRepository(ReferenceRepository referenceRepository) {
         this.referenceRepository = referenceRepository;
     }
 
     @Autowired
-    public void setExecutorService(ExecutorService workStealingPool) {
-        this.executorService = workStealingPool;
+    public void setExecutorService(ExecutorService ingestionPool) {
+        this.executorService = ingestionPool;
+    }
+
+    @Autowired
+    public void setCurationPool(ForkJoinPool curationPool) {
+        this.curationPool = curationPool;
     }
 
     @Autowired
@@ -380,4 +779,9 @@ public abstract class AbstractDataProvider implements DataProvider {
         this.scriptingEngines = scriptingEngines;
     }
 
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
 }
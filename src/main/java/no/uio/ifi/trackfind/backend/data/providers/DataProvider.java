@@ -1,5 +1,6 @@
 package no.uio.ifi.trackfind.backend.data.providers;
 
+import no.uio.ifi.trackfind.backend.pojo.CurationReport;
 import no.uio.ifi.trackfind.backend.pojo.TfHub;
 
 import java.util.Collection;
@@ -42,6 +43,7 @@ public interface DataProvider {
 
     /**
      * Re-fetches data, rebuilds index.
+     * Not meant to be run concurrently for the same hub: use {@link no.uio.ifi.trackfind.backend.services.impl.JobService}.
      *
      * @param hubName TfHub name.
      */
@@ -49,9 +51,19 @@ public interface DataProvider {
 
     /**
      * Applies attributes mappings, rebuilds index.
+     * Not meant to be run concurrently for the same hub: use {@link no.uio.ifi.trackfind.backend.services.impl.JobService}.
      *
      * @param hubName TfHub name.
      */
     void runCuration(String hubName);
 
+    /**
+     * Applies attributes mappings to a random sample of entries, without storing the results.
+     *
+     * @param hubName    TfHub name.
+     * @param sampleSize Number of entries to sample, positive and capped by <code>trackfind.curation.dry-run-max-sample-size</code>.
+     * @return Timing and impact of every mapping.
+     */
+    CurationReport dryRunCuration(String hubName, int sampleSize);
+
 }
@@ -1,17 +1,17 @@
 package no.uio.ifi.trackfind.backend.data.providers.blueprint;
 
-import com.google.common.collect.HashMultimap;
+import com.google.gson.stream.JsonReader;
 import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.data.ingestion.JsonStreams;
 import no.uio.ifi.trackfind.backend.data.providers.AbstractDataProvider;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * Draft of Data Provider for Blueprint (TrackHubRegistry).
@@ -23,6 +23,9 @@ import java.util.Map;
 @Transactional
 public class BlueprintDataProvider extends AbstractDataProvider {
 
+    private static final Collection<String> ARRAY_CATEGORIES = Arrays.asList("studies", "experiments", "samples", "tracks");
+    private static final Collection<String> OBJECT_CATEGORIES = Arrays.asList("doc_info", "collection_info");
+
     /**
      * {@inheritDoc}
      */
@@ -34,25 +37,27 @@ public class BlueprintDataProvider extends AbstractDataProvider {
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("rawtypes")
     @Override
-    protected void fetchData(String hubName) {
-        HashMultimap<String, String> mapToSave = HashMultimap.create();
-        try (InputStream inputStream = new URL(getFetchURI(hubName)).openStream();
-             InputStreamReader reader = new InputStreamReader(inputStream)) {
-            Map topMap = gson.fromJson(reader, Map.class);
-            for (String category : Arrays.asList("studies", "experiments", "samples", "tracks")) {
-                List objects = (List) topMap.get(category);
-                for (Object object : objects) {
-                    mapToSave.put(category, gson.toJson(object));
+    protected void fetchData(String hubName) throws Exception {
+        saveIncrementally(hubName, Collections.singleton(getFetchURI(hubName)), (uri, inputStream, sink) -> {
+            try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String category = reader.nextName();
+                    if (ARRAY_CATEGORIES.contains(category)) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            sink.accept(category, JsonStreams.read(reader));
+                        }
+                        reader.endArray();
+                    } else if (OBJECT_CATEGORIES.contains(category)) {
+                        sink.accept(category, JsonStreams.read(reader));
+                    } else {
+                        reader.skipValue();
+                    }
                 }
             }
-            mapToSave.put("doc_info", gson.toJson(topMap.get("doc_info")));
-            mapToSave.put("collection_info", gson.toJson(topMap.get("collection_info")));
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-        }
-        save(hubName, mapToSave.asMap());
+        });
     }
 
 }
@@ -1,18 +1,18 @@
 package no.uio.ifi.trackfind.backend.data.providers.encode;
 
-import com.google.common.collect.HashMultimap;
+import com.google.gson.stream.JsonReader;
 import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.data.ingestion.JsonStreams;
 import no.uio.ifi.trackfind.backend.data.providers.AbstractDataProvider;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
 
 /**
  * Data Provider for ENCODE.
@@ -40,31 +40,24 @@ public class ENCODEDataProvider extends AbstractDataProvider {
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
-    protected void fetchData(String hubName) throws InterruptedException {
-        CountDownLatch countDownLatch = new CountDownLatch(AVAILABLE_TYPES.size());
-        HashMultimap<String, String> mapToSave = HashMultimap.create();
-        for (String type : AVAILABLE_TYPES) {
-            executorService.submit(() -> {
-                try (InputStream inputStream = new URL(String.format(getFetchURI(hubName), type)).openStream();
-                     InputStreamReader reader = new InputStreamReader(inputStream)) {
-                    log.info("Processing type: {}", type);
-                    Map all = gson.fromJson(reader, Map.class);
-                    Collection<Map> objects = (Collection<Map>) all.get("@graph");
-                    for (Map object : objects) {
-                        mapToSave.put(hubName + "_" + type, gson.toJson(object));
+    protected void fetchData(String hubName) throws Exception {
+        Map<String, String> typesByURIs = AVAILABLE_TYPES.stream().collect(Collectors.toMap(type -> String.format(getFetchURI(hubName), type), type -> type));
+        saveIncrementally(hubName, typesByURIs.keySet(), (uri, inputStream, sink) -> {
+            String type = typesByURIs.get(uri);
+            try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                log.info("Processing type: {}", type);
+                reader.beginObject();
+                if (JsonStreams.seek(reader, "@graph")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        sink.accept(hubName + "_" + type, JsonStreams.read(reader));
                     }
-                    log.info("{} processed", type);
-                } catch (Exception e) {
-                    log.error(e.getMessage(), e);
-                } finally {
-                    countDownLatch.countDown();
+                    reader.endArray();
                 }
-            });
-        }
-        countDownLatch.await();
-        save(hubName, mapToSave.asMap());
+                log.info("{} processed", type);
+            }
+        });
     }
 
 }
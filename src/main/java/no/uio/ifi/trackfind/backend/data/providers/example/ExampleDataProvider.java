@@ -8,7 +8,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -37,7 +36,7 @@ public class ExampleDataProvider extends AbstractDataProvider {
     @Override
     protected void fetchData(String hubName) {
         HashMultimap<String, String> mapToSave = HashMultimap.create();
-        try (InputStream inputStream = new URL(getFetchURI(hubName)).openStream();
+        try (InputStream inputStream = openStream(getFetchURI(hubName));
              InputStreamReader reader = new InputStreamReader(inputStream)) {
             Map topMap = gson.fromJson(reader, Map.class);
             for (String category : Arrays.asList("studies", "experiments", "samples", "tracks")) {
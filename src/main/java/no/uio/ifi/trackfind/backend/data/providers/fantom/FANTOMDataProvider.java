@@ -1,6 +1,6 @@
 package no.uio.ifi.trackfind.backend.data.providers.fantom;
 
-import com.google.common.collect.HashMultimap;
+import com.google.gson.stream.JsonWriter;
 import lombok.extern.slf4j.Slf4j;
 import no.uio.ifi.trackfind.backend.data.providers.AbstractDataProvider;
 import org.apache.commons.csv.CSVFormat;
@@ -12,12 +12,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.net.URL;
+import java.io.*;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
@@ -46,50 +42,37 @@ public class FANTOMDataProvider extends AbstractDataProvider {
     protected void fetchData(String hubName) throws Exception {
         log.info("Collecting directories...");
         String fetchURI = getFetchURI(hubName);
-        Document root = Jsoup.parse(new URL(fetchURI), 10000);
-        Set<String> dirs = root.getElementsByTag("a").parallelStream().map(e -> e.attr("href")).filter(s -> s.contains(".") && s.endsWith("/")).collect(Collectors.toSet());
+        Document root;
+        try (InputStream inputStream = openStream(fetchURI)) {
+            root = Jsoup.parse(inputStream, null, fetchURI);
+        }
+        Set<String> dirs = root.getElementsByTag("a").parallelStream().map(e -> e.attr("href")).filter(s -> s.contains(".") && s.endsWith("/")).map(dir -> fetchURI + dir).collect(Collectors.toSet());
         int size = dirs.size();
         log.info(size + " directories to process");
-        CountDownLatch countDownLatch = new CountDownLatch(size);
-        Collection<Map> allTracks = new HashSet<>();
-        for (String dir : dirs) {
-            executorService.submit(() -> {
-                try {
-                    Document folder = Jsoup.parse(new URL(fetchURI + dir), 10000);
-                    Set<String> allFiles = folder.getElementsByTag("a").parallelStream().map(e -> e.attr("href")).collect(Collectors.toSet());
-                    Optional<String> metadataFileOptional = allFiles.parallelStream().filter(s -> s.endsWith("_sdrf.txt")).findAny();
-                    if (!metadataFileOptional.isPresent()) {
-                        return;
-                    }
-                    URL url = new URL(fetchURI + dir + metadataFileOptional.get());
-                    try (InputStream inputStream = url.openStream();
-                         Reader reader = new InputStreamReader(inputStream);
-                         CSVParser parser = new CSVParser(reader, CSVFormat.newFormat('\t').withSkipHeaderRecord())) {
-                        List<CSVRecord> records = parser.getRecords();
-                        Iterator<CSVRecord> recordIterator = records.iterator();
-                        CSVRecord header = recordIterator.next();
-                        String[] attributes = parseAttributes(header);
-                        while (recordIterator.hasNext()) {
-                            Map<String, Object> map = new HashMap<>();
-                            CSVRecord next = recordIterator.next();
-                            for (int i = 0; i < attributes.length; i++) {
-                                map.put(attributes[i], next.get(i));
-                            }
-                            allTracks.add(map);
-                        }
-                        log.info("Directory " + dir + " processed.");
-                    }
-                } catch (Exception e) {
-                    log.error(e.getMessage(), e);
-                } finally {
-                    countDownLatch.countDown();
+        saveIncrementally(hubName, dirs, (dir, inputStream, sink) -> {
+            Document folder = Jsoup.parse(inputStream, null, dir);
+            // the listing is parsed completely: its connection is released before fetching the metadata from the same host
+            inputStream.close();
+            Set<String> allFiles = folder.getElementsByTag("a").parallelStream().map(e -> e.attr("href")).collect(Collectors.toSet());
+            Optional<String> metadataFileOptional = allFiles.parallelStream().filter(s -> s.endsWith("_sdrf.txt")).findAny();
+            if (!metadataFileOptional.isPresent()) {
+                return;
+            }
+            try (InputStream metadataInputStream = openStream(dir + metadataFileOptional.get());
+                 Reader reader = new InputStreamReader(metadataInputStream);
+                 CSVParser parser = new CSVParser(reader, CSVFormat.newFormat('\t').withSkipHeaderRecord())) {
+                Iterator<CSVRecord> recordIterator = parser.iterator();
+                if (!recordIterator.hasNext()) {
+                    return;
                 }
-            });
-        }
-        countDownLatch.await();
-        HashMultimap<String, String> mapToSave = HashMultimap.create();
-        allTracks.stream().map(t -> gson.toJson(t)).forEach(t -> mapToSave.put(hubName + "_tracks", t));
-        save(hubName, mapToSave.asMap());
+                String[] attributes = parseAttributes(recordIterator.next());
+                int[] columns = getDistinctColumns(attributes);
+                while (recordIterator.hasNext()) {
+                    sink.accept(hubName + "_tracks", toJson(attributes, columns, recordIterator.next()));
+                }
+                log.info("Directory " + dir + " processed.");
+            }
+        });
         log.info(size + " releases stored.");
     }
 
@@ -107,10 +90,45 @@ public class FANTOMDataProvider extends AbstractDataProvider {
         return attributes;
     }
 
+    /**
+     * Gets columns to output: for recurrent attributes only the last column is taken.
+     *
+     * @param attributes Attributes.
+     * @return Indices of columns, in the order of the first occurrence of the attributes.
+     */
+    private int[] getDistinctColumns(String[] attributes) {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (int i = 0; i < attributes.length; i++) {
+            columns.put(attributes[i], i);
+        }
+        return columns.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Writes TSV record as JSON object, without intermediate map.
+     *
+     * @param attributes Attributes.
+     * @param columns    Columns to output.
+     * @param record     TSV record.
+     * @return JSON object.
+     * @throws IOException in case of some problems.
+     */
+    private String toJson(String[] attributes, int[] columns, CSVRecord record) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        try (JsonWriter writer = gson.newJsonWriter(stringWriter)) {
+            writer.beginObject();
+            for (int column : columns) {
+                writer.name(attributes[column]).value(record.get(column));
+            }
+            writer.endObject();
+        }
+        return stringWriter.toString();
+    }
+
     @Autowired
     @Override
-    public void setExecutorService(ExecutorService fixedThreadPool) {
-        this.executorService = fixedThreadPool;
+    public void setExecutorService(ExecutorService throttledIngestionPool) {
+        this.executorService = throttledIngestionPool;
     }
 
 }
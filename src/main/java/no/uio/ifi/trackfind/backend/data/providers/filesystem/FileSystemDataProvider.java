@@ -0,0 +1,333 @@
+package no.uio.ifi.trackfind.backend.data.providers.filesystem;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.data.ingestion.IngestionTask;
+import no.uio.ifi.trackfind.backend.data.ingestion.JsonStreams;
+import no.uio.ifi.trackfind.backend.data.ingestion.ObjectSink;
+import no.uio.ifi.trackfind.backend.data.providers.AbstractDataProvider;
+import no.uio.ifi.trackfind.backend.pojo.TfHub;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Ingests local dumps: every sub-directory of the root directory is a hub containing JSON or NDJSON files
+ * (optionally gzipped). Uncompressed files are memory-mapped; NDJSON files are split into chunks (at line boundaries)
+ * processed concurrently. Object type is the name of the file (for NDJSON and for JSON arrays) or the top-level key
+ * (for JSON objects, like in {@link no.uio.ifi.trackfind.backend.data.providers.blueprint.BlueprintDataProvider}).
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Component
+@Transactional
+public class FileSystemDataProvider extends AbstractDataProvider {
+
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final Collection<String> NDJSON_EXTENSIONS = Arrays.asList(".ndjson", ".jsonl");
+    private static final String JSON_EXTENSION = ".json";
+
+    @Value("${trackfind.filesystem.root}")
+    private String root;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<TfHub> getAllTrackHubs() {
+        Path rootPath = Paths.get(root);
+        if (!Files.isDirectory(rootPath)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> directories = Files.list(rootPath)) {
+            return directories
+                    .filter(Files::isDirectory)
+                    .map(d -> d.getFileName().toString())
+                    .map(name -> new TfHub(getName(), name, getFetchURI(name)))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFetchURI(String hubName) {
+        return Paths.get(root, hubName).toUri().toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fetchData(String hubName) throws Exception {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(Paths.get(root, hubName))) {
+            files = paths.filter(Files::isRegularFile).filter(p -> getObjectTypeName(p) != null).sorted().collect(Collectors.toList());
+        }
+        AtomicLong objects = new AtomicLong();
+        long bytes = 0;
+        Collection<IngestionTask> tasks = new ArrayList<>();
+        for (Path file : files) {
+            bytes += Files.size(file);
+            tasks.addAll(createTasks(file, objects));
+        }
+        log.info("{} files ({} bytes) to ingest in {} tasks.", files.size(), bytes, tasks.size());
+        long start = System.currentTimeMillis();
+        save(hubName, tasks);
+        double seconds = Math.max(System.currentTimeMillis() - start, 1) / 1000.0;
+        log.info("{} objects ingested in {} s: {} objects/s, {} MB/s.", objects.get(), seconds,
+                Math.round(objects.get() / seconds), Math.round(bytes / seconds / 1024 / 1024));
+    }
+
+    private Collection<IngestionTask> createTasks(Path file, AtomicLong objects) throws IOException {
+        String fileName = file.getFileName().toString();
+        String objectTypeName = getObjectTypeName(file);
+        boolean gzipped = fileName.endsWith(GZIP_EXTENSION);
+        boolean ndjson = NDJSON_EXTENSIONS.stream().anyMatch(e -> StringUtils.removeEnd(fileName, GZIP_EXTENSION).endsWith(e));
+        if (!ndjson) {
+            return Collections.singleton(sink -> {
+                try (JsonReader reader = new JsonReader(new InputStreamReader(open(file, gzipped), StandardCharsets.UTF_8))) {
+                    readJson(reader, objectTypeName, counting(sink, objects));
+                }
+            });
+        }
+        if (gzipped) {
+            return Collections.singleton(sink -> {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(file, true), StandardCharsets.UTF_8))) {
+                    ObjectSink countingSink = counting(sink, objects);
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        acceptLine(line, objectTypeName, countingSink);
+                    }
+                }
+            });
+        }
+        Collection<IngestionTask> tasks = new ArrayList<>();
+        List<Long> boundaries = split(file);
+        for (int i = 0; i < boundaries.size() - 1; i++) {
+            long chunkStart = boundaries.get(i);
+            long chunkEnd = boundaries.get(i + 1);
+            tasks.add(sink -> readLines(map(file, chunkStart, chunkEnd - chunkStart), objectTypeName, counting(sink, objects)));
+        }
+        return tasks;
+    }
+
+    /**
+     * Splits NDJSON file into chunks (one per core, at least) ending at line boundaries.
+     *
+     * @param file NDJSON file.
+     * @return Offsets of chunks (the last one is the size of the file).
+     * @throws IOException in case of some problems.
+     */
+    private List<Long> split(Path file) throws IOException {
+        long size = Files.size(file);
+        long chunks = Math.max(Runtime.getRuntime().availableProcessors(), size / MAX_CHUNK_SIZE + 1);
+        return split(file, Math.max(MIN_CHUNK_SIZE, Math.min(size / chunks, MAX_CHUNK_SIZE / 2)));
+    }
+
+    /**
+     * Splits NDJSON file into chunks of given size, extended to the nearest line boundaries.
+     *
+     * @param file      NDJSON file.
+     * @param chunkSize Minimal size of the chunk.
+     * @return Offsets of chunks (the last one is the size of the file).
+     * @throws IOException in case of some problems.
+     */
+    List<Long> split(Path file, long chunkSize) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long position = chunkSize;
+            while (position < size) {
+                long boundary = findLineEnd(channel, buffer, position);
+                if (boundary >= size) {
+                    break;
+                }
+                boundaries.add(boundary);
+                position = boundary + chunkSize;
+            }
+            boundaries.add(size);
+        }
+        return boundaries;
+    }
+
+    private long findLineEnd(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    private MappedByteBuffer map(Path file, long position, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        }
+    }
+
+    private InputStream open(Path file, boolean gzipped) throws IOException {
+        long size = Files.size(file);
+        InputStream inputStream = size <= MAX_CHUNK_SIZE
+                ? new ByteBufferInputStream(map(file, 0, size))
+                : new BufferedInputStream(Files.newInputStream(file));
+        return gzipped ? new GZIPInputStream(inputStream, 65536) : inputStream;
+    }
+
+    /**
+     * Passes every non-blank line of the chunk to the sink (the last line may have no line break).
+     *
+     * @param buffer         Chunk of NDJSON file.
+     * @param objectTypeName Object type name.
+     * @param sink           Sink to pass objects to.
+     * @throws IOException in case of malformed JSON.
+     */
+    void readLines(ByteBuffer buffer, String objectTypeName, ObjectSink sink) throws IOException {
+        int lineStart = 0;
+        int limit = buffer.limit();
+        for (int i = 0; i <= limit; i++) {
+            if (i == limit || buffer.get(i) == '\n') {
+                if (i > lineStart) {
+                    byte[] bytes = new byte[i - lineStart];
+                    buffer.position(lineStart);
+                    buffer.get(bytes);
+                    acceptLine(new String(bytes, StandardCharsets.UTF_8), objectTypeName, sink);
+                }
+                lineStart = i + 1;
+            }
+        }
+    }
+
+    private void acceptLine(String line, String objectTypeName, ObjectSink sink) throws IOException {
+        if (StringUtils.isBlank(line)) {
+            return;
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(line))) {
+            sink.accept(objectTypeName, JsonStreams.read(reader));
+        }
+    }
+
+    private void readJson(JsonReader reader, String objectTypeName, ObjectSink sink) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            readArray(reader, objectTypeName, sink);
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String category = reader.nextName();
+            JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_ARRAY) {
+                readArray(reader, category, sink);
+            } else if (token == JsonToken.BEGIN_OBJECT) {
+                sink.accept(category, JsonStreams.read(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readArray(JsonReader reader, String objectTypeName, ObjectSink sink) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            sink.accept(objectTypeName, JsonStreams.read(reader));
+        }
+        reader.endArray();
+    }
+
+    private ObjectSink counting(ObjectSink sink, AtomicLong objects) {
+        return (objectTypeName, content) -> {
+            sink.accept(objectTypeName, content);
+            objects.incrementAndGet();
+        };
+    }
+
+    /**
+     * Gets object type name from the file name: name without extensions.
+     *
+     * @param file File.
+     * @return Object type name or null, if file is not JSON or NDJSON.
+     */
+    private String getObjectTypeName(Path file) {
+        String name = StringUtils.removeEnd(file.getFileName().toString(), GZIP_EXTENSION);
+        for (String extension : NDJSON_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return StringUtils.removeEnd(name, extension);
+            }
+        }
+        return name.endsWith(JSON_EXTENSION) ? StringUtils.removeEnd(name, JSON_EXTENSION) : null;
+    }
+
+    /**
+     * Input stream reading memory-mapped file.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+    }
+
+}
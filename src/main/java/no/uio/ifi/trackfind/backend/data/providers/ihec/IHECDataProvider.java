@@ -1,26 +1,21 @@
 package no.uio.ifi.trackfind.backend.data.providers.ihec;
 
-import com.google.common.collect.HashMultimap;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.data.ingestion.JsonStreams;
+import no.uio.ifi.trackfind.backend.data.ingestion.ObjectSink;
 import no.uio.ifi.trackfind.backend.data.providers.AbstractDataProvider;
-import org.apache.commons.collections4.MapUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
-import javax.net.ssl.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
 
 /**
@@ -36,33 +31,6 @@ public class IHECDataProvider extends AbstractDataProvider {
 
     private static final String RELEASES_URL = "https://epigenomesportal.ca/cgi-bin/api/getReleases.py";
 
-    // Temp hack for IHEC
-    private void disableSSL() throws KeyManagementException, NoSuchAlgorithmException {
-        TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
-            public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-                return null;
-            }
-
-            public void checkClientTrusted(X509Certificate[] certs, String authType) {
-            }
-
-            public void checkServerTrusted(X509Certificate[] certs, String authType) {
-            }
-        }
-        };
-
-        // Install the all-trusting trust manager
-        SSLContext sc = SSLContext.getInstance("SSL");
-        sc.init(null, trustAllCerts, new java.security.SecureRandom());
-        HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-
-        // Create all-trusting host name verifier
-        HostnameVerifier allHostsValid = (hostname, session) -> true;
-
-        // Install the all-trusting host verifier
-        HttpsURLConnection.setDefaultHostnameVerifier(allHostsValid);
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -74,13 +42,11 @@ public class IHECDataProvider extends AbstractDataProvider {
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
-    protected void fetchData(String hubName) throws InterruptedException, NoSuchAlgorithmException, KeyManagementException {
-        disableSSL();
+    protected void fetchData(String hubName) throws Exception {
         log.info("Collecting releases...");
         Collection<Release> releases;
-        try (InputStream inputStream = new URL(RELEASES_URL).openStream();
+        try (InputStream inputStream = openStream(RELEASES_URL);
              InputStreamReader reader = new InputStreamReader(inputStream)) {
             releases = gson.fromJson(reader, new TypeToken<Collection<Release>>() {
             }.getType());
@@ -94,40 +60,33 @@ public class IHECDataProvider extends AbstractDataProvider {
         int size = releases.size();
         log.info("{} releases to process.", size);
         Set<Integer> releaseIds = releases.parallelStream().sorted().map(Release::getId).collect(Collectors.toSet());
-        CountDownLatch countDownLatch = new CountDownLatch(size);
-        HashMultimap<String, String> mapToSave = HashMultimap.create();
-        for (int releaseId : releaseIds) {
-            executorService.submit(() -> {
-                try (InputStream inputStream = new URL(getFetchURI(hubName) + releaseId).openStream();
-                     InputStreamReader reader = new InputStreamReader(inputStream)) {
-                    Map grid = gson.fromJson(reader, Map.class);
-                    Map<String, Map> datasetsMap = MapUtils.getMap(grid, "datasets");
-                    for (Map.Entry<String, Map> entry : datasetsMap.entrySet()) {
-                        entry.getValue().put("tf_dataset_id", entry.getKey());
-                    }
-                    Collection<Map> datasets = datasetsMap.values();
-                    for (Map dataset : datasets) {
-                        mapToSave.put(hubName + "_dataset", gson.toJson(dataset));
-                    }
-                    Map<String, Map> samplesMap = MapUtils.getMap(grid, "samples");
-                    for (Map.Entry<String, Map> entry : samplesMap.entrySet()) {
-                        entry.getValue().put("tf_sample_id", entry.getKey());
+        Collection<String> uris = releaseIds.stream().map(releaseId -> getFetchURI(hubName) + releaseId).collect(Collectors.toList());
+        saveIncrementally(hubName, uris, (uri, inputStream, sink) -> {
+            try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if ("datasets".equals(name)) {
+                        readEntries(reader, "tf_dataset_id", hubName + "_dataset", sink);
+                    } else if ("samples".equals(name)) {
+                        readEntries(reader, "tf_sample_id", hubName + "_sample", sink);
+                    } else {
+                        reader.skipValue();
                     }
-                    Collection<Map> samples = samplesMap.values();
-                    for (Map sample : samples) {
-                        mapToSave.put(hubName + "_sample", gson.toJson(sample));
-                    }
-                    log.info("Release {} fetched.", releaseId);
-                } catch (Exception e) {
-                    log.error(e.getMessage(), e);
-                } finally {
-                    countDownLatch.countDown();
                 }
-            });
-        }
-        countDownLatch.await();
-        save(hubName, mapToSave.asMap());
+                log.info("Release {} fetched.", uri);
+            }
+        });
         log.info("{} releases stored.", size);
     }
 
+    private void readEntries(JsonReader reader, String idAttribute, String objectTypeName, ObjectSink sink) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String id = reader.nextName();
+            sink.accept(objectTypeName, JsonStreams.read(reader, idAttribute, id));
+        }
+        reader.endObject();
+    }
+
 }
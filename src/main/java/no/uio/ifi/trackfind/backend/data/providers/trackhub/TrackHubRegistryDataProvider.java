@@ -12,7 +12,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -36,7 +35,7 @@ public class TrackHubRegistryDataProvider extends AbstractDataProvider {
     @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public Collection<TfHub> getAllTrackHubs() {
-        try (InputStream inputStream = new URL(HUBS_URL).openStream();
+        try (InputStream inputStream = openStream(HUBS_URL);
              InputStreamReader reader = new InputStreamReader(inputStream)) {
             Collection<Map> hubs = gson.fromJson(reader, Collection.class);
             return hubs.stream().map(h -> {
@@ -75,7 +74,7 @@ public class TrackHubRegistryDataProvider extends AbstractDataProvider {
         String hubURI = getFetchURI(hubName);
         log.info("Fetch URL {}", hubURI);
         HashMultimap<String, String> mapToSave = HashMultimap.create();
-        try (InputStream inputStream = new URL(hubURI).openStream();
+        try (InputStream inputStream = openStream(hubURI);
              InputStreamReader reader = new InputStreamReader(inputStream)) {
             Map<String, Object> hub = (Map<String, Object>) gson.fromJson(reader, Map.class);
             Map<String, Object> source = (Map<String, Object>) hub.get("_source");
@@ -0,0 +1,425 @@
+package no.uio.ifi.trackfind.backend.data.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * Writer streaming objects to the database using PostgreSQL COPY protocol (text format).
+ * Storage is content-addressed: content is stored once per hash in <code>tf_documents</code>,
+ * while <code>tf_objects</code> only records membership of documents in object types (and thus in versions).
+ * Memberships are copied to a temporary table and merged from there, so that duplicate objects (same document in the same object type)
+ * are skipped by the database, whether they come from the same batch, from previous ones, or were promoted or carried forward.
+ * Bypasses JPA persistence context and second-level cache. IDs are taken from <code>tf_objects_ids_sequence</code> in blocks.
+ * All statements are executed on the same (transactional) connection, so the writer must be used within a transaction,
+ * from one thread at a time, and closed (flushed) before the transaction is committed.
+ * Staging writer (see {@link #stage(long, String, String, String)}) uses its own connection instead,
+ * which is committed at every checkpoint of the fetch unit.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+public class BulkObjectWriter implements AutoCloseable {
+
+    private static final String CREATE_OBJECTS_STAGING_SQL = "CREATE TEMPORARY TABLE IF NOT EXISTS tf_objects_staging " +
+            "(id BIGINT, object_type_id BIGINT, content_hash VARCHAR, fetch_unit_id BIGINT) ON COMMIT DROP";
+    private static final String COPY_SQL = "COPY tf_objects_staging (id, object_type_id, content_hash, fetch_unit_id) FROM STDIN";
+    private static final String MERGE_OBJECTS_SQL = "INSERT INTO tf_objects (id, object_type_id, content_hash, fetch_unit_id) " +
+            "SELECT DISTINCT ON (object_type_id, content_hash) id, object_type_id, content_hash, fetch_unit_id FROM tf_objects_staging s " +
+            "WHERE NOT EXISTS (SELECT 1 FROM tf_objects e WHERE e.object_type_id = s.object_type_id AND e.content_hash = s.content_hash) " +
+            "ORDER BY object_type_id, content_hash, id";
+    private static final String TRUNCATE_OBJECTS_STAGING_SQL = "TRUNCATE tf_objects_staging";
+    private static final String COPY_STAGED_SQL = "COPY tf_staged_objects (fetch_unit_id, object_type_name, content_hash) FROM STDIN";
+    private static final String CHECKPOINT_SQL = "UPDATE tf_fetch_units SET staged_at = now(), staged_unchanged = ?, staged_etag = ?, staged_last_modified = ? WHERE id = ?";
+    private static final String STAGED_OBJECT_TYPES_SQL = "SELECT DISTINCT object_type_name FROM tf_staged_objects WHERE fetch_unit_id = ANY (?)";
+    private static final String PROMOTE_SQL = "INSERT INTO tf_objects (id, object_type_id, content_hash, fetch_unit_id) " +
+            "SELECT nextval('tf_objects_ids_sequence'), ot.id, s.content_hash, s.fetch_unit_id FROM " +
+            "(SELECT DISTINCT ON (object_type_name, content_hash) object_type_name, content_hash, fetch_unit_id FROM tf_staged_objects WHERE fetch_unit_id = ANY (?)) s " +
+            "JOIN tf_object_types ot ON ot.name = s.object_type_name AND ot.version_id = ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM tf_objects e WHERE e.object_type_id = ot.id AND e.content_hash = s.content_hash)";
+    /**
+     * Advisory lock held (shared) by transactions writing documents, and exclusively by the garbage collection:
+     * documents found to be stored already (thus not written again) can't be collected until the writer commits.
+     */
+    public static final long DOCUMENTS_LOCK_ID = 0x74665f646f6373L;
+    public static final String LOCK_DOCUMENTS_SQL = "SELECT pg_advisory_xact_lock_shared(" + DOCUMENTS_LOCK_ID + ")";
+    private static final String EXISTING_DOCUMENTS_SQL = "SELECT hash FROM tf_documents WHERE hash = ANY (?)";
+    private static final String CREATE_STAGING_SQL = "CREATE TEMPORARY TABLE IF NOT EXISTS tf_documents_staging (hash VARCHAR, content JSONB) ON COMMIT DROP";
+    private static final String COPY_DOCUMENTS_SQL = "COPY tf_documents_staging (hash, content) FROM STDIN";
+    private static final String MERGE_DOCUMENTS_SQL = "INSERT INTO tf_documents (hash, content) SELECT hash, content FROM tf_documents_staging ON CONFLICT DO NOTHING";
+    private static final String TRUNCATE_STAGING_SQL = "TRUNCATE tf_documents_staging";
+    private static final String IDS_SQL = "SELECT nextval('tf_objects_ids_sequence') FROM generate_series(1, ?)";
+    private static final String OBJECT_TYPE_SQL = "INSERT INTO tf_object_types (name, version_id) VALUES (?, ?) RETURNING id";
+    private static final String CARRIED_OBJECT_TYPES_SQL = "SELECT DISTINCT ot.name FROM tf_objects o " +
+            "JOIN tf_object_types ot ON ot.id = o.object_type_id " +
+            "WHERE ot.version_id = ? AND o.fetch_unit_id = ANY (?)";
+    private static final String CARRY_FORWARD_SQL = "INSERT INTO tf_objects (id, object_type_id, content_hash, fetch_unit_id) " +
+            "SELECT nextval('tf_objects_ids_sequence'), nt.id, o.content_hash, o.fetch_unit_id FROM tf_objects o " +
+            "JOIN tf_object_types ot ON ot.id = o.object_type_id " +
+            "JOIN tf_object_types nt ON nt.name = ot.name AND nt.version_id = ? " +
+            "WHERE ot.version_id = ? AND o.fetch_unit_id = ANY (?) " +
+            "AND NOT EXISTS (SELECT 1 FROM tf_objects e WHERE e.object_type_id = nt.id AND e.content_hash = o.content_hash)";
+
+    private final Connection connection;
+    private final CopyManager copyManager;
+    private final SQLExceptionTranslator exceptionTranslator;
+    private final Runnable onClose;
+    private final int batchSize;
+
+    private final Deque<Long> ids = new ArrayDeque<>();
+    private final StringBuilder buffer = new StringBuilder();
+    private final StringBuilder stagedBuffer = new StringBuilder();
+    private final Map<String, String> documents = new LinkedHashMap<>();
+    private int rows;
+    private long total;
+
+    public BulkObjectWriter(Connection connection, SQLExceptionTranslator exceptionTranslator, int batchSize, Runnable onClose) throws SQLException {
+        this.connection = connection;
+        this.copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        this.exceptionTranslator = exceptionTranslator;
+        this.batchSize = batchSize;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Creates object type within the version.
+     *
+     * @param versionId ID of the version.
+     * @param name      Name of the object type.
+     * @return ID of the created object type.
+     */
+    public long writeObjectType(long versionId, String name) {
+        try (PreparedStatement statement = connection.prepareStatement(OBJECT_TYPE_SQL)) {
+            statement.setString(1, name);
+            statement.setLong(2, versionId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("INSERT", OBJECT_TYPE_SQL, e);
+        }
+    }
+
+    /**
+     * Computes content hash of the object: the same as <code>tf_content_hash(content)</code> computes in SQL,
+     * provided that the content is canonical.
+     *
+     * @param content Canonical JSON content of the object (see {@link CanonicalJson}).
+     * @return MD5 hex digest.
+     */
+    public static String hash(String content) {
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes object to the buffer, flushing it when the batch is full.
+     *
+     * @param objectTypeId ID of the object type.
+     * @param content      JSON content of the object.
+     * @param contentHash  Content hash (see {@link #hash(String)}).
+     * @param fetchUnitId  ID of the fetch unit the object comes from (or null).
+     * @return ID assigned to the object (not used if the object turns out to be a duplicate).
+     */
+    public long write(long objectTypeId, String content, String contentHash, Long fetchUnitId) {
+        if (ids.isEmpty()) {
+            allocateIds();
+        }
+        long id = ids.poll();
+        documents.putIfAbsent(contentHash, content);
+        buffer.append(id).append('\t').append(objectTypeId).append('\t').append(contentHash).append('\t').append(fetchUnitId == null ? "\\N" : fetchUnitId).append('\n');
+        if (++rows >= batchSize) {
+            flush();
+        }
+        return id;
+    }
+
+    /**
+     * Writes object referencing already stored document to the buffer, flushing it when the batch is full.
+     *
+     * @param objectTypeId ID of the object type.
+     * @param contentHash  Hash of the document (present in <code>tf_documents</code>).
+     * @return ID assigned to the object (not used if the object turns out to be a duplicate).
+     */
+    public long writeExisting(long objectTypeId, String contentHash) {
+        if (ids.isEmpty()) {
+            allocateIds();
+        }
+        long id = ids.poll();
+        buffer.append(id).append('\t').append(objectTypeId).append('\t').append(contentHash).append("\t\\N\n");
+        if (++rows >= batchSize) {
+            flush();
+        }
+        return id;
+    }
+
+    /**
+     * Writes object of the pending crawling to the staging area, flushing it when the batch is full.
+     *
+     * @param fetchUnitId    ID of the fetch unit the object comes from.
+     * @param objectTypeName Name of the object type.
+     * @param content        JSON content of the object.
+     * @param contentHash    Content hash (see {@link #hash(String)}).
+     */
+    public void stage(long fetchUnitId, String objectTypeName, String content, String contentHash) {
+        documents.putIfAbsent(contentHash, content);
+        stagedBuffer.append(fetchUnitId).append('\t');
+        escape(stagedBuffer, objectTypeName);
+        stagedBuffer.append('\t').append(contentHash).append('\n');
+        if (++rows >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Marks the fetch unit as staged and commits the staging connection: all objects of the unit are stored.
+     *
+     * @param fetchUnitId  ID of the fetch unit.
+     * @param unchanged    Whether the unit is not modified since the last crawling.
+     * @param etag         ETag of the fetched resource.
+     * @param lastModified Last-Modified of the fetched resource.
+     */
+    public void checkpoint(long fetchUnitId, boolean unchanged, String etag, String lastModified) {
+        flush();
+        try (PreparedStatement statement = connection.prepareStatement(CHECKPOINT_SQL)) {
+            statement.setBoolean(1, unchanged);
+            statement.setString(2, etag);
+            statement.setString(3, lastModified);
+            statement.setLong(4, fetchUnitId);
+            statement.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("UPDATE", CHECKPOINT_SQL, e);
+        }
+    }
+
+    /**
+     * Gets names of object types of staged objects of specified fetch units.
+     *
+     * @param fetchUnitIds IDs of fetch units.
+     * @return Object type names.
+     */
+    public Collection<String> getStagedObjectTypeNames(Collection<Long> fetchUnitIds) {
+        Collection<String> names = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(STAGED_OBJECT_TYPES_SQL)) {
+            statement.setArray(1, connection.createArrayOf("bigint", fetchUnitIds.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    names.add(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("SELECT", STAGED_OBJECT_TYPES_SQL, e);
+        }
+        return names;
+    }
+
+    /**
+     * Copies staged objects of specified fetch units to the version (matching object types by name).
+     * Object types must be created beforehand. Objects already present in the version are skipped.
+     *
+     * @param versionId    ID of the version.
+     * @param fetchUnitIds IDs of fetch units.
+     * @return Number of copied objects.
+     */
+    public int promote(long versionId, Collection<Long> fetchUnitIds) {
+        flush();
+        try (PreparedStatement statement = connection.prepareStatement(PROMOTE_SQL)) {
+            statement.setArray(1, connection.createArrayOf("bigint", fetchUnitIds.toArray()));
+            statement.setLong(2, versionId);
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("INSERT", PROMOTE_SQL, e);
+        }
+    }
+
+    /**
+     * Gets names of object types of the previous version, having objects from specified fetch units.
+     *
+     * @param previousVersionId ID of the previous version.
+     * @param fetchUnitIds      IDs of fetch units.
+     * @return Object type names.
+     */
+    public Collection<String> getCarriedObjectTypeNames(long previousVersionId, Collection<Long> fetchUnitIds) {
+        Collection<String> names = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(CARRIED_OBJECT_TYPES_SQL)) {
+            statement.setLong(1, previousVersionId);
+            statement.setArray(2, connection.createArrayOf("bigint", fetchUnitIds.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    names.add(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("SELECT", CARRIED_OBJECT_TYPES_SQL, e);
+        }
+        return names;
+    }
+
+    /**
+     * Copies objects of specified fetch units from the previous version to the new one (matching object types by name).
+     * Object types must be created beforehand. Objects already present in the new version are skipped.
+     *
+     * @param previousVersionId ID of the previous version.
+     * @param versionId         ID of the new version.
+     * @param fetchUnitIds      IDs of fetch units.
+     * @return Number of copied objects.
+     */
+    public int carryForward(long previousVersionId, long versionId, Collection<Long> fetchUnitIds) {
+        flush();
+        try (PreparedStatement statement = connection.prepareStatement(CARRY_FORWARD_SQL)) {
+            statement.setLong(1, versionId);
+            statement.setLong(2, previousVersionId);
+            statement.setArray(3, connection.createArrayOf("bigint", fetchUnitIds.toArray()));
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("INSERT", CARRY_FORWARD_SQL, e);
+        }
+    }
+
+    /**
+     * Sends buffered objects to the database: new documents first, then memberships (or staged objects).
+     */
+    public void flush() {
+        if (rows == 0) {
+            return;
+        }
+        flushDocuments();
+        if (buffer.length() != 0) {
+            flushObjects();
+        }
+        if (stagedBuffer.length() != 0) {
+            copyIn(COPY_STAGED_SQL, stagedBuffer);
+        }
+        total += rows;
+        log.debug("{} objects copied ({} in total).", rows, total);
+        buffer.setLength(0);
+        stagedBuffer.setLength(0);
+        rows = 0;
+    }
+
+    private void flushObjects() {
+        execute("CREATE", CREATE_OBJECTS_STAGING_SQL);
+        copyIn(COPY_SQL, buffer);
+        int merged = execute("INSERT", MERGE_OBJECTS_SQL);
+        execute("TRUNCATE", TRUNCATE_OBJECTS_STAGING_SQL);
+        log.debug("{} new objects stored.", merged);
+    }
+
+    private void flushDocuments() {
+        execute("SELECT", LOCK_DOCUMENTS_SQL);
+        try (PreparedStatement statement = connection.prepareStatement(EXISTING_DOCUMENTS_SQL)) {
+            statement.setArray(1, connection.createArrayOf("varchar", documents.keySet().toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    documents.remove(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("SELECT", EXISTING_DOCUMENTS_SQL, e);
+        }
+        if (documents.isEmpty()) {
+            return;
+        }
+        StringBuilder documentsBuffer = new StringBuilder();
+        for (Map.Entry<String, String> document : documents.entrySet()) {
+            documentsBuffer.append(document.getKey()).append('\t');
+            escape(documentsBuffer, document.getValue());
+            documentsBuffer.append('\n');
+        }
+        execute("CREATE", CREATE_STAGING_SQL);
+        copyIn(COPY_DOCUMENTS_SQL, documentsBuffer);
+        // staging table lets concurrent writers store the same document without violating uniqueness
+        execute("INSERT", MERGE_DOCUMENTS_SQL);
+        execute("TRUNCATE", TRUNCATE_STAGING_SQL);
+        log.debug("{} new documents stored.", documents.size());
+        documents.clear();
+    }
+
+    private int execute(String task, String sql) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+            return statement.getUpdateCount();
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate(task, sql, e);
+        }
+    }
+
+    private void copyIn(String sql, CharSequence content) {
+        try {
+            copyManager.copyIn(sql, new StringReader(content.toString()));
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("COPY", sql, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Number of objects sent to the database so far.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Flushes remaining objects and releases the connection.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            onClose.run();
+        }
+    }
+
+    private void allocateIds() {
+        try (PreparedStatement statement = connection.prepareStatement(IDS_SQL)) {
+            statement.setInt(1, batchSize);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("SELECT", IDS_SQL, e);
+        }
+    }
+
+    private void escape(StringBuilder buffer, String content) {
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            switch (c) {
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                default:
+                    buffer.append(c);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package no.uio.ifi.trackfind.backend.data.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canonical form of JSON documents, used for content addressing: the text is exactly the one PostgreSQL prints for
+ * <code>jsonb</code> values (keys ordered by length and then bytewise, duplicate keys collapsed, numbers in plain
+ * notation, <code>", "</code> and <code>": "</code> separators), so that hashes computed in Java and in SQL
+ * (see <code>tf_content_hash</code> function) are the same for the same document.
+ *
+ * @author Dmytro Titov
+ */
+public final class CanonicalJson {
+
+    private static final Gson GSON = new Gson();
+    private static final Comparator<byte[]> KEY_ORDER = (a, b) -> {
+        if (a.length != b.length) {
+            return Integer.compare(a.length, b.length);
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i] & 0xff, b[i] & 0xff);
+            }
+        }
+        return 0;
+    };
+
+    private CanonicalJson() {
+    }
+
+    /**
+     * Converts JSON document to the canonical form.
+     *
+     * @param json JSON document.
+     * @return Canonical JSON.
+     */
+    public static String canonicalize(String json) {
+        return toJson(JsonParser.parseString(json));
+    }
+
+    /**
+     * Renders value as text, the way static mappings store scalars and objects: strings as they are, anything else as
+     * the canonical JSON. The same text is produced by <code>jsonb_mapping_value</code> function in SQL.
+     *
+     * @param value Value to render.
+     * @return Text.
+     */
+    public static String toText(Object value) {
+        return value instanceof CharSequence ? value.toString() : toJson(value);
+    }
+
+    /**
+     * Serializes value (maps, collections, scalars or JSON elements) to the canonical JSON.
+     *
+     * @param value Value to serialize.
+     * @return Canonical JSON.
+     */
+    public static String toJson(Object value) {
+        StringBuilder builder = new StringBuilder();
+        write(builder, value);
+        return builder.toString();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void write(StringBuilder builder, Object value) {
+        if (value == null || value instanceof JsonElement && ((JsonElement) value).isJsonNull()) {
+            builder.append("null");
+        } else if (value instanceof JsonObject) {
+            writeObject(builder, ((JsonObject) value).entrySet());
+        } else if (value instanceof Map) {
+            writeObject(builder, ((Map<?, ?>) value).entrySet());
+        } else if (value instanceof JsonArray) {
+            writeArray(builder, (JsonArray) value);
+        } else if (value instanceof Collection) {
+            writeArray(builder, (Collection) value);
+        } else if (value instanceof Object[]) {
+            writeArray(builder, Arrays.asList((Object[]) value));
+        } else if (value instanceof JsonPrimitive) {
+            JsonPrimitive primitive = (JsonPrimitive) value;
+            write(builder, primitive.isNumber() ? primitive.getAsNumber() : primitive.isBoolean() ? primitive.getAsBoolean() : primitive.getAsString());
+        } else if (value instanceof Number) {
+            writeNumber(builder, (Number) value);
+        } else if (value instanceof Boolean) {
+            builder.append(value);
+        } else if (value instanceof CharSequence || value instanceof Character) {
+            writeString(builder, value.toString());
+        } else {
+            write(builder, GSON.toJsonTree(value));
+        }
+    }
+
+    private static void writeObject(StringBuilder builder, Collection<? extends Map.Entry<?, ?>> entries) {
+        List<Map.Entry<byte[], Object>> sorted = new ArrayList<>(entries.size());
+        for (Map.Entry<?, ?> entry : entries) {
+            sorted.add(new AbstractMap.SimpleImmutableEntry<>(String.valueOf(entry.getKey()).getBytes(StandardCharsets.UTF_8), entry.getValue()));
+        }
+        sorted.sort(Map.Entry.comparingByKey(KEY_ORDER));
+        builder.append('{');
+        for (int i = 0; i < sorted.size(); i++) {
+            if (i != 0) {
+                builder.append(", ");
+            }
+            writeString(builder, new String(sorted.get(i).getKey(), StandardCharsets.UTF_8));
+            builder.append(": ");
+            write(builder, sorted.get(i).getValue());
+        }
+        builder.append('}');
+    }
+
+    private static void writeArray(StringBuilder builder, Iterable<?> elements) {
+        builder.append('[');
+        boolean first = true;
+        for (Object element : elements) {
+            if (!first) {
+                builder.append(", ");
+            }
+            write(builder, element);
+            first = false;
+        }
+        builder.append(']');
+    }
+
+    private static void writeNumber(StringBuilder builder, Number number) {
+        if (number instanceof Double && !Double.isFinite(number.doubleValue()) || number instanceof Float && !Float.isFinite(number.floatValue())) {
+            throw new IllegalArgumentException("JSON doesn't support non-finite numbers: " + number);
+        }
+        // numeric type of PostgreSQL keeps the scale of the literal, but never uses exponent and has no negative zero;
+        // parsed doubles don't keep the literal, so they are written in the shortest form (as jsonb_normalize_numbers does)
+        BigDecimal decimal = number instanceof Double || number instanceof Float
+                ? new BigDecimal(number.toString()).stripTrailingZeros()
+                : new BigDecimal(number.toString());
+        builder.append(decimal.toPlainString());
+    }
+
+    private static void writeString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\b':
+                    builder.append("\\b");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < ' ') {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+
+}
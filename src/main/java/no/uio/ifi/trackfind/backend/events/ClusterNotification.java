@@ -0,0 +1,32 @@
+package no.uio.ifi.trackfind.backend.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import no.uio.ifi.trackfind.backend.operations.Operation;
+
+/**
+ * Notification being exchanged between TrackFind nodes (through PostgreSQL LISTEN/NOTIFY).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterNotification {
+
+    /**
+     * Kind of the notification:
+     * - data of the hub was reloaded (crawling, curation, version change);
+     * - some caches of the hub were evicted.
+     */
+    public enum Type {
+        RELOAD, EVICTION
+    }
+
+    private String node;
+    private Type type;
+    private String repository;
+    private String hub;
+    private Operation operation;
+    private String[] caches;
+
+}
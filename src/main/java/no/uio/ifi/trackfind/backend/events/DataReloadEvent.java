@@ -8,18 +8,24 @@ import org.springframework.context.ApplicationEvent;
  */
 public class DataReloadEvent extends ApplicationEvent {
 
-    private String dataProviderName;
+    private String repository;
+    private String hubName;
 
     /**
      * {@inheritDoc}
      */
-    public DataReloadEvent(String dataProviderName, Operation source) {
+    public DataReloadEvent(String repository, String hubName, Operation source) {
         super(source);
-        this.dataProviderName = dataProviderName;
+        this.repository = repository;
+        this.hubName = hubName;
     }
 
-    public String getDataProviderName() {
-        return dataProviderName;
+    public String getRepository() {
+        return repository;
+    }
+
+    public String getHubName() {
+        return hubName;
     }
 
 }
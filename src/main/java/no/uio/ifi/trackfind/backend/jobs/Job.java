@@ -0,0 +1,36 @@
+package no.uio.ifi.trackfind.backend.jobs;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import no.uio.ifi.trackfind.backend.operations.Operation;
+import org.springframework.security.core.context.SecurityContext;
+
+import java.util.Date;
+
+/**
+ * Crawling or curation of a single hub, scheduled by {@link no.uio.ifi.trackfind.backend.services.impl.JobService}.
+ *
+ * @author Dmytro Titov
+ */
+@Data
+public class Job {
+
+    private final long id;
+    private final String repository;
+    private final String hub;
+    private final Operation operation;
+    private final int priority;
+    private final Date submitted;
+
+    private volatile JobStatus status = JobStatus.QUEUED;
+    private volatile int attempts;
+    private volatile Date started;
+    private volatile Date finished;
+    private volatile String error;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final SecurityContext securityContext;
+
+}
@@ -0,0 +1,16 @@
+package no.uio.ifi.trackfind.backend.jobs;
+
+/**
+ * Possible states of the job:
+ * - waiting in the queue;
+ * - running;
+ * - waiting for the retry after transient failure;
+ * - finished successfully;
+ * - failed;
+ * - cancelled before start.
+ */
+public enum JobStatus {
+
+    QUEUED, RUNNING, RETRYING, SUCCEEDED, FAILED, CANCELLED
+
+}
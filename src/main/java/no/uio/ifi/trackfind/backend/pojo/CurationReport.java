@@ -0,0 +1,57 @@
+package no.uio.ifi.trackfind.backend.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Results of the curation dry-run: mappings applied to a random sample of entries, without storing anything.
+ *
+ * @author Dmytro Titov
+ */
+@Data
+public class CurationReport {
+
+    private final int sampleSize;
+    private final long totalEntries;
+    private final int parallelism;
+    private final List<MappingReport> mappings = new ArrayList<>();
+
+    /**
+     * @return Estimated time of running all the mappings over the whole hub, in milliseconds.
+     */
+    public long getEstimatedMillis() {
+        return mappings.stream().mapToLong(MappingReport::getEstimatedMillis).sum();
+    }
+
+    /**
+     * Adds timing and impact of the mapping.
+     *
+     * @param mapping           Mapping.
+     * @param nanos             Time of running the mapping over the sample (by a single thread), in nanoseconds.
+     * @param changedAttributes Number of attributes changed, added or removed by the mapping in the sample.
+     */
+    public void add(TfMapping mapping, long nanos, long changedAttributes) {
+        double throughput = nanos == 0 ? 0 : sampleSize * 1e9 / nanos;
+        long estimatedMillis = sampleSize == 0 ? 0 : Math.round((double) nanos * totalEntries / sampleSize / Math.max(parallelism, 1) / 1e6);
+        mappings.add(new MappingReport(mapping, nanos / 1_000_000, throughput, estimatedMillis, changedAttributes));
+    }
+
+    /**
+     * Timing and impact of a single mapping.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class MappingReport {
+
+        private final TfMapping mapping;
+        private final long millis;
+        private final double throughput;
+        private final long estimatedMillis;
+        private final long changedAttributes;
+
+    }
+
+}
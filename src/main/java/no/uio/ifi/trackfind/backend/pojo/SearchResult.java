@@ -1,6 +1,7 @@
 package no.uio.ifi.trackfind.backend.pojo;
 
 import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -9,6 +10,7 @@ import java.util.Map;
 public class SearchResult {
 
     private Map<String, Map> content = new HashMap<>();
+    private Map<String, Long> ids = new HashMap<>();
 
     @JsonAnyGetter
     public Map<String, Map> getContent() {
@@ -19,4 +21,12 @@ public class SearchResult {
         this.content = content;
     }
 
+    /**
+     * @return IDs of the objects the result consists of (by object type names).
+     */
+    @JsonIgnore
+    public Map<String, Long> getIds() {
+        return ids;
+    }
+
 }
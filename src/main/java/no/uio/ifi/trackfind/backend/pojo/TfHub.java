@@ -35,6 +35,9 @@ public class TfHub implements Serializable {
     @Column(name = "display_name")
     private String displayName;
 
+    @Column(name = "crawl_schedule")
+    private String crawlSchedule;
+
     @NonNull
     @Column(name = "uri", nullable = false)
     private String uri;
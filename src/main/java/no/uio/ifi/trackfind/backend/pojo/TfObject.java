@@ -27,7 +27,10 @@ public class TfObject implements Serializable {
     @JoinColumn(name = "object_type_id", referencedColumnName = "id")
     private TfObjectType objectType;
 
-    @Column(name = "content", nullable = false, columnDefinition = "jsonb")
-    private String content;
+    @Column(name = "content_hash", nullable = false)
+    private String contentHash;
+
+    @Column(name = "fetch_unit_id")
+    private Long fetchUnitId;
 
 }
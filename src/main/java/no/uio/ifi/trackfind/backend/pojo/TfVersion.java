@@ -48,6 +48,12 @@ public class TfVersion implements Serializable {
     @Column(name = "validation")
     private Boolean validation;
 
+    @Column(name = "delta", nullable = false)
+    private Boolean delta;
+
+    @Column(name = "materialized", nullable = false)
+    private Boolean materialized;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "hub_id", referencedColumnName = "id")
     private TfHub hub;
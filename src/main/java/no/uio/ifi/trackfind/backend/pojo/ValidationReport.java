@@ -0,0 +1,94 @@
+package no.uio.ifi.trackfind.backend.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Results of JSON Schema validation of the hub. <code>checkedDocuments</code> are the ones actually validated by the run,
+ * results for the rest are taken from previous validations. Only first <code>maxErrors</code> errors are listed,
+ * the rest is counted.
+ * Thread-safe: documents can be reported from several validating threads.
+ *
+ * @author Dmytro Titov
+ */
+@Data
+public class ValidationReport {
+
+    private final String schemaLocation;
+    private final int maxErrors;
+    private long documents;
+    private long checkedDocuments;
+    private long invalidDocuments;
+    private long omittedErrors;
+    private final List<ValidationError> errors = new ArrayList<>();
+
+    /**
+     * @return true if no errors were found.
+     */
+    public synchronized boolean isValid() {
+        return errors.isEmpty() && omittedErrors == 0;
+    }
+
+    /**
+     * Counts documents validated by the run (not found in previous results).
+     *
+     * @param count Number of validated documents.
+     */
+    public synchronized void addChecked(long count) {
+        checkedDocuments += count;
+    }
+
+    /**
+     * Adds result of validation of the document.
+     *
+     * @param objectType  Name of the object type.
+     * @param contentHash Hash of the document.
+     * @param messages    Validation errors (empty for valid document).
+     */
+    public synchronized void add(String objectType, String contentHash, Collection<String> messages) {
+        documents++;
+        if (messages.isEmpty()) {
+            return;
+        }
+        invalidDocuments++;
+        for (String message : messages) {
+            addError(objectType, contentHash, message);
+        }
+    }
+
+    /**
+     * Adds error not related to particular document.
+     *
+     * @param objectType Name of the object type.
+     * @param message    Error message.
+     */
+    public synchronized void addError(String objectType, String message) {
+        addError(objectType, null, message);
+    }
+
+    private void addError(String objectType, String contentHash, String message) {
+        if (errors.size() < maxErrors) {
+            errors.add(new ValidationError(objectType, contentHash, message));
+        } else {
+            omittedErrors++;
+        }
+    }
+
+    /**
+     * Single validation error.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class ValidationError {
+
+        private final String objectType;
+        private final String contentHash;
+        private final String message;
+
+    }
+
+}
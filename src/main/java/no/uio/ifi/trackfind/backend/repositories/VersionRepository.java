@@ -1,10 +1,15 @@
 package no.uio.ifi.trackfind.backend.repositories;
 
+import no.uio.ifi.trackfind.backend.pojo.TfHub;
 import no.uio.ifi.trackfind.backend.pojo.TfVersion;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 @Repository
 public interface VersionRepository extends JpaRepository<TfVersion, Long> {
 
+    Collection<TfVersion> findByHubAndDeltaTrueAndMaterializedTrueAndCurrentFalse(TfHub hub);
+
 }
@@ -15,4 +15,20 @@ public abstract class AbstractScriptingEngine implements ScriptingEngine {
     @Value("${trackfind.scripting.variables.output}")
     protected String output;
 
+    /**
+     * Wraps CoffeeScript mappings script into the function of the input variable.
+     *
+     * @param functionName Name of the variable to assign the function to.
+     * @param script       Mappings script.
+     * @return CoffeeScript source defining the function.
+     */
+    protected String toFunction(String functionName, String script) {
+        String indent = script.contains("\n\t") || script.startsWith("\t") ? "\t" : "  ";
+        StringBuilder function = new StringBuilder(functionName).append(" = (").append(input).append(") ->\n");
+        for (String line : script.split("\\r?\\n")) {
+            function.append(indent).append(line).append('\n');
+        }
+        return function.toString();
+    }
+
 }
@@ -1,7 +1,11 @@
 package no.uio.ifi.trackfind.backend.scripting;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Scripting Engine for performing dynamic attribute mappings.
+ * Implementations must be safe for concurrent use: mappings are executed by several threads during curation.
  *
  * @author Dmytro Titov
  */
@@ -24,4 +28,21 @@ public interface ScriptingEngine {
      */
     String execute(String script, String content) throws Exception;
 
+    /**
+     * Execute script over the batch of datasets. Engines should override it to cross the engine boundary once per batch,
+     * default implementation executes the script for every dataset separately.
+     *
+     * @param script   Mappings script (the same as for {@link #execute(String, String)}).
+     * @param contents Datasets' contents to process.
+     * @return Contents with mapped values (in the same order).
+     * @throws Exception When script can't be interpreted/executed.
+     */
+    default List<String> executeBatch(String script, List<String> contents) throws Exception {
+        List<String> results = new ArrayList<>(contents.size());
+        for (String content : contents) {
+            results.add(execute(script, content));
+        }
+        return results;
+    }
+
 }
@@ -4,33 +4,39 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.netopyr.coffee4java.CoffeeScriptEngine;
+import com.netopyr.coffee4java.CoffeeScriptEngineFactory;
 import no.uio.ifi.trackfind.backend.scripting.AbstractScriptingEngine;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.script.CompiledScript;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * CoffeeScript implementation of the Scripting Engine.
+ * Engine instances with their caches of compiled scripts are pooled: every call borrows one and returns it afterwards,
+ * so the pool never grows beyond the number of concurrent callers.
+ * The script is wrapped into a function applied in a loop inside of the engine (single dataset is a batch of one).
+ * The script may return either a JSON string or any other value (serialized to JSON), as for
+ * {@link no.uio.ifi.trackfind.backend.scripting.graaljs.GraalJSScriptingEngine}.
  *
  * @author Dmytro Titov
  */
 @Component
 public class CoffeeScriptScriptingEngine extends AbstractScriptingEngine {
 
-    private CoffeeScriptEngine coffeeScriptEngine;
+    private static final String BATCH_FUNCTION = "__tfMap";
+    private static final String BATCH_INPUTS = "__tfInputs";
+    private static final String BATCH_OUTPUTS = "__tfOutputs";
 
-    private LoadingCache<String, CompiledScript> scripts = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .build(
-                    new CacheLoader<String, CompiledScript>() {
-                        public CompiledScript load(String script) throws ScriptException {
-                            return coffeeScriptEngine.compile(script);
-                        }
-                    });
+    // script engines and compiled scripts are not safe for concurrent evaluation, so they are used by one caller at a time
+    private final Queue<LoadingCache<String, CompiledScript>> engines = new ConcurrentLinkedQueue<>();
 
     /**
      * {@inheritDoc}
@@ -51,16 +57,60 @@ public class CoffeeScriptScriptingEngine extends AbstractScriptingEngine {
             return JSON.stringify(source)
      */
     public String execute(String script, String content) throws Exception {
-        CompiledScript compiledScript = scripts.get(script);
-        Object result = compiledScript.eval(new SimpleBindings(new HashMap<String, Object>() {{
-            put(input, content);
-        }}));
-        return String.valueOf(result);
+        return executeBatch(script, Collections.singletonList(content)).get(0);
     }
 
-    @Autowired
-    public void setCoffeeScriptEngine(CoffeeScriptEngine coffeeScriptEngine) {
-        this.coffeeScriptEngine = coffeeScriptEngine;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> executeBatch(String script, List<String> contents) throws Exception {
+        LoadingCache<String, CompiledScript> scripts = borrowEngine();
+        try {
+            String[] outputs = new String[contents.size()];
+            scripts.get(wrapBatch(script)).eval(new SimpleBindings(new HashMap<String, Object>() {{
+                put(BATCH_INPUTS, contents.toArray(new String[0]));
+                put(BATCH_OUTPUTS, outputs);
+            }}));
+            return Arrays.asList(outputs);
+        } finally {
+            engines.offer(scripts);
+        }
+    }
+
+    /**
+     * Takes idle engine (represented by its cache of compiled scripts) from the pool or creates the new one.
+     *
+     * @return Cache of scripts compiled by the engine.
+     */
+    private LoadingCache<String, CompiledScript> borrowEngine() {
+        LoadingCache<String, CompiledScript> scripts = engines.poll();
+        if (scripts != null) {
+            return scripts;
+        }
+        CoffeeScriptEngine coffeeScriptEngine = (CoffeeScriptEngine) new CoffeeScriptEngineFactory().getScriptEngine();
+        return CacheBuilder.newBuilder()
+                .maximumSize(100)
+                .build(
+                        new CacheLoader<String, CompiledScript>() {
+                            public CompiledScript load(String script) throws ScriptException {
+                                return coffeeScriptEngine.compile(script);
+                            }
+                        });
+    }
+
+    /**
+     * Wraps script into the function of the input variable, called for every element of the inputs array.
+     *
+     * @param script Mappings script.
+     * @return Batch script.
+     */
+    private String wrapBatch(String script) {
+        return toFunction(BATCH_FUNCTION, script) +
+                "for __tfItem, __tfIndex in " + BATCH_INPUTS + "\n" +
+                "  __tfOutput = " + BATCH_FUNCTION + "(__tfItem)\n" +
+                "  " + BATCH_OUTPUTS + "[__tfIndex] = if typeof __tfOutput is 'string' then __tfOutput else JSON.stringify(__tfOutput) ? 'null'\n" +
+                "null\n";
     }
 
 }
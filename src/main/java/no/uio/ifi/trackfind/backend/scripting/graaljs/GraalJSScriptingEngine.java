@@ -0,0 +1,216 @@
+package no.uio.ifi.trackfind.backend.scripting.graaljs;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.scripting.AbstractScriptingEngine;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.Source;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * GraalJS implementation of the Scripting Engine: mappings are written in CoffeeScript (as for
+ * {@link no.uio.ifi.trackfind.backend.scripting.coffeescript.CoffeeScriptScriptingEngine}), compiled to JavaScript once
+ * per script and run by the GraalVM JavaScript runtime: interpreted on the stock JDK (as in the Docker image),
+ * compiled to machine code only on GraalVM. Compiled sources are cached and shared by all contexts (through the common
+ * polyglot engine), contexts are pooled and reused.
+ * Input variable holds the dataset as a native JavaScript object ({@code JSON.parse} returns it as is, so scripts
+ * written for the CoffeeScript engine work unchanged); the script may return either an object or a JSON string,
+ * <code>undefined</code> result is returned as <code>null</code>.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Component
+public class GraalJSScriptingEngine extends AbstractScriptingEngine {
+
+    private static final String LANGUAGE_ID = "js";
+    private static final String MAP_FUNCTION = "__tfMap";
+    // all contexts of the shared engine must have the same host access configuration
+    private static final HostAccess HOST_ACCESS = HostAccess.newBuilder().allowListAccess(true).build();
+    private static final String CONTEXT_PRELUDE = "var __tfParse = JSON.parse;\n" +
+            "JSON.parse = function(text, reviver) { return text !== null && typeof text === 'object' ? text : __tfParse(text, reviver); };";
+    private static final String BATCH_TEMPLATE = "(function() {\n%s\n" +
+            "return function(inputs) {\n" +
+            "  var outputs = new Array(inputs.length);\n" +
+            "  for (var i = 0; i < inputs.length; i++) {\n" +
+            "    var output = " + MAP_FUNCTION + "(__tfParse(inputs[i]));\n" +
+            "    outputs[i] = typeof output === 'string' ? output : output === undefined ? 'null' : JSON.stringify(output);\n" +
+            "  }\n" +
+            "  return outputs;\n" +
+            "};\n" +
+            "})()";
+
+    @Value("${trackfind.scripting.graaljs.coffeescript-compiler}")
+    private String coffeeScriptCompilerLocation;
+
+    private final Queue<PooledContext> contexts = new ConcurrentLinkedQueue<>();
+    private final LoadingCache<String, Source> sources = CacheBuilder.newBuilder()
+            .maximumSize(100)
+            .build(
+                    new CacheLoader<String, Source>() {
+                        public Source load(String script) throws IOException {
+                            return Source.newBuilder(LANGUAGE_ID, String.format(BATCH_TEMPLATE, compileCoffeeScript(toFunction(MAP_FUNCTION, script))), "mapping.js").build();
+                        }
+                    });
+
+    private Engine engine;
+    private Context compilerContext;
+    private org.graalvm.polyglot.Value compiler;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLanguage() {
+        return "GraalJS";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String execute(String script, String content) throws Exception {
+        return executeBatch(script, Collections.singletonList(content)).get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> executeBatch(String script, List<String> contents) throws Exception {
+        Source source = sources.get(script);
+        PooledContext context = borrowContext();
+        try {
+            org.graalvm.polyglot.Value results = context.getFunction(source).execute(contents);
+            List<String> outputs = new ArrayList<>(contents.size());
+            for (int i = 0; i < results.getArraySize(); i++) {
+                outputs.add(results.getArrayElement(i).asString());
+            }
+            return outputs;
+        } finally {
+            contexts.offer(context);
+        }
+    }
+
+    private PooledContext borrowContext() {
+        PooledContext context = contexts.poll();
+        if (context != null) {
+            return context;
+        }
+        Context newContext = Context.newBuilder(LANGUAGE_ID)
+                .engine(getEngine())
+                .allowHostAccess(HOST_ACCESS)
+                .build();
+        newContext.eval(LANGUAGE_ID, CONTEXT_PRELUDE);
+        return new PooledContext(newContext);
+    }
+
+    /**
+     * Compiles CoffeeScript to JavaScript (without the top-level function wrapper).
+     *
+     * @param coffeeScript CoffeeScript source.
+     * @return JavaScript source.
+     * @throws IOException in case the CoffeeScript compiler can't be loaded.
+     */
+    private synchronized String compileCoffeeScript(String coffeeScript) throws IOException {
+        if (compiler == null) {
+            compilerContext = Context.newBuilder(LANGUAGE_ID).engine(getEngine()).allowHostAccess(HOST_ACCESS).build();
+            try (Reader reader = new InputStreamReader(new ClassPathResource(coffeeScriptCompilerLocation).getInputStream(), StandardCharsets.UTF_8)) {
+                compilerContext.eval(Source.newBuilder(LANGUAGE_ID, reader, "coffee-script.js").build());
+            }
+            compiler = compilerContext.eval(LANGUAGE_ID, "(function(source) { return CoffeeScript.compile(source, {bare: true}); })");
+        }
+        return compiler.execute(coffeeScript).asString();
+    }
+
+    private synchronized Engine getEngine() {
+        if (engine == null) {
+            engine = Engine.create();
+            log.info("GraalJS engine created: {}", engine.getImplementationName());
+        }
+        return engine;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        PooledContext context;
+        while ((context = contexts.poll()) != null) {
+            context.getContext().close();
+        }
+        if (compilerContext != null) {
+            compilerContext.close();
+        }
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    /**
+     * Smoke check, run when the Docker image is built: executes a mapping with the default settings.
+     *
+     * @param args Not used.
+     * @throws Exception in case GraalJS doesn't work.
+     */
+    public static void main(String[] args) throws Exception {
+        GraalJSScriptingEngine scriptingEngine = new GraalJSScriptingEngine();
+        scriptingEngine.input = "input";
+        scriptingEngine.coffeeScriptCompilerLocation = "com/netopyr/coffee4java/coffee-script.js";
+        try {
+            String result = scriptingEngine.execute("source = JSON.parse(input)\nsource['checked'] = true\nsource", "{\"id\": 1}");
+            if (!"{\"id\":1,\"checked\":true}".equals(result)) {
+                throw new IllegalStateException("Unexpected result of GraalJS mapping: " + result);
+            }
+            log.info("GraalJS mapping executed: {}", result);
+        } finally {
+            scriptingEngine.close();
+        }
+    }
+
+    /**
+     * Context (confined to one thread at a time) with functions evaluated from the cached sources.
+     */
+    private static class PooledContext {
+
+        private final Context context;
+        private final LoadingCache<Source, org.graalvm.polyglot.Value> functions;
+
+        PooledContext(Context context) {
+            this.context = context;
+            this.functions = CacheBuilder.newBuilder()
+                    .maximumSize(100)
+                    .build(
+                            new CacheLoader<Source, org.graalvm.polyglot.Value>() {
+                                public org.graalvm.polyglot.Value load(Source source) {
+                                    return context.eval(source);
+                                }
+                            });
+        }
+
+        Context getContext() {
+            return context;
+        }
+
+        org.graalvm.polyglot.Value getFunction(Source source) {
+            return functions.getUnchecked(source);
+        }
+
+    }
+
+}
@@ -1,13 +1,25 @@
 package no.uio.ifi.trackfind.backend.services.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.cache.HubCacheKey;
 import no.uio.ifi.trackfind.backend.events.DataReloadEvent;
 import no.uio.ifi.trackfind.backend.pojo.Queries;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Service for resetting caches.
@@ -18,17 +30,118 @@ import org.springframework.transaction.event.TransactionalEventListener;
 @Transactional
 public class CacheService {
 
+    /**
+     * Caches with entries keyed by {@link HubCacheKey}.
+     */
+    public static final String[] HUB_SCOPED_CACHES = {
+            "metamodel-array-of-objects-attributes",
+            "metamodel-flat",
+            "metamodel-tree",
+            "metamodel-categories",
+            "metamodel-attributes",
+            "metamodel-attributes-flat",
+            "metamodel-attribute-types",
+            "metamodel-values",
+            "metamodel-references",
+            "metamodel-categories-by-name",
+            "search",
+            "count",
+            "gsuite"
+    };
+
+    /**
+     * Caches depending on references between object types.
+     */
+    public static final String[] REFERENCE_SCOPED_CACHES = {
+            "metamodel-references",
+            "search",
+            "count",
+            "gsuite"
+    };
+
+    private final Map<Pair<String, String>, Long> currentVersionIds = new ConcurrentHashMap<>();
+
     protected TrackFindService trackFindService;
     protected JdbcTemplate jdbcTemplate;
+    protected CacheManager cacheManager;
+    protected ClusterNotificationService clusterNotificationService;
 
     /**
-     * Refreshes materialized views in the database.
+     * Refreshes materialized views in the database and evicts cache entries of the reloaded hub.
      */
     @TransactionalEventListener(classes = DataReloadEvent.class)
     public void resetCaches(DataReloadEvent dataReloadEvent) {
-        log.info("Event {} received.", dataReloadEvent.getSource());
+        log.info("Event {} received for {}: {}.", dataReloadEvent.getSource(), dataReloadEvent.getRepository(), dataReloadEvent.getHubName());
         jdbcTemplate.execute(Queries.REFRESH_MATERIALIZED_VIEWS);
         log.info("Materialized views refreshed.");
+        evictHub(dataReloadEvent.getRepository(), dataReloadEvent.getHubName(), HUB_SCOPED_CACHES);
+        clusterNotificationService.publishReload(dataReloadEvent);
+    }
+
+    /**
+     * Gets ID of the current version of the hub. The value is memoized until the hub is evicted.
+     *
+     * @param repository Repository name.
+     * @param hub        Hub name.
+     * @return Current version ID or null if the hub has no versions yet.
+     */
+    public Long getCurrentVersionId(String repository, String hub) {
+        return currentVersionIds.computeIfAbsent(Pair.of(repository, hub), key -> {
+            List<Long> ids = jdbcTemplate.queryForList("SELECT v.id FROM tf_versions v JOIN tf_hubs h ON h.id = v.hub_id " +
+                    "WHERE h.repository = ? AND h.name = ? AND v.current = TRUE", Long.class, repository, hub);
+            return ids.isEmpty() ? null : ids.iterator().next();
+        });
+    }
+
+    /**
+     * Evicts hub entries from specified caches once the current transaction is committed (or immediately, if there's no transaction).
+     * Other nodes of the cluster are notified as well.
+     *
+     * @param repository Repository name.
+     * @param hub        Hub name.
+     * @param cacheNames Caches to evict entries from.
+     */
+    public void evictHubAfterCommit(String repository, String hub, String... cacheNames) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictHub(repository, hub, cacheNames);
+            clusterNotificationService.publishEviction(repository, hub, cacheNames);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictHub(repository, hub, cacheNames);
+                clusterNotificationService.publishEviction(repository, hub, cacheNames);
+            }
+        });
+    }
+
+    /**
+     * Evicts hub entries from specified caches, leaving entries of other hubs untouched.
+     *
+     * @param repository Repository name.
+     * @param hub        Hub name.
+     * @param cacheNames Caches to evict entries from.
+     */
+    @SuppressWarnings("unchecked")
+    public void evictHub(String repository, String hub, String... cacheNames) {
+        currentVersionIds.remove(Pair.of(repository, hub));
+        for (String cacheName : cacheNames) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache == null) {
+                continue;
+            }
+            Object nativeCache = cache.getNativeCache();
+            if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+                nativeCache = ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache).asMap();
+            }
+            if (nativeCache instanceof ConcurrentMap) {
+                ((ConcurrentMap<Object, Object>) nativeCache).keySet().removeIf(key -> key instanceof HubCacheKey && ((HubCacheKey) key).belongsTo(repository, hub));
+            } else {
+                cache.clear();
+            }
+        }
+        log.info("Caches {} evicted for {}: {}.", Arrays.toString(cacheNames), repository, hub);
     }
 
     @Autowired
@@ -41,4 +154,14 @@ public class CacheService {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    @Autowired
+    public void setCacheManager(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Autowired
+    public void setClusterNotificationService(ClusterNotificationService clusterNotificationService) {
+        this.clusterNotificationService = clusterNotificationService;
+    }
+
 }
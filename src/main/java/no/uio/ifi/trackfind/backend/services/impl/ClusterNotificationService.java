@@ -0,0 +1,219 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.events.ClusterNotification;
+import no.uio.ifi.trackfind.backend.events.DataReloadEvent;
+import no.uio.ifi.trackfind.backend.operations.Operation;
+import org.apache.commons.lang3.StringUtils;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Service for keeping caches of several TrackFind nodes (sharing the same database) coherent.
+ * Reload and eviction events are published using PostgreSQL LISTEN/NOTIFY mechanism,
+ * every node listens to the channel and performs targeted cache invalidation and warm-up.
+ */
+@Slf4j
+@Service
+public class ClusterNotificationService {
+
+    private static final int POLLING_TIMEOUT = 1000;
+    private static final int RECONNECTION_DELAY = 5000;
+
+    private final String node = UUID.randomUUID().toString();
+
+    @Value("${trackfind.cluster.enabled}")
+    private boolean enabled;
+
+    @Value("${trackfind.cluster.channel}")
+    private String channel;
+
+    @Value("${spring.datasource.url}")
+    private String jdbcUrl;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    private DataSource dataSource;
+    private CacheService cacheService;
+    private MetamodelService metamodelService;
+    private ExecutorService executorService;
+    private Gson gson;
+
+    private volatile boolean listening;
+    private Connection connection;
+
+    @PostConstruct
+    private void init() {
+        enabled = enabled && StringUtils.startsWith(jdbcUrl, "jdbc:postgresql:");
+        if (!enabled) {
+            log.info("Cluster notifications are disabled.");
+            return;
+        }
+        listening = true;
+        executorService.submit(this::listen);
+        log.info("Node {} is listening to the channel {}.", node, channel);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        listening = false;
+    }
+
+    /**
+     * Notifies other nodes about reloaded hub.
+     *
+     * @param dataReloadEvent Reload event.
+     */
+    public void publishReload(DataReloadEvent dataReloadEvent) {
+        publish(new ClusterNotification(node,
+                ClusterNotification.Type.RELOAD,
+                dataReloadEvent.getRepository(),
+                dataReloadEvent.getHubName(),
+                (Operation) dataReloadEvent.getSource(),
+                CacheService.HUB_SCOPED_CACHES));
+    }
+
+    /**
+     * Notifies other nodes about evicted caches.
+     *
+     * @param repository Repository name.
+     * @param hub        Hub name.
+     * @param cacheNames Evicted caches.
+     */
+    public void publishEviction(String repository, String hub, String... cacheNames) {
+        publish(new ClusterNotification(node, ClusterNotification.Type.EVICTION, repository, hub, null, cacheNames));
+    }
+
+    protected void publish(ClusterNotification notification) {
+        if (!enabled) {
+            return;
+        }
+        // separate auto-commit connection: notifications sent within a transaction are delivered only upon commit
+        try (Connection notifyingConnection = dataSource.getConnection();
+             PreparedStatement statement = notifyingConnection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            notifyingConnection.setAutoCommit(true);
+            statement.setString(1, channel);
+            statement.setString(2, gson.toJson(notification));
+            statement.execute();
+        } catch (SQLException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private void listen() {
+        while (listening) {
+            try {
+                if (connection == null || connection.isClosed()) {
+                    connect();
+                }
+                PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications(POLLING_TIMEOUT);
+                if (notifications == null) {
+                    continue;
+                }
+                for (PGNotification notification : notifications) {
+                    handle(gson.fromJson(notification.getParameter(), ClusterNotification.class));
+                }
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                disconnect();
+                try {
+                    Thread.sleep(RECONNECTION_DELAY);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        disconnect();
+    }
+
+    private void connect() throws SQLException {
+        connection = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + channel);
+        }
+    }
+
+    private void disconnect() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.error(e.getMessage(), e);
+        }
+        connection = null;
+    }
+
+    protected void handle(ClusterNotification notification) {
+        boolean remote = !node.equals(notification.getNode());
+        String repository = notification.getRepository();
+        String hub = notification.getHub();
+        if (remote) {
+            log.info("Notification {} received from node {} for {}: {}.", notification.getType(), notification.getNode(), repository, hub);
+            cacheService.evictHub(repository, hub, notification.getCaches());
+        }
+        if (ClusterNotification.Type.RELOAD.equals(notification.getType())) {
+            warmUp(repository, hub);
+        }
+    }
+
+    /**
+     * Pre-populates the most frequently used caches of the hub.
+     *
+     * @param repository Repository name.
+     * @param hub        Hub name.
+     */
+    protected void warmUp(String repository, String hub) {
+        try {
+            metamodelService.getObjectTypes(repository, hub);
+            metamodelService.getReferences(repository, hub);
+            metamodelService.getMetamodelTree(repository, hub, "", "");
+            log.info("Caches warmed up for {}: {}.", repository, hub);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    @Autowired
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Autowired
+    public void setCacheService(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+    @Autowired
+    public void setMetamodelService(MetamodelService metamodelService) {
+        this.metamodelService = metamodelService;
+    }
+
+    @Autowired
+    public void setExecutorService(ExecutorService notificationPool) {
+        this.executorService = notificationPool;
+    }
+
+    @Autowired
+    public void setGson(Gson gson) {
+        this.gson = gson;
+    }
+
+}
@@ -0,0 +1,120 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.operations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Service for periodic re-crawling of hubs having crawl schedule (cron expression) set.
+ * Schedules are checked periodically: due runs are claimed in the database (so that only one node of the cluster
+ * submits the job), then submitted to {@link JobService} after random delay (jitter), to avoid crawling all the hubs
+ * at once. Runs are skipped while the hub is being curated; if crawling of the hub is already queued, runs are coalesced.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Service
+public class CrawlSchedulingService implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Value("${trackfind.jobs.schedule-check-interval}")
+    private long checkInterval;
+
+    @Value("${trackfind.jobs.jitter}")
+    private long jitter;
+
+    private JdbcTemplate jdbcTemplate;
+    private JobService jobService;
+    private TaskScheduler taskScheduler;
+    private Clock clock;
+
+    /**
+     * Validates crawl schedule.
+     *
+     * @param crawlSchedule Cron expression (seconds, minutes, hours, day of month, month, day of week).
+     * @return true if the expression is valid.
+     */
+    public static boolean isValid(String crawlSchedule) {
+        return CronSequenceGenerator.isValidExpression(crawlSchedule);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        taskScheduler.scheduleWithFixedDelay(this::checkSchedules, Duration.ofMillis(checkInterval));
+    }
+
+    private void checkSchedules() {
+        try {
+            List<Map<String, Object>> hubs = jdbcTemplate.queryForList("SELECT id, repository, name, crawl_schedule, last_scheduled_crawl FROM tf_hubs WHERE crawl_schedule IS NOT NULL");
+            for (Map<String, Object> hub : hubs) {
+                String repository = (String) hub.get("repository");
+                String name = (String) hub.get("name");
+                String crawlSchedule = (String) hub.get("crawl_schedule");
+                if (!isValid(crawlSchedule)) {
+                    log.warn("Invalid crawl schedule for {}: {}: {}", repository, name, crawlSchedule);
+                    continue;
+                }
+                Timestamp lastRun = (Timestamp) hub.get("last_scheduled_crawl");
+                Date now = new Date(clock.millis());
+                Date from = lastRun == null ? new Date(now.getTime() - checkInterval) : lastRun;
+                if (new CronSequenceGenerator(crawlSchedule).next(from).after(now) || !claim((Long) hub.get("id"), lastRun, now)) {
+                    continue;
+                }
+                long delay = jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0;
+                log.info("Scheduled crawling of {}: {} in {} ms.", repository, name, delay);
+                taskScheduler.schedule(() -> submit(repository, name), Instant.now(clock).plusMillis(delay));
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private boolean claim(long hubId, Timestamp lastRun, Date now) {
+        return jdbcTemplate.update("UPDATE tf_hubs SET last_scheduled_crawl = ? WHERE id = ? AND last_scheduled_crawl IS NOT DISTINCT FROM ?::timestamp",
+                new Timestamp(now.getTime()), hubId, lastRun) == 1;
+    }
+
+    private void submit(String repository, String hubName) {
+        if (jobService.isActive(repository, hubName, Operation.CURATION)) {
+            log.info("Skipping scheduled crawling of {}: {}, the hub is being curated.", repository, hubName);
+            return;
+        }
+        jobService.submit(repository, hubName, Operation.CRAWLING, JobService.SCHEDULED_PRIORITY);
+    }
+
+    @Autowired
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Autowired
+    public void setJobService(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @Autowired
+    public void setTaskScheduler(TaskScheduler jobsScheduler) {
+        this.taskScheduler = jobsScheduler;
+    }
+
+    @Autowired
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+}
@@ -0,0 +1,213 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.data.AttributePath;
+import no.uio.ifi.trackfind.backend.pojo.SearchResult;
+import no.uio.ifi.trackfind.backend.pojo.TfMapping;
+import no.uio.ifi.trackfind.backend.pojo.TfVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.util.*;
+
+/**
+ * Service tracking inputs and outputs of curation for incremental re-curation. Every curated entry is fingerprinted by
+ * the mapping chain and by the source data the mappings read: values of the source attributes and target objects for
+ * static mappings, the whole entry if there are dynamic mappings. Outputs (content hashes of the mapped objects) are
+ * recorded per fingerprint, so that the next curation can carry them forward instead of running the mappings again.
+ * Only fingerprints of the latest curation of the hub are kept.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class CurationFingerprintService {
+
+    private static final String PREVIOUS_VERSION_SQL = "SELECT v.id FROM tf_versions v WHERE v.hub_id = ? AND v.id <> ? " +
+            "AND EXISTS (SELECT 1 FROM tf_curation_fingerprints f WHERE f.version_id = v.id) ORDER BY v.id DESC LIMIT 1";
+    private static final String FIND_SQL = "SELECT f.fingerprint, f.object_type_name, f.content_hash FROM tf_curation_fingerprints f " +
+            "WHERE f.version_id = ? AND f.fingerprint = ANY (?) " +
+            "AND NOT EXISTS (SELECT 1 FROM tf_curation_fingerprints m WHERE m.version_id = f.version_id AND m.fingerprint = f.fingerprint " +
+            "AND m.content_hash IS NOT NULL AND NOT EXISTS (SELECT 1 FROM tf_documents d WHERE d.hash = m.content_hash))";
+    private static final String STORE_SQL = "INSERT INTO tf_curation_fingerprints (version_id, fingerprint, object_type_name, content_hash) " +
+            "SELECT ?, unnest(?), unnest(?), unnest(?) ON CONFLICT DO NOTHING";
+    private static final String PRUNE_SQL = "DELETE FROM tf_curation_fingerprints f USING tf_versions v " +
+            "WHERE v.id = f.version_id AND v.hub_id = ? AND v.id <> ?";
+
+    @Value("${trackfind.scripting.language}")
+    private String scriptingLanguage;
+
+    private JdbcTemplate jdbcTemplate;
+    private Gson gson;
+
+    /**
+     * Fingerprints the mapping chain.
+     *
+     * @param mappings Mappings in order of application.
+     * @return Fingerprint of the definitions of the mappings.
+     */
+    public String getChainFingerprint(Collection<TfMapping> mappings) {
+        StringBuilder chain = new StringBuilder(scriptingLanguage).append('\n');
+        for (TfMapping mapping : mappings) {
+            chain.append(mapping.getFromObjectType() == null ? "" : mapping.getFromObjectType().getName()).append('\t')
+                    .append(Objects.toString(mapping.getFromAttribute(), "")).append('\t')
+                    .append(mapping.getToObjectType() == null ? "" : mapping.getToObjectType().getName()).append('\t')
+                    .append(Objects.toString(mapping.getToAttribute(), "")).append('\t')
+                    .append(Objects.toString(mapping.getScript(), "")).append('\n');
+        }
+        return md5(chain.toString());
+    }
+
+    /**
+     * Fingerprints the entries: the mapping chain and the data the mappings read.
+     *
+     * @param chainFingerprint Fingerprint of the mapping chain.
+     * @param entries          Entries before curation.
+     * @param mappings         Mappings in order of application.
+     * @param separator        Separator of attribute paths.
+     * @return Fingerprints of the entries, in the same order.
+     */
+    @SuppressWarnings("rawtypes")
+    public List<String> getEntryFingerprints(String chainFingerprint, List<SearchResult> entries, Collection<TfMapping> mappings, String separator) {
+        boolean dynamic = isDynamic(mappings);
+        List<AttributePath> fromPaths = new ArrayList<>();
+        if (!dynamic) {
+            mappings.forEach(m -> fromPaths.add(AttributePath.compile(m.getFromAttribute(), separator)));
+        }
+        SortedSet<String> targets = getTargets(mappings);
+        List<String> fingerprints = new ArrayList<>(entries.size());
+        for (SearchResult entry : entries) {
+            StringBuilder inputs = new StringBuilder(chainFingerprint).append('\n');
+            if (dynamic) {
+                for (Map.Entry<String, Map> object : new TreeMap<>(entry.getContent()).entrySet()) {
+                    inputs.append(object.getKey()).append('\t').append(gson.toJson(object.getValue())).append('\n');
+                }
+            } else {
+                int i = 0;
+                for (TfMapping mapping : mappings) {
+                    Object value = fromPaths.get(i++).get(entry.getContent().get(mapping.getFromObjectType().getName()));
+                    inputs.append(gson.toJson(value)).append('\n');
+                }
+                for (String objectTypeName : targets) {
+                    inputs.append(objectTypeName).append('\t').append(gson.toJson(entry.getContent().get(objectTypeName))).append('\n');
+                }
+            }
+            fingerprints.add(md5(inputs.toString()));
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Checks whether the chain contains dynamic mappings (which may read and write any object of the entry).
+     *
+     * @param mappings Mappings.
+     * @return true if some of the mappings is dynamic.
+     */
+    public boolean isDynamic(Collection<TfMapping> mappings) {
+        return mappings.stream().anyMatch(m -> m.getFromObjectType() == null);
+    }
+
+    /**
+     * Gets names of object types written by static mappings.
+     *
+     * @param mappings Mappings.
+     * @return Names of target object types (sorted).
+     */
+    public SortedSet<String> getTargets(Collection<TfMapping> mappings) {
+        SortedSet<String> targets = new TreeSet<>();
+        mappings.stream().filter(m -> m.getToObjectType() != null).forEach(m -> targets.add(m.getToObjectType().getName()));
+        return targets;
+    }
+
+    /**
+     * Finds the version with fingerprints recorded by the previous curation of the hub.
+     *
+     * @param version New curation version.
+     * @return ID of the previous curation version, if any.
+     */
+    public Optional<Long> getPreviousVersionId(TfVersion version) {
+        return jdbcTemplate.queryForList(PREVIOUS_VERSION_SQL, Long.class, version.getHub().getId(), version.getId()).stream().findAny();
+    }
+
+    /**
+     * Finds outputs recorded for the fingerprints. Outputs referencing documents which are not stored anymore are skipped.
+     *
+     * @param versionId    ID of the version the fingerprints are recorded for.
+     * @param fingerprints Fingerprints of the entries.
+     * @return Outputs by fingerprints: content hashes of the mapped objects by object type names (null for kept objects).
+     */
+    public Map<String, Map<String, String>> find(long versionId, Collection<String> fingerprints) {
+        Map<String, Map<String, String>> outputs = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_SQL);
+            statement.setLong(1, versionId);
+            statement.setArray(2, connection.createArrayOf("varchar", new HashSet<>(fingerprints).toArray()));
+            return statement;
+        }, resultSet -> {
+            outputs.computeIfAbsent(resultSet.getString(1), k -> new HashMap<>()).put(resultSet.getString(2), resultSet.getString(3));
+        });
+        return outputs;
+    }
+
+    /**
+     * Records outputs of the curated entries.
+     *
+     * @param versionId ID of the curation version.
+     * @param outputs   Outputs by fingerprints (see {@link #find(long, Collection)}).
+     */
+    public void store(long versionId, Map<String, Map<String, String>> outputs) {
+        List<String> fingerprints = new ArrayList<>();
+        List<String> objectTypeNames = new ArrayList<>();
+        List<String> contentHashes = new ArrayList<>();
+        outputs.forEach((fingerprint, objects) -> objects.forEach((objectTypeName, contentHash) -> {
+            fingerprints.add(fingerprint);
+            objectTypeNames.add(objectTypeName);
+            contentHashes.add(contentHash);
+        }));
+        if (fingerprints.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(STORE_SQL);
+            statement.setLong(1, versionId);
+            statement.setArray(2, connection.createArrayOf("varchar", fingerprints.toArray()));
+            statement.setArray(3, connection.createArrayOf("varchar", objectTypeNames.toArray()));
+            statement.setArray(4, connection.createArrayOf("varchar", contentHashes.toArray()));
+            return statement;
+        });
+    }
+
+    /**
+     * Deletes fingerprints of previous curations of the hub.
+     *
+     * @param version Curation version (its fingerprints are kept).
+     * @return Number of deleted records.
+     */
+    public int prune(TfVersion version) {
+        return jdbcTemplate.update(PRUNE_SQL, version.getHub().getId(), version.getId());
+    }
+
+    private String md5(String value) {
+        return DigestUtils.md5DigestAsHex(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Autowired
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Autowired
+    public void setGson(Gson gson) {
+        this.gson = gson;
+    }
+
+}
@@ -7,6 +7,7 @@ import no.uio.ifi.trackfind.backend.pojo.TfVersion;
 import no.uio.ifi.trackfind.backend.repositories.VersionRepository;
 import no.uio.ifi.trackfind.backend.services.ValidationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,6 +27,7 @@ import java.util.stream.Collectors;
 @Slf4j
 @Service
 @Transactional
+@ConditionalOnProperty(name = "trackfind.validation.engine", havingValue = "EPICO")
 public class EPICOValidationService implements ValidationService {
 
     public static final String EPICO_VALIDATION_URL = "http://fairtracks.bsc.es/api/validate";
@@ -46,7 +48,7 @@ public class EPICOValidationService implements ValidationService {
         Map<String, Object> hubContent = new HashMap<>();
         Collection<TfObjectType> objectTypes = metamodelService.getObjectTypes(repository, hubName);
         for (TfObjectType objectType : objectTypes) {
-            List<Map<String, Object>> result = jdbcTemplate.queryForList("SELECT content from tf_objects WHERE object_type_id = " + objectType.getId());
+            List<Map<String, Object>> result = jdbcTemplate.queryForList("SELECT d.content FROM tf_objects o JOIN tf_documents d ON d.hash = o.content_hash WHERE o.object_type_id = " + objectType.getId());
             List<Map> results = result.stream().map(e -> e.values().iterator().next()).map(e -> gson.fromJson(String.valueOf(e), Map.class)).collect(Collectors.toList());
             hubContent.put(objectType.getName(), results);
         }
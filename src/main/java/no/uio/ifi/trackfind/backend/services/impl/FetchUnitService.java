@@ -0,0 +1,86 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import no.uio.ifi.trackfind.backend.data.ingestion.FetchUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service for managing fetch units (remote resources of hubs) used for incremental crawling.
+ *
+ * @author Dmytro Titov
+ */
+@Service
+@Transactional
+public class FetchUnitService {
+
+    private static final String CLEAR_CHECKPOINTS_SQL = "UPDATE tf_fetch_units SET staged_at = NULL, staged_unchanged = NULL, " +
+            "staged_etag = NULL, staged_last_modified = NULL WHERE hub_id = ?";
+
+    @Value("${trackfind.ingestion.checkpoint-ttl}")
+    private long checkpointTTL;
+
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Gets fetch units of the hub, registering missing ones. Registration is committed separately from the crawling,
+     * so that checkpoints can be stored independently. Checkpoints older than TTL are discarded, as well as objects
+     * of not checkpointed units (left by interrupted crawling).
+     *
+     * @param hubId ID of the hub.
+     * @param uris  URIs of the resources.
+     * @return Fetch units.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Collection<FetchUnit> getFetchUnits(long hubId, Collection<String> uris) {
+        jdbcTemplate.batchUpdate("INSERT INTO tf_fetch_units (hub_id, uri) VALUES (?, ?) ON CONFLICT DO NOTHING",
+                uris.stream().map(uri -> new Object[]{hubId, uri}).collect(Collectors.toList()));
+        Timestamp expiration = new Timestamp(System.currentTimeMillis() - checkpointTTL);
+        jdbcTemplate.update("DELETE FROM tf_staged_objects s USING tf_fetch_units fu " +
+                "WHERE fu.id = s.fetch_unit_id AND fu.hub_id = ? AND (fu.staged_at IS NULL OR fu.staged_at < ?)", hubId, expiration);
+        jdbcTemplate.update(CLEAR_CHECKPOINTS_SQL + " AND staged_at < ?", hubId, expiration);
+        List<FetchUnit> fetchUnits = jdbcTemplate.query("SELECT id, uri, etag, last_modified, staged_at IS NOT NULL AS staged, " +
+                        "COALESCE(staged_unchanged, FALSE) AS unchanged FROM tf_fetch_units WHERE hub_id = ?",
+                new BeanPropertyRowMapper<>(FetchUnit.class), hubId);
+        return fetchUnits.stream().filter(fu -> uris.contains(fu.getUri())).collect(Collectors.toList());
+    }
+
+    /**
+     * Finalizes checkpoints of the hub: stores validators of modified units and clears the staging area.
+     * To be called when staged objects are stored in the new version.
+     *
+     * @param hubId ID of the hub.
+     */
+    public void commitCheckpoints(long hubId) {
+        jdbcTemplate.update("UPDATE tf_fetch_units SET etag = staged_etag, last_modified = staged_last_modified " +
+                "WHERE hub_id = ? AND staged_at IS NOT NULL AND NOT staged_unchanged", hubId);
+        jdbcTemplate.update("DELETE FROM tf_staged_objects s USING tf_fetch_units fu WHERE fu.id = s.fetch_unit_id AND fu.hub_id = ?", hubId);
+        jdbcTemplate.update(CLEAR_CHECKPOINTS_SQL, hubId);
+    }
+
+    /**
+     * Finalizes checkpoints of the hub in a separate transaction.
+     * Used when crawling is rolled back because the content has not changed.
+     *
+     * @param hubId ID of the hub.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void commitCheckpointsInNewTransaction(long hubId) {
+        commitCheckpoints(hubId);
+    }
+
+    @Autowired
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+}
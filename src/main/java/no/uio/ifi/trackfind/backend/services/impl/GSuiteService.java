@@ -1,10 +1,9 @@
 package no.uio.ifi.trackfind.backend.services.impl;
 
-import alexh.weak.Dynamic;
 import com.google.gson.Gson;
 import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.data.AttributePath;
 import no.uio.ifi.trackfind.backend.pojo.SearchResult;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -31,12 +30,14 @@ public class GSuiteService {
     /**
      * Convert searchResults to GSuite.
      *
+     * @param repository    Repository name.
+     * @param hub           Hub name.
      * @param searchResults Datasets to convert.
      * @param attributes    Attributes to keep (the rest is discarded).
      * @return GSuite string.
      */
-    @Cacheable(value = "gsuite", sync = true)
-    public String apply(Collection<SearchResult> searchResults, String attributes) {
+    @Cacheable(value = "gsuite", keyGenerator = "hubScopedKeyGenerator", sync = true)
+    public String apply(String repository, String hub, Collection<SearchResult> searchResults, String attributes) {
         HttpEntity<Collection<SearchResult>> request;
         if (!StringUtils.isEmpty(attributes)) {
             request = new HttpEntity<>(filterAttributes(searchResults, attributes.split(",")));
@@ -46,38 +47,36 @@ public class GSuiteService {
         return loadBalancedRestTemplate.postForObject("http://gsuite/togsuite", request, String.class);
     }
 
+    @SuppressWarnings("unchecked")
     protected Collection<SearchResult> filterAttributes(Collection<SearchResult> searchResults, String[] attributes) {
         try {
+            Map<String, List<AttributePath>> pathsByCategories = new HashMap<>();
+            for (String category : Arrays.stream(attributes).map(a -> a.split(separator)[0].replace(".content", "")).collect(Collectors.toSet())) {
+                List<AttributePath> paths = new ArrayList<>();
+                for (String attribute : attributes) {
+                    if (attribute.startsWith(category)) {
+                        paths.add(AttributePath.compile(attribute.replace(category + ".content" + separator, ""), separator));
+                    }
+                }
+                pathsByCategories.put(category, paths);
+            }
             ArrayList<SearchResult> newSearchResults = new ArrayList<>();
-            Set<String> categoriesToKeep = Arrays.stream(attributes).map(a -> a.split(separator)[0].replace(".content", "")).collect(Collectors.toSet());
             for (SearchResult searchResult : searchResults) {
                 SearchResult newSearchResult = new SearchResult();
                 newSearchResults.add(newSearchResult);
-                for (String category : categoriesToKeep) {
-                    newSearchResult.getContent().put(category, new HashMap(searchResult.getContent().get(category)));
-                }
-                for (String category : categoriesToKeep) {
-                    Map oldMap = searchResult.getContent().get(category);
+                for (Map.Entry<String, List<AttributePath>> pathsByCategory : pathsByCategories.entrySet()) {
+                    Map oldMap = searchResult.getContent().get(pathsByCategory.getKey());
                     HashMap newMap = new HashMap();
-                    newSearchResult.getContent().put(category, newMap);
-                    for (String attribute : attributes) {
-                        if (!attribute.startsWith(category)) {
-                            continue;
-                        }
-                        attribute = attribute.replace(category + ".content" + separator, "").replace("'", "");
-                        Collection<String> values;
-                        Dynamic dynamicValues = Dynamic.from(oldMap).get(attribute, separator);
-                        if (dynamicValues.isPresent()) {
-                            if (dynamicValues.isList()) {
-                                values = dynamicValues.asList();
-                            } else {
-                                values = Collections.singletonList(dynamicValues.asString());
-                            }
+                    newSearchResult.getContent().put(pathsByCategory.getKey(), newMap);
+                    for (AttributePath path : pathsByCategory.getValue()) {
+                        Object value = path.get(oldMap);
+                        if (value != null && !(value instanceof List)) {
+                            // scalars are exported as strings, lists are exported as they are
+                            path.put(newMap, String.valueOf(value));
                         } else {
-                            values = Collections.emptyList();
+                            List<Object> values = path.getAll(oldMap);
+                            path.put(newMap, values.size() == 1 ? values.get(0) : values);
                         }
-                        String[] path = attribute.split(separator);
-                        putValueByPath(newMap, path, values);
                     }
                 }
             }
@@ -88,19 +87,6 @@ public class GSuiteService {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    protected void putValueByPath(Map<String, Object> standardMap, String[] path, Collection<String> values) {
-        Map<String, Object> nestedMap = standardMap;
-        for (int i = 0; i < path.length - 1; i++) {
-            nestedMap = (Map<String, Object>) nestedMap.computeIfAbsent(path[i], k -> new HashMap<String, Object>());
-        }
-        if (CollectionUtils.size(values) == 1) {
-            nestedMap.put(path[path.length - 1], values.iterator().next());
-        } else {
-            nestedMap.put(path[path.length - 1], values);
-        }
-    }
-
     @Autowired
     public void setLoadBalancedRestTemplate(RestTemplate loadBalancedRestTemplate) {
         this.loadBalancedRestTemplate = loadBalancedRestTemplate;
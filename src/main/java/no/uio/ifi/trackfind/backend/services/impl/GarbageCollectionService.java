@@ -0,0 +1,75 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service for periodic deletion of documents not referenced anymore (by objects of any version, removals, staged objects
+ * or curation fingerprints), see {@link ObjectStorageService#collectGarbage()}. Runs are scheduled by cron expression;
+ * only one node of the cluster collects garbage at a time, runs overlapping with writing of documents are skipped.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Service
+public class GarbageCollectionService implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Value("${trackfind.storage.gc-schedule}")
+    private String schedule;
+
+    private ObjectStorageService objectStorageService;
+    private PlatformTransactionManager transactionManager;
+    private TaskScheduler taskScheduler;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (StringUtils.isBlank(schedule)) {
+            return;
+        }
+        if (!CrawlSchedulingService.isValid(schedule)) {
+            log.warn("Invalid garbage collection schedule: {}", schedule);
+            return;
+        }
+        taskScheduler.schedule(this::collectGarbage, new CronTrigger(schedule));
+    }
+
+    /**
+     * Deletes orphan documents.
+     *
+     * @return Number of deleted documents.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public int collectGarbage() {
+        try {
+            return new TransactionTemplate(transactionManager).execute(status -> objectStorageService.collectGarbage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    @Autowired
+    public void setObjectStorageService(ObjectStorageService objectStorageService) {
+        this.objectStorageService = objectStorageService;
+    }
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    @Autowired
+    public void setTaskScheduler(TaskScheduler jobsScheduler) {
+        this.taskScheduler = jobsScheduler;
+    }
+
+}
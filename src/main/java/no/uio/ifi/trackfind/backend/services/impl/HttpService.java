@@ -0,0 +1,315 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Shared HTTP client for data providers. Connections are pooled (kept alive) and reused across requests, HTTP/2 is used
+ * when supported by the server, responses are requested compressed and decompressed transparently.
+ * Number of concurrent requests per host is capped: permit is held until the response body is closed, waiting for it is limited
+ * by timeout (reported as {@link HttpTimeoutException}, which is transient). TLS settings are chosen per provider.
+ * Latency (time to response headers) and transferred bytes are recorded per provider.
+ * Responses can be recorded to and replayed from {@link ResponseArchiveService}.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Service
+public class HttpService {
+
+    private static final String REQUESTS_METRIC = "trackfind.http.requests";
+    private static final String BYTES_METRIC = "trackfind.http.bytes";
+
+    @Value("${trackfind.http.connect-timeout}")
+    private long connectTimeout;
+
+    @Value("${trackfind.http.request-timeout}")
+    private long requestTimeout;
+
+    @Value("${trackfind.http.max-requests-per-host}")
+    private int maxRequestsPerHost;
+
+    @Value("${trackfind.http.permit-timeout}")
+    private long permitTimeout;
+
+    @Value("${trackfind.http.insecure-providers}")
+    private Set<String> insecureProviders;
+
+    private ResponseArchiveService responseArchiveService;
+    private MeterRegistry meterRegistry;
+
+    private final Map<Boolean, HttpClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * Sends GET request. Response body is decompressed, if needed.
+     *
+     * @param provider Name of the provider sending the request (used for choosing TLS settings and for metrics).
+     * @param uri      URI to fetch.
+     * @param headers  Additional request headers.
+     * @return Response with status 2xx or 3xx (to be closed by the caller).
+     * @throws IOException in case of I/O problems; responses with status 4xx or 5xx are reported as
+     *                     {@link org.springframework.web.client.HttpStatusCodeException}.
+     */
+    public Response get(String provider, String uri, Map<String, String> headers) throws IOException {
+        if (responseArchiveService.isReplaying()) {
+            return responseArchiveService.replay(provider, uri, headers);
+        }
+        URI target = URI.create(uri);
+        String host = String.valueOf(target.getHost());
+        HttpRequest.Builder builder = HttpRequest.newBuilder(target)
+                .timeout(Duration.ofMillis(requestTimeout))
+                .header("Accept-Encoding", "gzip, deflate")
+                .GET();
+        headers.forEach(builder::header);
+        Semaphore permits = hostPermits.computeIfAbsent(host, h -> new Semaphore(maxRequestsPerHost, true));
+        HttpResponse<InputStream> response;
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(permitTimeout, TimeUnit.MILLISECONDS)) {
+                recordLatency(provider, host, "timeout", start);
+                throw new HttpTimeoutException("Timed out waiting for a free connection to " + host + " while fetching " + uri);
+            }
+            try {
+                response = getClient(provider).send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                recordLatency(provider, host, "error", start);
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + uri);
+        }
+        int status = response.statusCode();
+        recordLatency(provider, host, String.valueOf(status), start);
+        InputStream body = new MeteredInputStream(response.body(), meterRegistry.counter(BYTES_METRIC, "provider", provider, "host", host), permits);
+        if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+            body.close();
+            raise(uri, status);
+        }
+        if (status >= HttpURLConnection.HTTP_MULT_CHOICE) {
+            return new Response(status, response.headers(), body);
+        }
+        try {
+            Response decodedResponse = new Response(status, response.headers(), decode(body, response.headers()));
+            return responseArchiveService.isRecording() ? responseArchiveService.record(provider, uri, decodedResponse) : decodedResponse;
+        } catch (IOException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches resource.
+     *
+     * @param provider Name of the provider sending the request.
+     * @param uri      URI to fetch.
+     * @return Decompressed content of the resource (to be closed by the caller).
+     * @throws IOException in case of I/O problems or unsuccessful response.
+     */
+    public InputStream openStream(String provider, String uri) throws IOException {
+        return get(provider, uri, Collections.emptyMap()).getBody();
+    }
+
+    private HttpClient getClient(String provider) {
+        return clients.computeIfAbsent(insecureProviders.contains(provider), this::createClient);
+    }
+
+    private HttpClient createClient(boolean insecure) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeout));
+        if (insecure) {
+            log.warn("Certificate validation is disabled for providers: {}", insecureProviders);
+            builder.sslContext(createTrustAllContext());
+        }
+        return builder.build();
+    }
+
+    private SSLContext createTrustAllContext() {
+        TrustManager trustAll = new X509ExtendedTrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+            }
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+            }
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        };
+        try {
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{trustAll}, new SecureRandom());
+            return sslContext;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private InputStream decode(InputStream body, HttpHeaders headers) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("identity");
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            return new GZIPInputStream(body);
+        } else if ("deflate".equalsIgnoreCase(encoding)) {
+            return new InflaterInputStream(body);
+        }
+        return body;
+    }
+
+    private void raise(String uri, int status) throws IOException {
+        String message = "Failed to fetch " + uri + ": HTTP " + status;
+        HttpStatus httpStatus = HttpStatus.resolve(status);
+        if (httpStatus == null) {
+            throw new IOException(message);
+        }
+        throw httpStatus.is4xxClientError()
+                ? HttpClientErrorException.create(message, httpStatus, httpStatus.getReasonPhrase(), null, null, null)
+                : HttpServerErrorException.create(message, httpStatus, httpStatus.getReasonPhrase(), null, null, null);
+    }
+
+    private void recordLatency(String provider, String host, String status, long start) {
+        meterRegistry.timer(REQUESTS_METRIC, "provider", provider, "host", host, "status", status)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Autowired
+    public void setResponseArchiveService(ResponseArchiveService responseArchiveService) {
+        this.responseArchiveService = responseArchiveService;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * HTTP response with (decompressed) body.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Response implements Closeable {
+
+        private final int statusCode;
+        private final HttpHeaders headers;
+        private final InputStream body;
+
+        /**
+         * @param name Header name.
+         * @return First value of the header, or null.
+         */
+        public String getHeader(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+
+    }
+
+    /**
+     * Stream counting transferred bytes and releasing the per-host permit when closed.
+     */
+    private static class MeteredInputStream extends FilterInputStream {
+
+        private final Counter bytes;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        MeteredInputStream(InputStream in, Counter bytes, Semaphore permits) {
+            super(in);
+            this.bytes = bytes;
+            this.permits = permits;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                bytes.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                bytes.increment(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+
+    }
+
+}
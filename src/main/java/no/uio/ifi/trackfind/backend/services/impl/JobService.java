@@ -0,0 +1,262 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.configuration.JobsProperties;
+import no.uio.ifi.trackfind.backend.data.providers.DataProvider;
+import no.uio.ifi.trackfind.backend.jobs.Job;
+import no.uio.ifi.trackfind.backend.jobs.JobStatus;
+import no.uio.ifi.trackfind.backend.operations.Operation;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduler of crawling and curation jobs. Jobs are queued and started in the order of priorities, respecting global
+ * and per-provider parallelism limits. Only one job per hub runs at a time. Jobs failed because of transient (I/O)
+ * problems are retried with exponential backoff.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Service
+public class JobService {
+
+    public static final int SCHEDULED_PRIORITY = 0;
+    public static final int INTERACTIVE_PRIORITY = 10;
+
+    private static final int HISTORY_SIZE = 100;
+
+    @Value("${trackfind.jobs.parallelism}")
+    private int parallelism;
+
+    @Value("${trackfind.jobs.provider-parallelism}")
+    private int providerParallelism;
+
+    @Value("${trackfind.jobs.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${trackfind.jobs.backoff}")
+    private long backoff;
+
+    @Value("${trackfind.jobs.max-backoff}")
+    private long maxBackoff;
+
+    private JobsProperties jobsProperties;
+    private TrackFindService trackFindService;
+    private ExecutorService executorService;
+    private TaskScheduler taskScheduler;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Job> queue = new ArrayList<>();
+    private final Map<Long, Job> jobs = new LinkedHashMap<>();
+    private final Map<String, Integer> runningByProviders = new HashMap<>();
+    private final Set<String> runningHubs = new HashSet<>();
+    private int running;
+
+    /**
+     * Submits the job. If the same job is already waiting (in the queue or for the retry) or running, it's returned instead.
+     *
+     * @param repository Repository name.
+     * @param hub        Hub name.
+     * @param operation  CRAWLING or CURATION.
+     * @param priority   Priority (jobs with higher priority are started first).
+     * @return Submitted job.
+     */
+    public synchronized Job submit(String repository, String hub, Operation operation, int priority) {
+        if (!Operation.CRAWLING.equals(operation) && !Operation.CURATION.equals(operation)) {
+            throw new IllegalArgumentException("Unsupported operation: " + operation);
+        }
+        Optional<Job> activeJob = findActive(repository, hub, operation);
+        if (activeJob.isPresent()) {
+            return activeJob.get();
+        }
+        Job job = new Job(sequence.incrementAndGet(), repository, hub, operation, priority, new Date(), SecurityContextHolder.getContext());
+        jobs.put(job.getId(), job);
+        queue.add(job);
+        log.info("Job submitted: {}", job);
+        dispatch();
+        return job;
+    }
+
+    /**
+     * Cancels the job, if it's not started yet.
+     *
+     * @param id ID of the job.
+     * @return true if the job is cancelled.
+     */
+    public synchronized boolean cancel(long id) {
+        Job job = jobs.get(id);
+        if (job == null || !(JobStatus.QUEUED.equals(job.getStatus()) || JobStatus.RETRYING.equals(job.getStatus()))) {
+            return false;
+        }
+        queue.remove(job);
+        job.setStatus(JobStatus.CANCELLED);
+        job.setFinished(new Date());
+        log.info("Job cancelled: {}", job);
+        return true;
+    }
+
+    /**
+     * Checks whether the job is waiting or running.
+     *
+     * @param repository Repository name.
+     * @param hub        Hub name.
+     * @param operation  CRAWLING or CURATION.
+     * @return true if there's such unfinished job.
+     */
+    public synchronized boolean isActive(String repository, String hub, Operation operation) {
+        return findActive(repository, hub, operation).isPresent();
+    }
+
+    private Optional<Job> findActive(String repository, String hub, Operation operation) {
+        return jobs.values().stream().filter(j -> j.getRepository().equals(repository)
+                && j.getHub().equals(hub)
+                && j.getOperation().equals(operation)
+                && j.getFinished() == null).findAny();
+    }
+
+    /**
+     * @return Recent jobs, latest first.
+     */
+    public synchronized List<Job> getJobs() {
+        List<Job> result = new ArrayList<>(jobs.values());
+        Collections.reverse(result);
+        return result;
+    }
+
+    private synchronized void dispatch() {
+        queue.sort(Comparator.comparingInt(Job::getPriority).reversed().thenComparingLong(Job::getId));
+        Iterator<Job> iterator = queue.iterator();
+        while (iterator.hasNext() && running < parallelism) {
+            Job job = iterator.next();
+            if (runningHubs.contains(getHubKey(job))
+                    || runningByProviders.getOrDefault(job.getRepository(), 0) >= getProviderParallelism(job.getRepository())) {
+                continue;
+            }
+            iterator.remove();
+            running++;
+            runningByProviders.merge(job.getRepository(), 1, Integer::sum);
+            runningHubs.add(getHubKey(job));
+            job.setStatus(JobStatus.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setStarted(new Date());
+            executorService.submit(new DelegatingSecurityContextRunnable(() -> execute(job), job.getSecurityContext()));
+        }
+    }
+
+    private void execute(Job job) {
+        log.info("Job started: {}", job);
+        Exception failure = null;
+        try {
+            DataProvider dataProvider = trackFindService.getDataProvider(job.getRepository());
+            if (Operation.CRAWLING.equals(job.getOperation())) {
+                dataProvider.crawlRemoteRepository(job.getHub());
+            } else {
+                dataProvider.runCuration(job.getHub());
+            }
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            complete(job, failure);
+        }
+    }
+
+    private synchronized void complete(Job job, Exception failure) {
+        running--;
+        runningByProviders.merge(job.getRepository(), -1, Integer::sum);
+        runningHubs.remove(getHubKey(job));
+        if (failure == null) {
+            job.setStatus(JobStatus.SUCCEEDED);
+            job.setFinished(new Date());
+            log.info("Job succeeded: {}", job);
+        } else if (isTransient(failure) && job.getAttempts() < maxAttempts) {
+            long delay = Math.min(maxBackoff, backoff << (job.getAttempts() - 1));
+            job.setStatus(JobStatus.RETRYING);
+            job.setError(ExceptionUtils.getRootCauseMessage(failure));
+            log.warn("Job failed, retrying in {} ms: {}", delay, job, failure);
+            taskScheduler.schedule(() -> retry(job), Instant.now().plusMillis(delay));
+        } else {
+            job.setStatus(JobStatus.FAILED);
+            job.setError(ExceptionUtils.getRootCauseMessage(failure));
+            job.setFinished(new Date());
+            log.error("Job failed: {}", job, failure);
+        }
+        evictHistory();
+        dispatch();
+    }
+
+    private synchronized void retry(Job job) {
+        if (!JobStatus.RETRYING.equals(job.getStatus())) {
+            return;
+        }
+        job.setStatus(JobStatus.QUEUED);
+        queue.add(job);
+        dispatch();
+    }
+
+    private void evictHistory() {
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (jobs.size() > HISTORY_SIZE && iterator.hasNext()) {
+            if (iterator.next().getFinished() != null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private boolean isTransient(Exception failure) {
+        for (Throwable cause : ExceptionUtils.getThrowableList(failure)) {
+            if (cause instanceof HttpStatusCodeException) {
+                int status = ((HttpStatusCodeException) cause).getRawStatusCode();
+                return status >= 500 || status == 429 || status == 408;
+            }
+            if (cause instanceof FileNotFoundException) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getProviderParallelism(String repository) {
+        return jobsProperties.getProviderParallelismOverrides().getOrDefault(repository, providerParallelism);
+    }
+
+    private String getHubKey(Job job) {
+        return job.getRepository() + ":" + job.getHub();
+    }
+
+    @Autowired
+    public void setJobsProperties(JobsProperties jobsProperties) {
+        this.jobsProperties = jobsProperties;
+    }
+
+    @Autowired
+    public void setTrackFindService(TrackFindService trackFindService) {
+        this.trackFindService = trackFindService;
+    }
+
+    @Autowired
+    public void setExecutorService(ExecutorService jobsPool) {
+        this.executorService = jobsPool;
+    }
+
+    @Autowired
+    public void setTaskScheduler(TaskScheduler jobsScheduler) {
+        this.taskScheduler = jobsScheduler;
+    }
+
+}
@@ -12,7 +12,6 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -43,8 +42,10 @@ public class MetamodelService {
     protected ObjectTypeRepository objectTypeRepository;
     protected MappingsRepository mappingsRepository;
     protected ApplicationEventPublisher applicationEventPublisher;
+    protected CacheService cacheService;
+    protected ObjectStorageService objectStorageService;
 
-    @Cacheable(value = "metamodel-flat", sync = true)
+    @Cacheable(value = "metamodel-flat", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Map<String, Multimap<String, String>> getMetamodelFlat(String repository, String hub, String attributesFilter, String valuesFilter, Set<Long> ids) {
         String fromClause = "tf_metamodel";
         if (CollectionUtils.isNotEmpty(ids)) {
@@ -89,7 +90,7 @@ public class MetamodelService {
     }
 
     @SuppressWarnings("unchecked")
-    @Cacheable(value = "metamodel-tree", sync = true)
+    @Cacheable(value = "metamodel-tree", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Map<String, Map<String, Object>> getMetamodelTree(String repository, String hub, String attributesFilter, String valuesFilter) {
         Map<String, Map<String, Object>> result = new HashMap<>();
         Collection<TfObjectType> objectTypes = metamodelService.getObjectTypes(repository, hub);
@@ -116,7 +117,7 @@ public class MetamodelService {
         return result;
     }
 
-    @Cacheable(value = "metamodel-categories", sync = true)
+    @Cacheable(value = "metamodel-categories", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Collection<TfObjectType> getObjectTypes(String repository, String hub) {
         TfHub hubEntity = hubRepository.findByRepositoryAndName(repository, hub);
         Optional<TfVersion> currentVersionOptional = hubEntity.getCurrentVersion();
@@ -127,7 +128,7 @@ public class MetamodelService {
         return currentVersion.getObjectTypes();
     }
 
-    @Cacheable(value = "metamodel-categories-by-name", sync = true)
+    @Cacheable(value = "metamodel-categories-by-name", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Optional<TfObjectType> findObjectTypeByName(String repository, String hub, String objectTypeName) {
         TfHub hubEntity = hubRepository.findByRepositoryAndName(repository, hub);
         Optional<TfVersion> currentVersionOptional = hubEntity.getCurrentVersion();
@@ -138,7 +139,7 @@ public class MetamodelService {
         return objectTypeRepository.findByVersionAndName(currentVersion, objectTypeName);
     }
 
-    @Cacheable(value = "metamodel-array-of-objects-attributes", sync = true)
+    @Cacheable(value = "metamodel-array-of-objects-attributes", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Collection<String> getArrayOfObjectsAttributes(String repository, String hub, String category) {
         TfObjectType objectType = getObjectTypes(repository, hub).stream().filter(c -> c.getName().equals(category)).findAny().orElseThrow(RuntimeException::new);
         return jdbcTemplate.queryForList(
@@ -148,7 +149,7 @@ public class MetamodelService {
     }
 
     @SuppressWarnings("rawtypes")
-    @Cacheable(value = "metamodel-attribute-types", sync = true)
+    @Cacheable(value = "metamodel-attribute-types", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Map<String, String> getAttributeTypes(String repository, String hub, String category) {
         TfObjectType objectType = metamodelService.getObjectTypes(repository, hub).stream().filter(c -> c.getName().equals(category)).findAny().orElseThrow(RuntimeException::new);
         Map<String, String> metamodel = new HashMap<>();
@@ -163,7 +164,7 @@ public class MetamodelService {
         return metamodel;
     }
 
-    @Cacheable(value = "metamodel-attributes-flat", sync = true)
+    @Cacheable(value = "metamodel-attributes-flat", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Collection<String> getAttributesFlat(String repository, String hub, String category, String path) {
         TfObjectType objectType = metamodelService.getObjectTypes(repository, hub).stream().filter(c -> c.getName().equals(category)).findAny().orElseThrow(RuntimeException::new);
         if (StringUtils.isEmpty(path)) {
@@ -179,7 +180,7 @@ public class MetamodelService {
         }
     }
 
-    @Cacheable(value = "metamodel-attributes", sync = true)
+    @Cacheable(value = "metamodel-attributes", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Collection<String> getAttributes(String repository, String hub, String category, String path) {
         return metamodelService.getAttributesFlat(repository, hub, category, path).stream()
                 .map(a -> {
@@ -192,14 +193,14 @@ public class MetamodelService {
                 .collect(Collectors.toSet());
     }
 
-    @Cacheable(value = "metamodel-values", sync = true)
+    @Cacheable(value = "metamodel-values", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Collection<String> getValues(String repository, String hub, String category, String path, String attributesFilter, String valuesFilter, Set<Long> ids) {
         Map<String, Multimap<String, String>> metamodelFlat = metamodelService.getMetamodelFlat(repository, hub, attributesFilter, valuesFilter, ids);
         Multimap<String, String> metamodel = metamodelFlat.get(category);
         return metamodel.get(path).parallelStream().collect(Collectors.toSet());
     }
 
-    @Cacheable(value = "metamodel-references", sync = true)
+    @Cacheable(value = "metamodel-references", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Collection<TfReference> getReferences(String repository, String hub) {
         TfHub currentHub = hubRepository.findByRepositoryAndName(repository, hub);
         Optional<TfVersion> currentVersionOptional = currentHub.getCurrentVersion();
@@ -215,27 +216,22 @@ public class MetamodelService {
         return references;
     }
 
-    @CacheEvict(cacheNames = {
-            "metamodel-references",
-            "search",
-            "gsuite"
-    }, allEntries = true)
     public TfReference addReference(TfReference reference) {
-        return referenceRepository.save(reference);
+        TfReference savedReference = referenceRepository.save(reference);
+        evictReferences(reference);
+        return savedReference;
     }
 
-    @CacheEvict(cacheNames = {
-            "metamodel-references", "search",
-            "gsuite"
-    }, allEntries = true)
     public void deleteReference(TfReference reference) {
         referenceRepository.delete(reference);
+        evictReferences(reference);
+    }
+
+    protected void evictReferences(TfReference reference) {
+        TfHub hub = reference.getFromObjectType().getVersion().getHub();
+        cacheService.evictHubAfterCommit(hub.getRepository(), hub.getName(), CacheService.REFERENCE_SCOPED_CACHES);
     }
 
-    @CacheEvict(cacheNames = {
-            "metamodel-references", "search",
-            "gsuite"
-    }, allEntries = true)
     public void copyReferencesFromAnotherVersionToCurrentVersion(String repository, String hubName, TfVersion sourceVersion) {
         TfHub hub = hubRepository.findByRepositoryAndName(repository, hubName);
         Optional<TfVersion> currentVersionOptional = hub.getCurrentVersion();
@@ -246,11 +242,6 @@ public class MetamodelService {
         copyReferencesFromOneVersionToAnotherVersion(sourceVersion, currentVersion);
     }
 
-    @CacheEvict(cacheNames = {
-            "metamodel-references",
-            "search",
-            "gsuite"
-    }, allEntries = true)
     public void copyReferencesFromOneVersionToAnotherVersion(TfVersion sourceVersion, TfVersion targetVersion) {
         log.info("Copying references from {} to {}", sourceVersion, targetVersion);
         Collection<TfObjectType> targetObjectTypes = targetVersion.getObjectTypes();
@@ -351,30 +342,18 @@ public class MetamodelService {
         mappingsRepository.saveAll(mappingsAfter);
     }
 
-    @CacheEvict(cacheNames = {
-            "metamodel-array-of-objects-attributes",
-            "metamodel-flat",
-            "metamodel-tree",
-            "metamodel-categories",
-            "metamodel-attributes",
-            "metamodel-attributes-flat",
-            "metamodel-attribute-types",
-            "metamodel-values",
-            "metamodel-references",
-            "metamodel-categories-by-name",
-            "search",
-            "gsuite"
-    }, allEntries = true)
     public void activateVersion(TfVersion version) {
         TfHub hub = version.getHub();
+        objectStorageService.materialize(version);
         Optional<TfVersion> currentVersion = hub.getCurrentVersion();
         currentVersion.ifPresent(cv -> {
             cv.setCurrent(false);
             versionRepository.saveAndFlush(cv);
         });
         version.setCurrent(true);
-        versionRepository.save(version);
-        applicationEventPublisher.publishEvent(new DataReloadEvent(hub.getName(), Operation.VERSION_CHANGE));
+        versionRepository.saveAndFlush(version);
+        objectStorageService.compact(hub);
+        applicationEventPublisher.publishEvent(new DataReloadEvent(hub.getRepository(), hub.getName(), Operation.VERSION_CHANGE));
     }
 
     @Autowired
@@ -417,4 +396,14 @@ public class MetamodelService {
         this.applicationEventPublisher = applicationEventPublisher;
     }
 
+    @Autowired
+    public void setCacheService(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+    @Autowired
+    public void setObjectStorageService(ObjectStorageService objectStorageService) {
+        this.objectStorageService = objectStorageService;
+    }
+
 }
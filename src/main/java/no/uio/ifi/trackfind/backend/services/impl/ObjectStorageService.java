@@ -0,0 +1,217 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.data.storage.BulkObjectWriter;
+import no.uio.ifi.trackfind.backend.pojo.TfHub;
+import no.uio.ifi.trackfind.backend.pojo.TfVersion;
+import no.uio.ifi.trackfind.backend.repositories.VersionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Service for bulk, content-addressed storing of objects.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class ObjectStorageService {
+
+    private static final String VERSION_OBJECTS_SQL = "SELECT ot.name, o.content_hash FROM tf_objects o " +
+            "JOIN tf_object_types ot ON ot.id = o.object_type_id WHERE ot.version_id = ?";
+    private static final String STORE_REMOVALS_SQL = "INSERT INTO tf_removed_objects (version_id, object_type_name, content_hash) " +
+            "SELECT ?, name, content_hash FROM (" + VERSION_OBJECTS_SQL + " EXCEPT " + VERSION_OBJECTS_SQL + " AND o.id IN (SELECT id FROM tf_kept_objects)) removed";
+    private static final String INHERIT_OBJECT_TYPES_SQL = "INSERT INTO tf_object_types (name, version_id) " +
+            "SELECT DISTINCT ot.name, ? FROM tf_object_types ot WHERE ot.version_id = ? " +
+            "AND NOT EXISTS (SELECT 1 FROM tf_object_types e WHERE e.version_id = ? AND e.name = ot.name)";
+    private static final String INHERIT_OBJECTS_SQL = "INSERT INTO tf_objects (id, object_type_id, content_hash, fetch_unit_id, inherited) " +
+            "SELECT nextval('tf_objects_ids_sequence'), nt.id, o.content_hash, o.fetch_unit_id, TRUE FROM tf_objects o " +
+            "JOIN tf_object_types ot ON ot.id = o.object_type_id " +
+            "JOIN tf_object_types nt ON nt.name = ot.name AND nt.version_id = ? " +
+            "WHERE ot.version_id = ? " +
+            "AND NOT EXISTS (SELECT 1 FROM tf_removed_objects r WHERE r.version_id = nt.version_id AND r.object_type_name = ot.name AND r.content_hash = o.content_hash) " +
+            "AND NOT EXISTS (SELECT 1 FROM tf_objects e WHERE e.object_type_id = nt.id AND e.content_hash = o.content_hash)";
+    private static final String COMPACT_SQL = "DELETE FROM tf_objects o USING tf_object_types ot " +
+            "WHERE ot.id = o.object_type_id AND ot.version_id = ? AND o.inherited";
+
+    @Value("${trackfind.storage.batch-size}")
+    private int batchSize;
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private VersionRepository versionRepository;
+
+    /**
+     * Opens writer bound to the connection of the current transaction.
+     *
+     * @return Bulk writer (to be closed before the transaction ends).
+     */
+    public BulkObjectWriter openWriter() {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return new BulkObjectWriter(connection, jdbcTemplate.getExceptionTranslator(), batchSize, () -> DataSourceUtils.releaseConnection(connection, dataSource));
+        } catch (SQLException e) {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+            throw jdbcTemplate.getExceptionTranslator().translate("COPY", null, e);
+        }
+    }
+
+    /**
+     * Opens staging writer bound to a separate connection, committed at every checkpoint of the fetch unit.
+     * Changes made after the last checkpoint are rolled back when the writer is closed.
+     *
+     * @return Staging writer (to be closed when crawling ends).
+     */
+    public BulkObjectWriter openStagingWriter() {
+        try {
+            Connection connection = dataSource.getConnection();
+            try {
+                connection.setAutoCommit(false);
+                return new BulkObjectWriter(connection, jdbcTemplate.getExceptionTranslator(), batchSize, () -> {
+                    try (connection) {
+                        connection.rollback();
+                    } catch (SQLException e) {
+                        log.error(e.getMessage(), e);
+                    }
+                });
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw jdbcTemplate.getExceptionTranslator().translate("COPY", null, e);
+        }
+    }
+
+    /**
+     * Checks whether two versions have different content (compared by object type names and content hashes).
+     *
+     * @param versionId      ID of one version.
+     * @param otherVersionId ID of another version.
+     * @return true if contents differ.
+     */
+    public boolean differs(long versionId, long otherVersionId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                String.format("SELECT EXISTS ((%1$s EXCEPT %1$s) UNION ALL (%1$s EXCEPT %1$s))", VERSION_OBJECTS_SQL),
+                Boolean.class, versionId, otherVersionId, otherVersionId, versionId));
+    }
+
+    /**
+     * Creates temporary table (dropped at the end of the transaction) for collecting IDs of base version objects
+     * kept unchanged by the curation.
+     */
+    public void createKeptObjects() {
+        jdbcTemplate.execute("CREATE TEMPORARY TABLE tf_kept_objects (id BIGINT PRIMARY KEY) ON COMMIT DROP");
+    }
+
+    /**
+     * Records IDs of base version objects kept unchanged by the curation.
+     *
+     * @param keptIds IDs of the objects.
+     */
+    public void keep(Collection<Long> keptIds) {
+        if (keptIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement("INSERT INTO tf_kept_objects SELECT unnest(?) ON CONFLICT DO NOTHING");
+            statement.setArray(1, connection.createArrayOf("bigint", keptIds.toArray()));
+            return statement;
+        });
+    }
+
+    /**
+     * Records objects of the base version which are not present in the delta version anymore, i.e. not recorded as kept
+     * (see {@link #keep(Collection)}).
+     * Objects are identified by object type names and content hashes, so records survive compaction of the base version.
+     *
+     * @param versionId     ID of the delta version.
+     * @param baseVersionId ID of the version the delta is based on.
+     * @return Number of removed objects.
+     */
+    public int storeRemovals(long versionId, long baseVersionId) {
+        return jdbcTemplate.update(STORE_REMOVALS_SQL, versionId, baseVersionId, baseVersionId);
+    }
+
+    /**
+     * Materializes delta version: copies inherited objects from the base version (materializing it first, if needed),
+     * so that the version can be queried on its own.
+     *
+     * @param version Version to materialize.
+     */
+    public void materialize(TfVersion version) {
+        if (!Boolean.FALSE.equals(version.getMaterialized())) {
+            return;
+        }
+        TfVersion baseVersion = version.getBasedOn();
+        materialize(baseVersion);
+        jdbcTemplate.update(INHERIT_OBJECT_TYPES_SQL, version.getId(), baseVersion.getId(), version.getId());
+        int inherited = jdbcTemplate.update(INHERIT_OBJECTS_SQL, version.getId(), baseVersion.getId());
+        version.setMaterialized(true);
+        versionRepository.save(version);
+        log.info("Version {} materialized: {} objects inherited from version {}.", version.getId(), inherited, baseVersion.getId());
+    }
+
+    /**
+     * Compacts materialized delta versions of the hub which are not current anymore: inherited objects are deleted,
+     * only changes relative to the base version are kept.
+     *
+     * @param hub Hub.
+     */
+    public void compact(TfHub hub) {
+        for (TfVersion version : versionRepository.findByHubAndDeltaTrueAndMaterializedTrueAndCurrentFalse(hub)) {
+            int deleted = jdbcTemplate.update(COMPACT_SQL, version.getId());
+            version.setMaterialized(false);
+            versionRepository.save(version);
+            log.info("Version {} compacted: {} inherited objects deleted.", version.getId(), deleted);
+        }
+    }
+
+    /**
+     * Deletes documents which are not referenced by any object anymore.
+     * Postponed (until the next run) while documents are being written by some transaction.
+     *
+     * @return Number of deleted documents.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public int collectGarbage() {
+        if (!jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(" + BulkObjectWriter.DOCUMENTS_LOCK_ID + ")", Boolean.class)) {
+            log.info("Documents are being written, garbage collection is postponed.");
+            return 0;
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM tf_documents d WHERE NOT EXISTS (SELECT 1 FROM tf_objects o WHERE o.content_hash = d.hash) " +
+                "AND NOT EXISTS (SELECT 1 FROM tf_removed_objects r WHERE r.content_hash = d.hash) " +
+                "AND NOT EXISTS (SELECT 1 FROM tf_staged_objects s WHERE s.content_hash = d.hash) " +
+                "AND NOT EXISTS (SELECT 1 FROM tf_curation_fingerprints f WHERE f.content_hash = d.hash)");
+        log.info("{} orphan documents deleted.", deleted);
+        return deleted;
+    }
+
+    @Autowired
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Autowired
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Autowired
+    public void setVersionRepository(VersionRepository versionRepository) {
+        this.versionRepository = versionRepository;
+    }
+
+}
@@ -0,0 +1,253 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local archive of raw HTTP responses fetched by data providers. In RECORD mode every successfully fetched response is
+ * stored to the disk (gzipped, content-addressed, so identical responses are stored once), along with per-provider index
+ * mapping URIs to content hashes and validators. In REPLAY mode responses are served from the archive, without network:
+ * crawling can be repeated offline (e.g. for re-ingestion or for benchmarking). Conditional requests are answered with
+ * 304 when validators match the archived ones.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Service
+public class ResponseArchiveService {
+
+    /**
+     * Archive mode.
+     */
+    public enum Mode {
+        OFF, RECORD, REPLAY
+    }
+
+    private static final String URI = "uri";
+    private static final String HASH = "hash";
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+
+    private final Mode mode;
+    private final Path blobsDirectory;
+    private final Path indexDirectory;
+    private final Path tmpDirectory;
+
+    @Autowired
+    public ResponseArchiveService(@Value("${trackfind.http.archive.mode}") Mode mode,
+                                  @Value("${trackfind.http.archive.directory}") String directory) throws IOException {
+        this.mode = mode;
+        Path root = Paths.get(directory);
+        this.blobsDirectory = root.resolve("blobs");
+        this.indexDirectory = root.resolve("index");
+        this.tmpDirectory = root.resolve("tmp");
+        if (!Mode.OFF.equals(mode)) {
+            Files.createDirectories(blobsDirectory);
+            Files.createDirectories(indexDirectory);
+            Files.createDirectories(tmpDirectory);
+            log.info("Response archive in {} mode: {}", mode, root.toAbsolutePath());
+        }
+    }
+
+    public boolean isRecording() {
+        return Mode.RECORD.equals(mode);
+    }
+
+    public boolean isReplaying() {
+        return Mode.REPLAY.equals(mode);
+    }
+
+    /**
+     * Serves archived response.
+     *
+     * @param provider Provider name.
+     * @param uri      URI of the resource.
+     * @param headers  Request headers (validators are taken into account).
+     * @return Archived response (with status 200 or 304).
+     * @throws IOException in case the resource is not archived.
+     */
+    public HttpService.Response replay(String provider, String uri, Map<String, String> headers) throws IOException {
+        Path indexFile = getIndexFile(provider, uri);
+        if (!Files.exists(indexFile)) {
+            throw new FileNotFoundException("Resource is not archived: " + uri);
+        }
+        Properties index = new Properties();
+        try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            index.load(reader);
+        }
+        Map<String, List<String>> responseHeaders = new HashMap<>();
+        for (String name : Arrays.asList(ETAG, LAST_MODIFIED)) {
+            String value = index.getProperty(name);
+            if (value != null) {
+                responseHeaders.put(name, Collections.singletonList(value));
+            }
+        }
+        HttpHeaders httpHeaders = HttpHeaders.of(responseHeaders, (name, value) -> true);
+        if (matches(index.getProperty(ETAG), headers.get("If-None-Match")) || matches(index.getProperty(LAST_MODIFIED), headers.get("If-Modified-Since"))) {
+            return new HttpService.Response(HttpURLConnection.HTTP_NOT_MODIFIED, httpHeaders, InputStream.nullInputStream());
+        }
+        InputStream body = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(getBlobFile(index.getProperty(HASH)))));
+        return new HttpService.Response(HttpURLConnection.HTTP_OK, httpHeaders, body);
+    }
+
+    /**
+     * Wraps the response so that its body is archived while being read.
+     * The response is archived when it's closed (the unread remainder of the body is read at that moment).
+     *
+     * @param provider Provider name.
+     * @param uri      URI of the resource.
+     * @param response Fetched (decompressed) response.
+     * @return Response to read instead of the original one.
+     * @throws IOException in case of some problems.
+     */
+    public HttpService.Response record(String provider, String uri, HttpService.Response response) throws IOException {
+        Path tmpFile = Files.createTempFile(tmpDirectory, "response-", ".gz");
+        OutputStream outputStream = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)));
+        InputStream body = new RecordingInputStream(response.getBody(), outputStream, hash -> store(provider, uri, response, tmpFile, hash), tmpFile);
+        return new HttpService.Response(response.getStatusCode(), response.getHeaders(), body);
+    }
+
+    private void store(String provider, String uri, HttpService.Response response, Path tmpFile, String hash) throws IOException {
+        Path blobFile = getBlobFile(hash);
+        if (Files.exists(blobFile)) {
+            Files.delete(tmpFile);
+        } else {
+            Files.createDirectories(blobFile.getParent());
+            Files.move(tmpFile, blobFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Properties index = new Properties();
+        index.setProperty(URI, uri);
+        index.setProperty(HASH, hash);
+        for (String name : Arrays.asList(ETAG, LAST_MODIFIED)) {
+            String value = response.getHeader(name);
+            if (value != null) {
+                index.setProperty(name, value);
+            }
+        }
+        Path indexFile = getIndexFile(provider, uri);
+        Files.createDirectories(indexFile.getParent());
+        Path tmpIndexFile = Files.createTempFile(tmpDirectory, "index-", ".properties");
+        try (Writer writer = Files.newBufferedWriter(tmpIndexFile, StandardCharsets.UTF_8)) {
+            index.store(writer, null);
+        }
+        Files.move(tmpIndexFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.debug("Response archived: {} -> {}", uri, hash);
+    }
+
+    private boolean matches(String archived, String requested) {
+        return archived != null && archived.equals(requested);
+    }
+
+    private Path getIndexFile(String provider, String uri) {
+        return indexDirectory.resolve(provider).resolve(DigestUtils.md5DigestAsHex(uri.getBytes(StandardCharsets.UTF_8)) + ".properties");
+    }
+
+    private Path getBlobFile(String hash) {
+        return blobsDirectory.resolve(hash.substring(0, 2)).resolve(hash + ".gz");
+    }
+
+    @FunctionalInterface
+    private interface Finalizer {
+
+        void accept(String hash) throws IOException;
+
+    }
+
+    /**
+     * Stream copying everything read to the archive file.
+     */
+    private static class RecordingInputStream extends FilterInputStream {
+
+        private final OutputStream outputStream;
+        private final Finalizer finalizer;
+        private final Path tmpFile;
+        private boolean failed;
+        private boolean closed;
+
+        @SuppressWarnings("UnstableApiUsage")
+        RecordingInputStream(InputStream in, OutputStream outputStream, Finalizer finalizer, Path tmpFile) {
+            super(new HashingInputStream(Hashing.sha256(), in));
+            this.outputStream = outputStream;
+            this.finalizer = finalizer;
+            this.tmpFile = tmpFile;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    outputStream.write(b, off, read);
+                }
+                return read;
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @SuppressWarnings("UnstableApiUsage")
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (!failed) {
+                    byte[] buffer = new byte[8192];
+                    while (read(buffer, 0, buffer.length) != -1) {
+                        // reading the remainder, so that the whole response is archived
+                    }
+                }
+            } finally {
+                outputStream.close();
+                super.close();
+                if (failed) {
+                    Files.deleteIfExists(tmpFile);
+                }
+            }
+            if (failed) {
+                return;
+            }
+            finalizer.accept(((HashingInputStream) in).hash().toString());
+        }
+
+    }
+
+}
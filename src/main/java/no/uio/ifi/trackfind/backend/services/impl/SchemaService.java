@@ -9,15 +9,22 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.everit.json.schema.*;
+import org.everit.json.schema.loader.SchemaClient;
 import org.everit.json.schema.loader.SchemaLoader;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -29,6 +36,7 @@ public class SchemaService {
 
     protected String schemaLocation;
     protected String separator;
+    protected String schemaVersion;
 
     private final Schema schema;
     private final Map<String, String> categories = new HashMap<>();
@@ -40,8 +48,17 @@ public class SchemaService {
         this.schemaLocation = schemaLocation;
         this.separator = separator;
         try (InputStream inputStream = new URL(schemaLocation).openStream()) {
-            JSONObject rawSchema = new JSONObject(new JSONTokener(inputStream));
-            this.schema = SchemaLoader.load(rawSchema);
+            String schemaContent = StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+            JSONObject rawSchema = new JSONObject(new JSONTokener(schemaContent));
+            Map<String, String> referencedSchemas = new TreeMap<>();
+            this.schema = SchemaLoader.builder()
+                    .schemaJson(rawSchema)
+                    .resolutionScope(schemaLocation)
+                    .schemaClient(recording(SchemaClient.classPathAwareClient(), referencedSchemas))
+                    .build()
+                    .load()
+                    .build();
+            this.schemaVersion = getVersion(schemaContent, referencedSchemas);
             gatherAttributes(null, "", this.schema);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -49,6 +66,39 @@ public class SchemaService {
         }
     }
 
+    /**
+     * Wraps schema client to keep contents of the loaded (referenced) schemas.
+     *
+     * @param schemaClient      Schema client.
+     * @param referencedSchemas Map to put contents of the schemas to, by URLs.
+     * @return Recording schema client.
+     */
+    private SchemaClient recording(SchemaClient schemaClient, Map<String, String> referencedSchemas) {
+        return url -> {
+            try (InputStream inputStream = schemaClient.get(url)) {
+                String content = StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+                referencedSchemas.put(url, content);
+                return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * Computes version of the schema: hash of the root schema and of all the schemas referenced by it.
+     * Version of the schema without external references is the hash of the root schema alone.
+     *
+     * @param schemaContent     Content of the root schema.
+     * @param referencedSchemas Contents of the referenced schemas by URLs (sorted).
+     * @return Schema version.
+     */
+    private String getVersion(String schemaContent, Map<String, String> referencedSchemas) {
+        StringBuilder content = new StringBuilder(schemaContent);
+        referencedSchemas.forEach((url, referencedSchema) -> content.append('\n').append(url).append('\n').append(referencedSchema));
+        return DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
     private void gatherAttributes(String objectType, String path, Schema schema) {
         if (StringUtils.isNotEmpty(objectType) && Character.isLetterOrDigit(objectType.charAt(0))) {
             int separatorLength = separator.length();
@@ -118,10 +168,51 @@ public class SchemaService {
         return schemaLocation;
     }
 
+    /**
+     * Returns version of JSON schema: hash of its content and of the content of the schemas it references,
+     * so that it changes whenever any of them does.
+     *
+     * @return Schema version.
+     */
+    public String getSchemaVersion() {
+        return schemaVersion;
+    }
+
     public Schema getSchema() {
         return schema;
     }
 
+    /**
+     * Returns schema of a single object of the category (item schema of the category array), references resolved.
+     *
+     * @param category Category (object type) name.
+     * @return Schema of the object or empty if the category is not defined by JSON schema.
+     */
+    public Optional<Schema> getObjectSchema(String category) {
+        Schema categorySchema = schema instanceof ObjectSchema ? ((ObjectSchema) schema).getPropertySchemas().get(category) : null;
+        categorySchema = resolve(categorySchema);
+        if (categorySchema instanceof ArraySchema) {
+            categorySchema = resolve(((ArraySchema) categorySchema).getAllItemSchema());
+        }
+        return Optional.ofNullable(categorySchema);
+    }
+
+    /**
+     * Checks whether JSON schema allows categories which are not defined by it.
+     *
+     * @return true if undefined categories are permitted.
+     */
+    public boolean permitsUndefinedCategories() {
+        return !(schema instanceof ObjectSchema) || ((ObjectSchema) schema).permitsAdditionalProperties();
+    }
+
+    private Schema resolve(Schema schema) {
+        while (schema instanceof ReferenceSchema) {
+            schema = ((ReferenceSchema) schema).getReferredSchema();
+        }
+        return schema;
+    }
+
     /**
      * Returns categories from JSON schema.
      *
@@ -0,0 +1,204 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.pojo.TfObjectType;
+import no.uio.ifi.trackfind.backend.pojo.TfVersion;
+import no.uio.ifi.trackfind.backend.pojo.ValidationReport;
+import no.uio.ifi.trackfind.backend.repositories.VersionRepository;
+import no.uio.ifi.trackfind.backend.services.ValidationService;
+import org.apache.commons.lang3.tuple.Pair;
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Local JSON Schema validation: objects of the hub are streamed from the database in chunks and every distinct document
+ * is validated against the schema of its category in parallel. Results are stored per schema version and content hash,
+ * so only documents which were not validated against the current schema before are checked.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Service
+@Transactional
+@ConditionalOnProperty(name = "trackfind.validation.engine", havingValue = "local", matchIfMissing = true)
+public class SchemaValidationService implements ValidationService {
+
+    private static final String DOCUMENTS_SQL = "SELECT d.hash, d.content FROM tf_documents d " +
+            "WHERE d.hash IN (SELECT o.content_hash FROM tf_objects o WHERE o.object_type_id = ?) " +
+            "AND NOT EXISTS (SELECT 1 FROM tf_validation_results r WHERE r.schema_version = ? AND r.content_hash = d.hash)";
+    private static final String STORE_SQL = "INSERT INTO tf_validation_results (schema_version, schema_location, content_hash, valid, messages) " +
+            "SELECT ?, ?, unnest(?), unnest(?), unnest(?) ON CONFLICT DO NOTHING";
+    private static final String RESULTS_SQL = "SELECT r.content_hash, r.messages FROM tf_validation_results r " +
+            "WHERE r.schema_version = ? AND r.content_hash IN (SELECT o.content_hash FROM tf_objects o WHERE o.object_type_id = ?)";
+
+    @Value("${trackfind.validation.chunk-size}")
+    private int chunkSize;
+
+    @Value("${trackfind.validation.max-errors}")
+    private int maxErrors;
+
+    private SchemaService schemaService;
+    private JdbcTemplate jdbcTemplate;
+    private MetamodelService metamodelService;
+    private VersionRepository versionRepository;
+    private ForkJoinPool validationPool;
+    private Gson gson;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String validate(String repository, String hubName) {
+        Collection<TfObjectType> objectTypes = metamodelService.getObjectTypes(repository, hubName);
+        if (objectTypes.isEmpty()) {
+            return "Nothing to validate.";
+        }
+        TfVersion version = objectTypes.iterator().next().getVersion();
+        ValidationReport report = new ValidationReport(schemaService.getSchemaLocation(), maxErrors);
+        try {
+            for (TfObjectType objectType : objectTypes) {
+                Optional<Schema> objectSchema = schemaService.getObjectSchema(objectType.getName());
+                if (objectSchema.isPresent()) {
+                    validate(objectType, objectSchema.get(), report);
+                    collectResults(objectType, report);
+                } else if (!schemaService.permitsUndefinedCategories()) {
+                    report.addError(objectType.getName(), "Object type is not defined by the schema");
+                }
+            }
+            log.info("Hub {}: {} documents checked, {} invalid out of {}.", hubName, report.getCheckedDocuments(), report.getInvalidDocuments(), report.getDocuments());
+            version.setValidation(report.isValid());
+            versionRepository.save(version);
+            return gson.toJson(report);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            version.setValidation(false);
+            versionRepository.save(version);
+            return "Validation error: " + e.getMessage();
+        }
+    }
+
+    private void validate(TfObjectType objectType, Schema objectSchema, ValidationReport report) {
+        List<Pair<String, String>> chunk = new ArrayList<>(chunkSize);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(DOCUMENTS_SQL);
+            statement.setFetchSize(chunkSize);
+            statement.setLong(1, objectType.getId());
+            statement.setString(2, schemaService.getSchemaVersion());
+            return statement;
+        }, resultSet -> {
+            chunk.add(Pair.of(resultSet.getString(1), resultSet.getString(2)));
+            if (chunk.size() == chunkSize) {
+                validate(objectSchema, chunk, report);
+                chunk.clear();
+            }
+        });
+        validate(objectSchema, chunk, report);
+    }
+
+    private void validate(Schema objectSchema, List<Pair<String, String>> documents, ValidationReport report) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        Map<String, List<String>> results = new ConcurrentHashMap<>();
+        validationPool.submit(() -> documents.parallelStream().forEach(document -> {
+            results.put(document.getKey(), validate(objectSchema, document.getValue()));
+        })).join();
+        storeResults(results);
+        report.addChecked(results.size());
+    }
+
+    private List<String> validate(Schema objectSchema, String content) {
+        try {
+            objectSchema.validate(new JSONObject(content));
+            return Collections.emptyList();
+        } catch (ValidationException e) {
+            return e.getAllMessages();
+        } catch (JSONException e) {
+            return Collections.singletonList(e.getMessage());
+        }
+    }
+
+    private void storeResults(Map<String, List<String>> results) {
+        List<String> contentHashes = new ArrayList<>();
+        List<Boolean> valid = new ArrayList<>();
+        List<String> messages = new ArrayList<>();
+        results.forEach((contentHash, errors) -> {
+            contentHashes.add(contentHash);
+            valid.add(errors.isEmpty());
+            messages.add(errors.isEmpty() ? null : gson.toJson(errors));
+        });
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(STORE_SQL);
+            statement.setString(1, schemaService.getSchemaVersion());
+            statement.setString(2, schemaService.getSchemaLocation());
+            statement.setArray(3, connection.createArrayOf("varchar", contentHashes.toArray()));
+            statement.setArray(4, connection.createArrayOf("boolean", valid.toArray()));
+            statement.setArray(5, connection.createArrayOf("varchar", messages.toArray()));
+            return statement;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collectResults(TfObjectType objectType, ValidationReport report) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(RESULTS_SQL);
+            statement.setFetchSize(chunkSize);
+            statement.setString(1, schemaService.getSchemaVersion());
+            statement.setLong(2, objectType.getId());
+            return statement;
+        }, resultSet -> {
+            String messages = resultSet.getString(2);
+            report.add(objectType.getName(), resultSet.getString(1), messages == null ? Collections.emptyList() : gson.fromJson(messages, List.class));
+        });
+    }
+
+    @Autowired
+    public void setSchemaService(SchemaService schemaService) {
+        this.schemaService = schemaService;
+    }
+
+    @Autowired
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Autowired
+    public void setMetamodelService(MetamodelService metamodelService) {
+        this.metamodelService = metamodelService;
+    }
+
+    @Autowired
+    public void setVersionRepository(VersionRepository versionRepository) {
+        this.versionRepository = versionRepository;
+    }
+
+    @Autowired
+    public void setValidationPool(ForkJoinPool validationPool) {
+        this.validationPool = validationPool;
+    }
+
+    @Autowired
+    public void setGson(Gson gson) {
+        this.gson = gson;
+    }
+
+}
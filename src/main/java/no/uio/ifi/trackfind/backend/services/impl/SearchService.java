@@ -56,22 +56,70 @@ public class SearchService {
      * @param limit      Max number of entries to return. 0 for unlimited.
      * @return Found entries with set of IDs.
      */
-    @Cacheable(value = "search", sync = true)
+    @Cacheable(value = "search", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public Pair<Set<Long>, Collection<SearchResult>> search(String repository, String hub, String query, Collection<String> categories, long limit) throws SQLException {
-        Collection<TfReference> references = metamodelService.getReferences(repository, hub);
-
-        Collection<TfObjectType> objectTypesFromReferences = new HashSet<>();
-        references.forEach(r -> objectTypesFromReferences.addAll(Arrays.asList(r.getFromObjectType(), r.getToObjectType())));
+        return executeSearchQuery(buildSearchQuery(repository, hub, query, categories, limit, false));
+    }
 
-        Collection<String> objectTypesToSelect;
-        if (CollectionUtils.isEmpty(categories)) {
-            objectTypesToSelect = objectTypesFromReferences.stream().map(TfObjectType::getName).collect(Collectors.toSet());
-        } else {
-            objectTypesToSelect = categories;
+    /**
+     * Streams entries found by provided query in chunks, using server-side cursor, so that only one chunk is kept in memory.
+     * Results are not cached.
+     *
+     * @param repository Repository name.
+     * @param hub        Track TfHub name.
+     * @param query      Search query.
+     * @param categories Categories.
+     * @param chunkSize  Number of entries per chunk.
+     * @param handler    Handler of chunks.
+     * @throws Exception in case of some problems.
+     */
+    public void stream(String repository, String hub, String query, Collection<String> categories, int chunkSize, ChunkHandler handler) throws Exception {
+        String fullQueryString = buildSearchQuery(repository, hub, query, categories, 0, false);
+        log.info("Streaming search query: {}", fullQueryString);
+        try (Connection cursorConnection = DriverManager.getConnection(jdbcUrl, "search", "search")) {
+            cursorConnection.setAutoCommit(false);
+            cursorConnection.setReadOnly(true);
+            try (PreparedStatement preparedStatement = cursorConnection.prepareStatement(fullQueryString)) {
+                preparedStatement.setFetchSize(chunkSize);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    Collection<String> contentColumns = getContentColumns(resultSet);
+                    List<SearchResult> chunk = new ArrayList<>(chunkSize);
+                    long total = 0;
+                    while (resultSet.next()) {
+                        chunk.add(readSearchResult(resultSet, contentColumns, null));
+                        if (chunk.size() == chunkSize) {
+                            handler.handle(chunk);
+                            total += chunk.size();
+                            chunk = new ArrayList<>(chunkSize);
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        handler.handle(chunk);
+                        total += chunk.size();
+                    }
+                    log.info("{} entries streamed.", total);
+                }
+            } finally {
+                cursorConnection.rollback();
+            }
         }
+    }
 
-        String fullQueryString = buildSearchQuery(repository, hub, references, objectTypesFromReferences, new HashSet<>(objectTypesToSelect), query, limit, false);
-        return executeSearchQuery(fullQueryString);
+    /**
+     * Picks random sample of entries of the hub. Results are not cached.
+     *
+     * @param repository Repository name.
+     * @param hub        Track TfHub name.
+     * @param sampleSize Max number of entries to return, should be positive.
+     * @return Sampled entries.
+     */
+    public List<SearchResult> sample(String repository, String hub, int sampleSize) throws SQLException {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("Sample size should be positive: " + sampleSize);
+        }
+        String fullQueryString = "SELECT * FROM (" + buildSearchQuery(repository, hub, Boolean.TRUE.toString(), Collections.emptySet(), 0, false) +
+                ") entries ORDER BY random() LIMIT ?";
+        return new ArrayList<>(executeSearchQuery(fullQueryString, sampleSize).getValue());
     }
 
     /**
@@ -83,8 +131,25 @@ public class SearchService {
      * @param categories Comma-separated categories.
      * @return Count of entries.
      */
-    @Cacheable(value = "count", sync = true)
+    @Cacheable(value = "count", keyGenerator = "hubScopedKeyGenerator", sync = true)
     public int count(String repository, String hub, String query, Collection<String> categories) throws SQLException {
+        return executeCountQuery(buildSearchQuery(repository, hub, query, categories, 0, true));
+    }
+
+    /**
+     * Builds search query, without executing it.
+     *
+     * @param repository Repository name.
+     * @param hub        Track TfHub name.
+     * @param query      Search query.
+     * @param categories Categories.
+     * @return Full SQL query (with question marks escaped for prepared statements).
+     */
+    public String buildSearchQuery(String repository, String hub, String query, Collection<String> categories) {
+        return buildSearchQuery(repository, hub, query, categories, 0, false);
+    }
+
+    private String buildSearchQuery(String repository, String hub, String query, Collection<String> categories, long limit, boolean count) {
         Collection<TfReference> references = metamodelService.getReferences(repository, hub);
 
         Collection<TfObjectType> objectTypesFromReferences = new HashSet<>();
@@ -97,8 +162,7 @@ public class SearchService {
             objectTypesToSelect = categories;
         }
 
-        String fullQueryString = buildSearchQuery(repository, hub, references, objectTypesFromReferences, new HashSet<>(objectTypesToSelect), query, 0, true);
-        return executeCountQuery(fullQueryString);
+        return buildSearchQuery(repository, hub, references, objectTypesFromReferences, new HashSet<>(objectTypesToSelect), query, limit, count);
     }
 
     protected String buildSearchQuery(String repository,
@@ -199,31 +263,48 @@ public class SearchService {
     }
 
     @SuppressWarnings({"unchecked", "rawtypes"})
-    protected Pair<Set<Long>, Collection<SearchResult>> executeSearchQuery(String fullQueryString) throws SQLException {
+    protected Pair<Set<Long>, Collection<SearchResult>> executeSearchQuery(String fullQueryString, Object... parameters) throws SQLException {
         log.info("Executing search query: {}", fullQueryString);
         PreparedStatement preparedStatement = connection.prepareStatement(fullQueryString);
+        for (int i = 0; i < parameters.length; i++) {
+            preparedStatement.setObject(i + 1, parameters[i]);
+        }
         ResultSet resultSet = preparedStatement.executeQuery();
+        Collection<String> contentColumns = getContentColumns(resultSet);
+        Set<Long> ids = new HashSet<>();
+        Collection<SearchResult> results = new ArrayList<>();
+        while (resultSet.next()) {
+            results.add(readSearchResult(resultSet, contentColumns, ids));
+        }
+        return Pair.of(ids, results);
+    }
+
+    private Collection<String> getContentColumns(ResultSet resultSet) throws SQLException {
         ResultSetMetaData metaData = resultSet.getMetaData();
         int columnCount = metaData.getColumnCount();
-        Collection<String> objectTypesToSelect = new HashSet<>();
+        Collection<String> contentColumns = new HashSet<>();
         for (int i = 1; i <= columnCount; i++) {
             String columnName = metaData.getColumnName(i);
             if (columnName.endsWith("_content")) {
-                objectTypesToSelect.add(columnName);
+                contentColumns.add(columnName);
             }
         }
-        Set<Long> ids = new HashSet<>();
-        Collection<SearchResult> results = new ArrayList<>();
-        while (resultSet.next()) {
-            SearchResult searchResult = new SearchResult();
-            for (String objectTypeName : objectTypesToSelect) {
-                String json = resultSet.getString(objectTypeName);
-                ids.add(resultSet.getLong(objectTypeName.replace("_content", "_id")));
-                searchResult.getContent().put(objectTypeName.replace("_content", ""), new HashMap(gson.fromJson(json, Map.class)));
+        return contentColumns;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private SearchResult readSearchResult(ResultSet resultSet, Collection<String> contentColumns, Set<Long> ids) throws SQLException {
+        SearchResult searchResult = new SearchResult();
+        for (String objectTypeName : contentColumns) {
+            String json = resultSet.getString(objectTypeName);
+            long id = resultSet.getLong(objectTypeName.replace("_content", "_id"));
+            if (ids != null) {
+                ids.add(id);
             }
-            results.add(searchResult);
+            searchResult.getIds().put(objectTypeName.replace("_content", ""), id);
+            searchResult.getContent().put(objectTypeName.replace("_content", ""), new HashMap(gson.fromJson(json, Map.class)));
         }
-        return Pair.of(ids, results);
+        return searchResult;
     }
 
     protected int executeCountQuery(String fullQueryString) throws SQLException {
@@ -234,6 +315,16 @@ public class SearchService {
         return resultSet.getInt(1);
     }
 
+    /**
+     * Handler of chunks of streamed entries.
+     */
+    @FunctionalInterface
+    public interface ChunkHandler {
+
+        void handle(List<SearchResult> chunk) throws Exception;
+
+    }
+
     @Value("${spring.datasource.url}")
     public void setJdbcUrl(String jdbcUrl) {
         this.jdbcUrl = jdbcUrl;
@@ -0,0 +1,149 @@
+package no.uio.ifi.trackfind.backend.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.data.AttributePath;
+import no.uio.ifi.trackfind.backend.data.storage.BulkObjectWriter;
+import no.uio.ifi.trackfind.backend.pojo.TfMapping;
+import no.uio.ifi.trackfind.backend.pojo.TfVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSetMetaData;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Service running static mappings inside of the database: mappings are compiled to set-based SQL
+ * (<code>jsonb_put_path</code> over the joined documents of the current version), mapped objects are inserted
+ * to the new (delta) version with <code>INSERT ... SELECT</code>, so that the data is not transferred over the wire.
+ * Results are the same as of Java static mappings: scalars and objects are rendered as text by <code>jsonb_mapping_value</code>
+ * (see {@link no.uio.ifi.trackfind.backend.data.storage.CanonicalJson#toText(Object)}), numbers of mapped documents are
+ * normalized by <code>jsonb_normalize_numbers</code>, as Java writes parsed numbers (numbers beyond the precision of
+ * <code>double</code> are not rounded though). Mapped documents are hashed with <code>tf_content_hash</code>, so they are
+ * shared with the ones written from Java.
+ *
+ * @author Dmytro Titov
+ */
+@Slf4j
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class SqlCurationService {
+
+    private static final String CONTENT_SUFFIX = "_content";
+    private static final String ID_SUFFIX = "_id";
+
+    @Value("${trackfind.separator}")
+    private String separator;
+
+    private JdbcTemplate jdbcTemplate;
+    private SearchService searchService;
+
+    /**
+     * Checks whether the mappings can be run inside of the database: all of them are static
+     * and none of them reads the object type written by some mapping.
+     *
+     * @param mappings Mappings.
+     * @return true if the mappings can be pushed down to SQL.
+     */
+    public boolean isEligible(Collection<TfMapping> mappings) {
+        if (mappings.stream().anyMatch(m -> m.getFromObjectType() == null || m.getToObjectType() == null)) {
+            return false;
+        }
+        Set<String> targets = mappings.stream().map(m -> m.getToObjectType().getName()).collect(Collectors.toSet());
+        return mappings.stream().noneMatch(m -> targets.contains(m.getFromObjectType().getName()));
+    }
+
+    /**
+     * Runs static mappings over the current version of the hub, storing results to the delta version.
+     * Objects kept unchanged are recorded with {@link ObjectStorageService#keep(Collection)}.
+     *
+     * @param repository Repository name.
+     * @param hub        Hub name.
+     * @param version    New (delta) version.
+     * @param mappings   Eligible static mappings, in order of application.
+     * @return Number of changed or added objects.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public int run(String repository, String hub, TfVersion version, Collection<TfMapping> mappings) {
+        String searchQuery = searchService.buildSearchQuery(repository, hub, Boolean.TRUE.toString(), Collections.emptySet());
+        jdbcTemplate.update(connection -> connection.prepareStatement("CREATE TEMPORARY TABLE tf_curation_rows ON COMMIT DROP AS " + searchQuery));
+        Map<String, String> idColumns = jdbcTemplate.query("SELECT * FROM tf_curation_rows LIMIT 0", resultSet -> {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            Map<String, String> columns = new HashMap<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String columnName = metaData.getColumnName(i);
+                if (columnName.endsWith(CONTENT_SUFFIX)) {
+                    String objectTypeName = columnName.substring(0, columnName.length() - CONTENT_SUFFIX.length());
+                    columns.put(objectTypeName, (objectTypeName + ID_SUFFIX).toLowerCase());
+                }
+            }
+            return columns;
+        });
+
+        Map<String, List<TfMapping>> mappingsByTargets = new LinkedHashMap<>();
+        mappings.forEach(m -> mappingsByTargets.computeIfAbsent(m.getToObjectType().getName(), k -> new ArrayList<>()).add(m));
+        List<String> selects = new ArrayList<>();
+        for (Map.Entry<String, List<TfMapping>> entry : mappingsByTargets.entrySet()) {
+            String target = entry.getKey();
+            boolean joined = idColumns.containsKey(target);
+            String original = joined ? quote(target + CONTENT_SUFFIX) : "NULL::jsonb";
+            String expression = joined ? "COALESCE(" + original + ", '{}'::jsonb)" : "'{}'::jsonb";
+            for (TfMapping mapping : entry.getValue()) {
+                String source = mapping.getFromObjectType().getName();
+                String value = idColumns.containsKey(source)
+                        ? "jsonb_mapping_value(" + quote(source + CONTENT_SUFFIX) + " #> " + toPath(mapping.getFromAttribute()) + ")"
+                        : "'[]'::jsonb";
+                expression = "jsonb_put_path(" + expression + ", " + toPath(mapping.getToAttribute()) + ", " + value + ")";
+            }
+            selects.add(String.format("SELECT %s AS object_type_name, %s AS original_id, %s AS original, %s AS content FROM tf_curation_rows",
+                    literal(target), joined ? quote(idColumns.get(target)) : "NULL::bigint", original, "jsonb_normalize_numbers(" + expression + ")"));
+        }
+        jdbcTemplate.execute("CREATE TEMPORARY TABLE tf_curated_objects ON COMMIT DROP AS " + String.join(" UNION ALL ", selects));
+
+        for (Map.Entry<String, String> idColumn : idColumns.entrySet()) {
+            if (!mappingsByTargets.containsKey(idColumn.getKey())) {
+                jdbcTemplate.update(String.format("INSERT INTO tf_kept_objects SELECT DISTINCT %1$s FROM tf_curation_rows WHERE %1$s IS NOT NULL ON CONFLICT DO NOTHING", quote(idColumn.getValue())));
+            }
+        }
+        jdbcTemplate.update("INSERT INTO tf_kept_objects SELECT DISTINCT original_id FROM tf_curated_objects WHERE original_id IS NOT NULL AND original = content ON CONFLICT DO NOTHING");
+        jdbcTemplate.execute(BulkObjectWriter.LOCK_DOCUMENTS_SQL);
+        jdbcTemplate.update("INSERT INTO tf_documents (hash, content) SELECT DISTINCT ON (hash) tf_content_hash(content) AS hash, content FROM tf_curated_objects " +
+                "WHERE original IS DISTINCT FROM content ON CONFLICT DO NOTHING");
+        int stored = 0;
+        for (String target : mappingsByTargets.keySet()) {
+            Long objectTypeId = jdbcTemplate.queryForObject("INSERT INTO tf_object_types (name, version_id) VALUES (?, ?) RETURNING id", Long.class, target, version.getId());
+            stored += jdbcTemplate.update("INSERT INTO tf_objects (id, object_type_id, content_hash) " +
+                    "SELECT nextval('tf_objects_ids_sequence'), ?, hash FROM (SELECT DISTINCT tf_content_hash(content) AS hash FROM tf_curated_objects " +
+                    "WHERE object_type_name = ? AND original IS DISTINCT FROM content) changed", objectTypeId, target);
+        }
+        log.info("Static mappings pushed down to SQL: {} objects changed or added.", stored);
+        return stored;
+    }
+
+    private String toPath(String attribute) {
+        return AttributePath.compile(attribute, separator).getSegments().stream().map(this::literal).collect(Collectors.joining(", ", "ARRAY[", "]::text[]"));
+    }
+
+    private String literal(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    private String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    @Autowired
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Autowired
+    public void setSearchService(SearchService searchService) {
+        this.searchService = searchService;
+    }
+
+}
@@ -25,6 +25,7 @@ public class TrackFindService {
 
     private Collection<DataProvider> dataProviders;
     private HubRepository hubRepository;
+    private CacheService cacheService;
 
     /**
      * Get all registered DataProviders.
@@ -89,6 +90,7 @@ public class TrackFindService {
     @CacheEvict(cacheNames = {"available-track-hubs"}, allEntries = true)
     public void deactivateHubs(Collection<TfHub> hubs) {
         hubRepository.deleteAll(hubs);
+        hubs.forEach(h -> cacheService.evictHubAfterCommit(h.getRepository(), h.getName(), CacheService.HUB_SCOPED_CACHES));
     }
 
     /**
@@ -111,4 +113,9 @@ public class TrackFindService {
         this.hubRepository = hubRepository;
     }
 
+    @Autowired
+    public void setCacheService(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
 }
@@ -0,0 +1,66 @@
+package no.uio.ifi.trackfind.backend.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.pojo.Queries;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+/**
+ * Migrates databases storing content of objects inline (in <code>tf_objects</code>) to content-addressed storage
+ * (<code>tf_documents</code>). Views depending on the old layout are dropped and re-created from <code>schema.sql</code>.
+ */
+@Slf4j
+@Component
+public class StorageMigration {
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private PlatformTransactionManager transactionManager;
+
+    @SuppressWarnings("ConstantConditions")
+    @PostConstruct
+    private void migrate() {
+        if (jdbcTemplate.queryForObject("SELECT count(*) FROM information_schema.columns WHERE table_name = 'tf_objects' AND column_name = 'content'", Integer.TYPE) == 0) {
+            return;
+        }
+        log.info("Migrating objects to content-addressed storage...");
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE tf_objects SET content_hash = tf_content_hash(content) WHERE content_hash IS NULL");
+            int documents = jdbcTemplate.update("INSERT INTO tf_documents (hash, content) SELECT DISTINCT ON (content_hash) content_hash, content FROM tf_objects ON CONFLICT DO NOTHING");
+            jdbcTemplate.execute("DROP MATERIALIZED VIEW IF EXISTS tf_current_objects CASCADE");
+            jdbcTemplate.execute("ALTER TABLE tf_objects DROP COLUMN content");
+            jdbcTemplate.execute("ALTER TABLE tf_objects ALTER COLUMN content_hash SET NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE tf_objects ADD FOREIGN KEY (content_hash) REFERENCES tf_documents (hash)");
+            log.info("{} documents stored.", documents);
+        });
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        if (jdbcTemplate.queryForObject(Queries.CHECK_SEARCH_USER_EXISTS, Integer.TYPE) != 0) {
+            jdbcTemplate.execute("GRANT SELECT ON tf_current_objects TO search");
+        }
+        log.info("Migration completed.");
+    }
+
+    @Autowired
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Autowired
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+}
@@ -129,6 +129,7 @@ public abstract class AbstractUI extends UI {
                 menu.addItem("Versions", (MenuBar.Command) selectedItem -> Page.getCurrent().setLocation("/versions"));
                 menu.addItem("References", (MenuBar.Command) selectedItem -> Page.getCurrent().setLocation("/references"));
                 menu.addItem("Curation", (MenuBar.Command) selectedItem -> Page.getCurrent().setLocation("/curation"));
+                menu.addItem("Jobs", (MenuBar.Command) selectedItem -> Page.getCurrent().setLocation("/jobs"));
                 menu.addItem("Users", (MenuBar.Command) selectedItem -> Page.getCurrent().setLocation("/users"));
                 leftHeaderLayout.addComponent(menuBar);
                 leftHeaderLayout.setMargin(true);
@@ -15,11 +15,13 @@ import com.vaadin.ui.*;
 import com.vaadin.ui.renderers.TextRenderer;
 import lombok.extern.slf4j.Slf4j;
 import no.uio.ifi.trackfind.backend.data.TreeNode;
-import no.uio.ifi.trackfind.backend.data.providers.DataProvider;
+import no.uio.ifi.trackfind.backend.operations.Operation;
+import no.uio.ifi.trackfind.backend.pojo.CurationReport;
 import no.uio.ifi.trackfind.backend.pojo.TfHub;
 import no.uio.ifi.trackfind.backend.pojo.TfMapping;
 import no.uio.ifi.trackfind.backend.pojo.TfObjectType;
 import no.uio.ifi.trackfind.backend.pojo.TfVersion;
+import no.uio.ifi.trackfind.backend.services.impl.JobService;
 import no.uio.ifi.trackfind.backend.services.impl.MetamodelService;
 import no.uio.ifi.trackfind.backend.services.impl.SchemaService;
 import no.uio.ifi.trackfind.frontend.components.TrackFindTree;
@@ -28,6 +30,7 @@ import no.uio.ifi.trackfind.frontend.providers.VersionsDataProvider;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.vaadin.aceeditor.AceEditor;
 import org.vaadin.aceeditor.AceMode;
 import org.vaadin.aceeditor.AceTheme;
@@ -35,6 +38,7 @@ import org.vaadin.dialogs.ConfirmDialog;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 /**
@@ -51,7 +55,11 @@ import java.util.stream.Collectors;
 @Slf4j
 public class TrackFindCurationUI extends AbstractUI {
 
+    private static final int DRY_RUN_POLL_INTERVAL = 1000;
+
     private MetamodelService metamodelService;
+    private JobService jobService;
+    private ExecutorService executorService;
 
     private Button moveMappingUpButton = new Button("Move up ↑");
     private Button moveMappingDownButton = new Button("Move down ↓");
@@ -67,6 +75,14 @@ public class TrackFindCurationUI extends AbstractUI {
     private Grid<TfMapping> grid = new Grid<>(TfMapping.class);
     private AceEditor script = new AceEditor();
     private Panel scriptsPanel = new Panel("Script", script);
+    private TextField sampleSizeTextField = new TextField("Dry-run sample size");
+    private Button dryRunButton = new Button("Dry run");
+
+    @Value("${trackfind.curation.dry-run-sample-size}")
+    private int dryRunSampleSize;
+
+    @Value("${trackfind.curation.dry-run-max-sample-size}")
+    private int dryRunMaxSampleSize;
 
     @Override
     protected void init(VaadinRequest vaadinRequest) {
@@ -328,13 +344,21 @@ public class TrackFindCurationUI extends AbstractUI {
                             "Data curation is time-consuming process and will lead to changing the data in the database.",
                     (ConfirmDialog.Listener) dialog -> {
                         if (dialog.isConfirmed()) {
-                            DataProvider dataProvider = trackFindService.getDataProvider(currentHub.getRepository());
-                            dataProvider.runCuration(currentHub.getName());
+                            jobService.submit(currentHub.getRepository(), currentHub.getName(), Operation.CURATION, JobService.INTERACTIVE_PRIORITY);
+                            Notification.show("Curation is scheduled, see the Jobs page for the progress.");
                         }
                     });
         });
 
-        HorizontalLayout buttonsLayout = new HorizontalLayout(saveButton, applyMappingsButton);
+        sampleSizeTextField.setValue(String.valueOf(dryRunSampleSize));
+        sampleSizeTextField.setWidth(100, Unit.PERCENTAGE);
+        dryRunButton.setSizeFull();
+        dryRunButton.addClickListener((Button.ClickListener) event -> dryRun());
+
+        HorizontalLayout buttonsLayout = new HorizontalLayout(saveButton, sampleSizeTextField, dryRunButton, applyMappingsButton);
+        buttonsLayout.setComponentAlignment(dryRunButton, Alignment.BOTTOM_LEFT);
+        buttonsLayout.setComponentAlignment(saveButton, Alignment.BOTTOM_LEFT);
+        buttonsLayout.setComponentAlignment(applyMappingsButton, Alignment.BOTTOM_LEFT);
         buttonsLayout.setWidth(100, Unit.PERCENTAGE);
         VerticalLayout scriptsLayout = new VerticalLayout(scriptsPanel, buttonsLayout);
         scriptsLayout.setSizeFull();
@@ -342,6 +366,68 @@ public class TrackFindCurationUI extends AbstractUI {
         return scriptsLayout;
     }
 
+    private void dryRun() {
+        TfHub currentHub = getCurrentHub();
+        int sampleSize;
+        try {
+            sampleSize = Integer.parseInt(sampleSizeTextField.getValue().trim());
+        } catch (NumberFormatException e) {
+            Notification.show("Sample size should be a number.", Notification.Type.WARNING_MESSAGE);
+            return;
+        }
+        if (sampleSize <= 0 || sampleSize > dryRunMaxSampleSize) {
+            Notification.show("Sample size should be between 1 and " + dryRunMaxSampleSize + ".", Notification.Type.WARNING_MESSAGE);
+            return;
+        }
+        dryRunButton.setEnabled(false);
+        setPollInterval(DRY_RUN_POLL_INTERVAL);
+        executorService.submit(() -> {
+            CurationReport report = null;
+            Exception failure = null;
+            try {
+                report = trackFindService.getDataProvider(currentHub.getRepository()).dryRunCuration(currentHub.getName(), sampleSize);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                failure = e;
+            }
+            CurationReport finalReport = report;
+            Exception finalFailure = failure;
+            access(() -> {
+                setPollInterval(-1);
+                dryRunButton.setEnabled(true);
+                if (finalFailure != null) {
+                    Notification.show("Dry run failed: " + finalFailure.getMessage(), Notification.Type.ERROR_MESSAGE);
+                } else {
+                    showDryRunReport(currentHub, finalReport);
+                }
+            });
+        });
+    }
+
+    private void showDryRunReport(TfHub currentHub, CurationReport report) {
+        Grid<CurationReport.MappingReport> reportGrid = new Grid<>();
+        reportGrid.addColumn(r -> r.getMapping().getOrderNumber()).setCaption("Order");
+        reportGrid.addColumn(r -> r.getMapping().getFromObjectType() == null ? "Scripted" : r.getMapping().getFromObjectType().getName() + separator + r.getMapping().getFromAttribute()).setCaption("From");
+        reportGrid.addColumn(r -> r.getMapping().getToObjectType() == null ? "Scripted" : r.getMapping().getToObjectType().getName() + separator + r.getMapping().getToAttribute()).setCaption("To");
+        reportGrid.addColumn(CurationReport.MappingReport::getMillis).setCaption("Time, ms");
+        reportGrid.addColumn(r -> Math.round(r.getThroughput())).setCaption("Entries/s");
+        reportGrid.addColumn(CurationReport.MappingReport::getEstimatedMillis).setCaption("Estimated for hub, ms");
+        reportGrid.addColumn(CurationReport.MappingReport::getChangedAttributes).setCaption("Changed attributes");
+        reportGrid.setItems(report.getMappings());
+        reportGrid.setSizeFull();
+        Label summary = new Label(String.format("Sample: %d of %d entries. Estimated curation time: %d ms (parallelism %d).",
+                report.getSampleSize(), report.getTotalEntries(), report.getEstimatedMillis(), report.getParallelism()));
+        VerticalLayout reportLayout = new VerticalLayout(summary, reportGrid);
+        reportLayout.setSizeFull();
+        reportLayout.setExpandRatio(reportGrid, 1f);
+        Window window = new Window("Dry run: " + currentHub.getName(), reportLayout);
+        window.setWidth(80, Unit.PERCENTAGE);
+        window.setHeight(60, Unit.PERCENTAGE);
+        window.center();
+        window.setModal(true);
+        addWindow(window);
+    }
+
     private void loadMappings() {
         TfHub currentHub = getCurrentHub();
         grid.setItems(metamodelService.getMappings(currentHub.getRepository(), currentHub.getName()));
@@ -360,4 +446,14 @@ public class TrackFindCurationUI extends AbstractUI {
         this.metamodelService = metamodelService;
     }
 
+    @Autowired
+    public void setJobService(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @Autowired
+    public void setExecutorService(ExecutorService dryRunPool) {
+        this.executorService = dryRunPool;
+    }
+
 }
@@ -11,11 +11,13 @@ import com.vaadin.server.VaadinRequest;
 import com.vaadin.spring.annotation.SpringUI;
 import com.vaadin.ui.*;
 import lombok.extern.slf4j.Slf4j;
-import no.uio.ifi.trackfind.backend.data.providers.DataProvider;
+import no.uio.ifi.trackfind.backend.operations.Operation;
 import no.uio.ifi.trackfind.backend.pojo.TfHub;
 import no.uio.ifi.trackfind.backend.pojo.TfVersion;
 import no.uio.ifi.trackfind.backend.repositories.HubRepository;
 import no.uio.ifi.trackfind.backend.services.ValidationService;
+import no.uio.ifi.trackfind.backend.services.impl.CrawlSchedulingService;
+import no.uio.ifi.trackfind.backend.services.impl.JobService;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,10 +45,12 @@ public class TrackFindHubsUI extends AbstractUI {
 
     private HubRepository hubRepository;
     private ValidationService validationService;
+    private JobService jobService;
 
     private ComboBox<TfHub> comboBox = new ComboBox<>("Available hubs");
     private ListSelect<TfHub> listSelect = new ListSelect<>();
     private TextField displayNameTextField = new TextField("Hub display name (optional)");
+    private TextField crawlScheduleTextField = new TextField("Crawl schedule, cron (optional, e.g. \"0 0 3 * * SUN\")");
     private Button saveDisplayNameButton = new Button("Save");
     private Button add = new Button("Activate →");
     private Button remove = new Button("Deactivate ←");
@@ -129,10 +133,9 @@ public class TrackFindHubsUI extends AbstractUI {
                         try {
                             Set<TfHub> activeHubs = listSelect.getSelectedItems();
                             for (TfHub hub : activeHubs) {
-                                DataProvider dataProvider = trackFindService.getDataProvider(hub.getRepository());
-                                dataProvider.crawlRemoteRepository(hub.getName());
+                                jobService.submit(hub.getRepository(), hub.getName(), Operation.CRAWLING, JobService.INTERACTIVE_PRIORITY);
                             }
-                            Notification.show("Success!");
+                            Notification.show("Crawling is scheduled, see the Jobs page for the progress.");
                         } catch (Exception e) {
                             log.error(e.getMessage(), e);
                             Notification.show("Error: " + e.getMessage(), Notification.Type.ERROR_MESSAGE);
@@ -196,9 +199,12 @@ public class TrackFindHubsUI extends AbstractUI {
             validate.setEnabled(CollectionUtils.isNotEmpty(selectedItems));
             saveDisplayNameButton.setEnabled(CollectionUtils.isNotEmpty(selectedItems));
             displayNameTextField.setEnabled(CollectionUtils.isNotEmpty(selectedItems));
+            crawlScheduleTextField.setEnabled(CollectionUtils.isNotEmpty(selectedItems));
             if (CollectionUtils.isNotEmpty(selectedItems)) {
                 String displayName = selectedItems.iterator().next().getDisplayName();
                 displayNameTextField.setValue(displayName != null ? displayName : "");
+                String crawlSchedule = selectedItems.iterator().next().getCrawlSchedule();
+                crawlScheduleTextField.setValue(crawlSchedule != null ? crawlSchedule : "");
             }
         });
         Panel panel = new Panel("Hub selection", listSelect);
@@ -206,19 +212,29 @@ public class TrackFindHubsUI extends AbstractUI {
         displayNameTextField.setEnabled(false);
         displayNameTextField.setHeightUndefined();
         displayNameTextField.setWidth(100, Unit.PERCENTAGE);
+        crawlScheduleTextField.setEnabled(false);
+        crawlScheduleTextField.setHeightUndefined();
+        crawlScheduleTextField.setWidth(100, Unit.PERCENTAGE);
         saveDisplayNameButton.setEnabled(false);
         saveDisplayNameButton.setHeightUndefined();
         saveDisplayNameButton.setWidth(100, Unit.PERCENTAGE);
         saveDisplayNameButton.addClickListener((Button.ClickListener) event -> {
             TfHub hub = listSelect.getSelectedItems().iterator().next();
             String value = displayNameTextField.getValue();
+            String crawlSchedule = crawlScheduleTextField.getValue();
+            if (StringUtils.isNotBlank(crawlSchedule) && !CrawlSchedulingService.isValid(crawlSchedule)) {
+                Notification.show("Invalid cron expression: " + crawlSchedule, Notification.Type.WARNING_MESSAGE);
+                return;
+            }
             hub.setDisplayName(StringUtils.isEmpty(value) ? null : value);
+            hub.setCrawlSchedule(StringUtils.isBlank(crawlSchedule) ? null : crawlSchedule.trim());
             hubRepository.save(hub);
         });
-        hubsLayout.addComponentsAndExpand(panel, displayNameTextField, saveDisplayNameButton);
-        hubsLayout.setExpandRatio(panel, 0.80f);
-        hubsLayout.setExpandRatio(displayNameTextField, 0.13f);
-        hubsLayout.setExpandRatio(saveDisplayNameButton, 0.07f);
+        hubsLayout.addComponentsAndExpand(panel, displayNameTextField, crawlScheduleTextField, saveDisplayNameButton);
+        hubsLayout.setExpandRatio(panel, 0.70f);
+        hubsLayout.setExpandRatio(displayNameTextField, 0.11f);
+        hubsLayout.setExpandRatio(crawlScheduleTextField, 0.11f);
+        hubsLayout.setExpandRatio(saveDisplayNameButton, 0.08f);
         return hubsLayout;
     }
 
@@ -241,4 +257,9 @@ public class TrackFindHubsUI extends AbstractUI {
         this.validationService = validationService;
     }
 
+    @Autowired
+    public void setJobService(JobService jobService) {
+        this.jobService = jobService;
+    }
+
 }
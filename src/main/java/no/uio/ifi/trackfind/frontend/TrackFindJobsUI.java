@@ -0,0 +1,99 @@
+package no.uio.ifi.trackfind.frontend;
+
+import com.vaadin.annotations.Theme;
+import com.vaadin.annotations.Title;
+import com.vaadin.annotations.Widgetset;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.spring.annotation.SpringUI;
+import com.vaadin.ui.*;
+import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.jobs.Job;
+import no.uio.ifi.trackfind.backend.jobs.JobStatus;
+import no.uio.ifi.trackfind.backend.services.impl.JobService;
+import org.apache.commons.collections.CollectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Jobs Vaadin UI of the application: status of crawling and curation jobs.
+ * Uses custom theme (VAADIN/themes/trackfind/trackfind.scss).
+ * Uses custom WidgetSet (TrackFindWidgetSet.gwt.xml).
+ *
+ * @author Dmytro Titov
+ */
+@SpringUI(path = "/jobs")
+@Widgetset("TrackFindWidgetSet")
+@Title("Jobs")
+@Theme("trackfind")
+@Slf4j
+public class TrackFindJobsUI extends AbstractUI {
+
+    private JobService jobService;
+
+    private Grid<Job> grid = new Grid<>(Job.class);
+
+    @Override
+    protected void init(VaadinRequest vaadinRequest) {
+        HorizontalLayout headerLayout = buildHeaderLayout();
+        VerticalLayout jobsLayout = buildJobsLayout();
+        HorizontalLayout mainLayout = buildMainLayout(jobsLayout);
+        HorizontalLayout footerLayout = buildFooterLayout();
+        VerticalLayout outerLayout = buildOuterLayout(headerLayout, mainLayout, footerLayout);
+        setContent(outerLayout);
+    }
+
+    private VerticalLayout buildJobsLayout() {
+        grid.setSizeFull();
+        grid.removeColumn("securityContext");
+        grid.setColumnOrder("id", "repository", "hub", "operation", "priority", "status", "attempts", "submitted", "started", "finished", "error");
+        grid.setStyleGenerator((StyleGenerator<Job>) item -> {
+            if (JobStatus.RUNNING.equals(item.getStatus())) {
+                return "green";
+            } else {
+                return "white";
+            }
+        });
+        Panel jobsPanel = new Panel("Jobs", grid);
+        jobsPanel.setSizeFull();
+
+        Button refreshButton = new Button("Refresh");
+        refreshButton.setWidth(100, Unit.PERCENTAGE);
+        refreshButton.addClickListener((Button.ClickListener) event -> refresh());
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setWidth(100, Unit.PERCENTAGE);
+        cancelButton.addClickListener((Button.ClickListener) event -> {
+            for (Job job : grid.getSelectedItems()) {
+                if (!jobService.cancel(job.getId())) {
+                    Notification.show("Job " + job.getId() + " is already started.", Notification.Type.WARNING_MESSAGE);
+                }
+            }
+            refresh();
+        });
+        cancelButton.setEnabled(false);
+        grid.addSelectionListener(event -> cancelButton.setEnabled(CollectionUtils.isNotEmpty(event.getAllSelectedItems())));
+        HorizontalLayout buttonsLayout = new HorizontalLayout(refreshButton, cancelButton);
+        buttonsLayout.setWidth(100, Unit.PERCENTAGE);
+
+        VerticalLayout jobsLayout = new VerticalLayout(jobsPanel, buttonsLayout);
+        jobsLayout.setSizeFull();
+        jobsLayout.setExpandRatio(jobsPanel, 1f);
+        refresh();
+        return jobsLayout;
+    }
+
+    private void refresh() {
+        grid.setItems(jobService.getJobs());
+    }
+
+    private HorizontalLayout buildMainLayout(VerticalLayout leftLayout) {
+        HorizontalLayout mainLayout = new HorizontalLayout(leftLayout);
+        mainLayout.setExpandRatio(leftLayout, 0.66f);
+        mainLayout.setSizeFull();
+        return mainLayout;
+    }
+
+    @Autowired
+    public void setJobService(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+}
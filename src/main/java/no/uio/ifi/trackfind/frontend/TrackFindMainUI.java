@@ -1,6 +1,5 @@
 package no.uio.ifi.trackfind.frontend;
 
-import alexh.weak.Dynamic;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vaadin.annotations.Theme;
 import com.vaadin.annotations.Title;
@@ -28,6 +27,7 @@ import com.vaadin.ui.dnd.DropTargetExtension;
 import com.vaadin.ui.themes.ValoTheme;
 import com.vaadin.util.FileTypeResolver;
 import lombok.extern.slf4j.Slf4j;
+import no.uio.ifi.trackfind.backend.data.AttributePath;
 import no.uio.ifi.trackfind.backend.data.TreeNode;
 import no.uio.ifi.trackfind.backend.pojo.SearchResult;
 import no.uio.ifi.trackfind.backend.pojo.TfHub;
@@ -195,7 +195,7 @@ public class TrackFindMainUI extends AbstractUI {
                         ).getValue();
                         SearchResult searchResult = searchResults.iterator().next();
                         String termIDPath = StringUtils.substringBeforeLast(treeNode.getPath().replaceAll("term_label", "term_id"), separator);
-                        String termID = Dynamic.from(searchResult.getContent()).get(termIDPath, separator).asString();
+                        String termID = String.valueOf(AttributePath.compile(termIDPath, separator).get(searchResult.getContent()));
                         getUI().getPage().open(termID, "_blank");
                     } catch (SQLException ignored) {
                     }
@@ -413,12 +413,9 @@ public class TrackFindMainUI extends AbstractUI {
         resultsTable.setSizeFull();
         int i = 0;
         for (Map.Entry<String, List<String>> shortcut : SHORTCUTS.entrySet()) {
-            resultsTable.addColumn(sr ->
-                    {
-                        String path = String.join(".", shortcut.getValue());
-                        return Dynamic.from(sr.getContent()).dget(path).asOptional().orElse("");
-                    }
-            ).setCaption(shortcut.getKey()).setId(String.valueOf(i++));
+            AttributePath path = AttributePath.of(shortcut.getValue());
+            resultsTable.addColumn(sr -> Optional.ofNullable(path.get(sr.getContent())).orElse(""))
+                    .setCaption(shortcut.getKey()).setId(String.valueOf(i++));
         }
         resultsTable.removeColumn("content");
 
@@ -602,7 +599,8 @@ public class TrackFindMainUI extends AbstractUI {
                 if ("json".equalsIgnoreCase(extension)) {
                     return (StreamResource.StreamSource) () -> new ByteArrayInputStream(content.getBytes(Charset.defaultCharset()));
                 } else {
-                    String gSuiteResult = gSuiteService.apply(results, "");
+                    TfHub currentHub = getCurrentHub();
+                    String gSuiteResult = gSuiteService.apply(currentHub.getRepository(), currentHub.getName(), results, "");
                     return (StreamResource.StreamSource) () -> new ByteArrayInputStream(gSuiteResult.getBytes(Charset.defaultCharset()));
                 }
             }
@@ -15,6 +15,54 @@ FROM jsonb_each(a) e1(ka, va)
          FULL JOIN jsonb_each(b) e2(kb, vb) ON ka = kb
 $$;
 
+CREATE OR REPLACE FUNCTION jsonb_put_path(target jsonb, path text[], value jsonb)
+    RETURNS JSONB
+    LANGUAGE SQL AS
+$$
+SELECT CASE
+           WHEN cardinality(path) = 1 THEN jsonb_set(target, path, value)
+           ELSE jsonb_set(target, path[1:1], jsonb_put_path(COALESCE(target -> path[1], '{}'::jsonb), path[2:], value))
+           END
+$$;
+
+-- numbers in the shortest form (trailing zeros of the fraction dropped), as CanonicalJson writes parsed numbers
+CREATE OR REPLACE FUNCTION jsonb_normalize_numbers(value jsonb)
+    RETURNS JSONB
+    LANGUAGE SQL
+    IMMUTABLE AS
+$$
+SELECT CASE jsonb_typeof(value)
+           WHEN 'object' THEN (SELECT COALESCE(jsonb_object_agg(k, jsonb_normalize_numbers(v)), '{}'::jsonb) FROM jsonb_each(value) e(k, v))
+           WHEN 'array' THEN (SELECT COALESCE(jsonb_agg(jsonb_normalize_numbers(v) ORDER BY i), '[]'::jsonb) FROM jsonb_array_elements(value) WITH ORDINALITY e(v, i))
+           WHEN 'number' THEN to_jsonb(regexp_replace(value #>> '{}', '\.0+$|(\.\d*?)0+$', '\1')::numeric)
+           ELSE value
+           END
+$$;
+
+-- value written by static mapping: lists as they are (single element instead of the list of one), scalars and objects
+-- as text (see CanonicalJson.toText)
+CREATE OR REPLACE FUNCTION jsonb_mapping_value(value jsonb)
+    RETURNS JSONB
+    LANGUAGE SQL AS
+$$
+SELECT CASE
+           WHEN value IS NULL OR jsonb_typeof(value) = 'null' THEN '[]'::jsonb
+           WHEN jsonb_typeof(value) = 'array' AND jsonb_array_length(value) = 1 THEN jsonb_normalize_numbers(value -> 0)
+           WHEN jsonb_typeof(value) = 'array' THEN jsonb_normalize_numbers(value)
+           WHEN jsonb_typeof(value) = 'string' THEN value
+           ELSE to_jsonb(jsonb_normalize_numbers(value)::text)
+           END
+$$;
+
+-- content hash of the document: MD5 of its canonical text (the one printed for jsonb), CanonicalJson produces the same text
+CREATE OR REPLACE FUNCTION tf_content_hash(content jsonb)
+    RETURNS VARCHAR
+    LANGUAGE SQL
+    IMMUTABLE AS
+$$
+SELECT md5(content::text)
+$$;
+
 CREATE TABLE IF NOT EXISTS tf_users
 (
     id        BIGSERIAL PRIMARY KEY,
@@ -48,6 +96,13 @@ CREATE TABLE IF NOT EXISTS tf_hubs
     UNIQUE (display_name)
 );
 
+-- cron expression of periodic re-crawling (optional) and the time of the last scheduled run claimed by some node
+ALTER TABLE tf_hubs
+    ADD COLUMN IF NOT EXISTS crawl_schedule VARCHAR;
+
+ALTER TABLE tf_hubs
+    ADD COLUMN IF NOT EXISTS last_scheduled_crawl TIMESTAMP;
+
 CREATE TABLE IF NOT EXISTS tf_versions
 (
     id         BIGSERIAL PRIMARY KEY,
@@ -103,22 +158,120 @@ $$;
 CREATE SEQUENCE IF NOT EXISTS tf_objects_ids_sequence
     START 1 INCREMENT 1;
 
+CREATE TABLE IF NOT EXISTS tf_fetch_units
+(
+    id            BIGSERIAL PRIMARY KEY,
+    hub_id        BIGINT  NOT NULL REFERENCES tf_hubs (id),
+    uri           VARCHAR NOT NULL,
+    etag          VARCHAR,
+    last_modified VARCHAR,
+    UNIQUE (hub_id, uri)
+);
+
+-- checkpoints of the pending crawling: units fetched so far are staged (and committed) one by one,
+-- so that failed or interrupted crawling can be resumed; the version is created when all units are staged
+ALTER TABLE tf_fetch_units
+    ADD COLUMN IF NOT EXISTS staged_at TIMESTAMP;
+
+ALTER TABLE tf_fetch_units
+    ADD COLUMN IF NOT EXISTS staged_unchanged BOOLEAN;
+
+ALTER TABLE tf_fetch_units
+    ADD COLUMN IF NOT EXISTS staged_etag VARCHAR;
+
+ALTER TABLE tf_fetch_units
+    ADD COLUMN IF NOT EXISTS staged_last_modified VARCHAR;
+
+CREATE TABLE IF NOT EXISTS tf_documents
+(
+    hash    VARCHAR PRIMARY KEY,
+    content JSONB NOT NULL
+);
+
+-- objects are memberships of content-addressed documents in object types (and thus in versions),
+-- tables with inline content (created by previous releases) are migrated on startup by StorageMigration
 CREATE TABLE IF NOT EXISTS tf_objects
 (
-    id             BIGSERIAL PRIMARY KEY,
-    object_type_id BIGINT NOT NULL REFERENCES tf_object_types (id),
-    content        JSONB  NOT NULL
+    id             BIGINT PRIMARY KEY DEFAULT nextval('tf_objects_ids_sequence'),
+    object_type_id BIGINT  NOT NULL REFERENCES tf_object_types (id),
+    content_hash   VARCHAR NOT NULL REFERENCES tf_documents (hash),
+    fetch_unit_id  BIGINT REFERENCES tf_fetch_units (id)
 );
 
+CREATE TABLE IF NOT EXISTS tf_staged_objects
+(
+    fetch_unit_id    BIGINT  NOT NULL REFERENCES tf_fetch_units (id),
+    object_type_name VARCHAR NOT NULL,
+    content_hash     VARCHAR NOT NULL REFERENCES tf_documents (hash)
+);
+
+CREATE INDEX IF NOT EXISTS tf_staged_objects_fetch_unit_id_index
+    ON tf_staged_objects (fetch_unit_id);
+
+-- IDs of objects are allocated from the sequence in blocks by the bulk (COPY) writer
+ALTER TABLE tf_objects
+    ALTER COLUMN id SET DEFAULT nextval('tf_objects_ids_sequence');
+
+SELECT setval('tf_objects_ids_sequence',
+              GREATEST((SELECT COALESCE(MAX(id), 1) FROM tf_objects),
+                       (SELECT last_value FROM tf_objects_ids_sequence)));
+
+ALTER TABLE tf_objects
+    ADD COLUMN IF NOT EXISTS content_hash VARCHAR;
+
+ALTER TABLE tf_objects
+    ADD COLUMN IF NOT EXISTS fetch_unit_id BIGINT REFERENCES tf_fetch_units (id);
+
+CREATE INDEX IF NOT EXISTS tf_objects_object_type_id_content_hash_index
+    ON tf_objects (object_type_id, content_hash);
+
+CREATE INDEX IF NOT EXISTS tf_objects_content_hash_index
+    ON tf_objects (content_hash);
+
 CREATE INDEX IF NOT EXISTS tf_objects_id_index
     ON tf_objects (id);
 
 CREATE INDEX IF NOT EXISTS tf_objects_object_type_id_index
     ON tf_objects (object_type_id);
 
-CREATE INDEX IF NOT EXISTS tf_objects_content_index
-    ON tf_objects
-        USING gin (content);
+-- curation versions are stored as deltas relative to the version they are based on:
+-- own objects (added or changed) in tf_objects, removed ones in tf_removed_objects;
+-- inherited objects are materialized while the version is current and compacted afterwards
+ALTER TABLE tf_versions
+    ADD COLUMN IF NOT EXISTS delta BOOLEAN NOT NULL DEFAULT FALSE;
+
+ALTER TABLE tf_versions
+    ADD COLUMN IF NOT EXISTS materialized BOOLEAN NOT NULL DEFAULT TRUE;
+
+ALTER TABLE tf_objects
+    ADD COLUMN IF NOT EXISTS inherited BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE TABLE IF NOT EXISTS tf_removed_objects
+(
+    version_id       BIGINT  NOT NULL REFERENCES tf_versions (id),
+    object_type_name VARCHAR NOT NULL,
+    content_hash     VARCHAR NOT NULL REFERENCES tf_documents (hash),
+    PRIMARY KEY (version_id, object_type_name, content_hash)
+);
+
+CREATE TABLE IF NOT EXISTS tf_curation_fingerprints
+(
+    version_id       BIGINT  NOT NULL REFERENCES tf_versions (id),
+    fingerprint      VARCHAR NOT NULL,
+    object_type_name VARCHAR NOT NULL,
+    content_hash     VARCHAR REFERENCES tf_documents (hash),
+    PRIMARY KEY (version_id, fingerprint, object_type_name)
+);
+
+CREATE TABLE IF NOT EXISTS tf_validation_results
+(
+    schema_version  VARCHAR NOT NULL,
+    content_hash    VARCHAR NOT NULL REFERENCES tf_documents (hash) ON DELETE CASCADE,
+    schema_location VARCHAR NOT NULL,
+    valid           BOOLEAN NOT NULL,
+    messages        VARCHAR,
+    PRIMARY KEY (schema_version, content_hash)
+);
 
 CREATE TABLE IF NOT EXISTS tf_references
 (
@@ -149,12 +302,14 @@ FROM tf_versions
 WHERE current = TRUE;
 
 CREATE MATERIALIZED VIEW IF NOT EXISTS tf_current_objects AS
-SELECT o.*
+SELECT o.id, o.object_type_id, d.content
 FROM tf_current_versions lv,
      tf_object_types ot,
-     tf_objects o
+     tf_objects o,
+     tf_documents d
 WHERE lv.id = ot.version_id
-  AND ot.id = o.object_type_id;
+  AND ot.id = o.object_type_id
+  AND d.hash = o.content_hash;
 
 CREATE INDEX IF NOT EXISTS tf_current_objects_id_index
     ON tf_current_objects (id);
@@ -0,0 +1,58 @@
+package no.uio.ifi.trackfind.backend;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+
+/**
+ * Base class for tests running against PostgreSQL: the database is started in Docker (skipped if Docker is not available),
+ * unless <code>test.database.url</code> system property points to some existing one. The schema is re-created before every test.
+ */
+public abstract class AbstractDatabaseTest {
+
+    private static final String DATABASE_URL = System.getProperty("test.database.url");
+
+    private static PostgreSQLContainer<?> container;
+
+    protected String databaseUrl;
+    protected String databaseUsername;
+    protected String databasePassword;
+    protected DataSource dataSource;
+    protected JdbcTemplate jdbcTemplate;
+    protected TransactionTemplate transactionTemplate;
+
+    @BeforeClass
+    public static void startDatabase() {
+        if (DATABASE_URL != null || container != null) {
+            return;
+        }
+        Assume.assumeTrue("Docker is not available", DockerClientFactory.instance().isDockerAvailable());
+        container = new PostgreSQLContainer<>("postgres:10.5");
+        container.start();
+    }
+
+    @Before
+    public void setUpDatabase() {
+        // credentials of the existing database are part of its URL
+        databaseUrl = DATABASE_URL != null ? DATABASE_URL : container.getJdbcUrl();
+        databaseUsername = DATABASE_URL != null ? "" : container.getUsername();
+        databasePassword = DATABASE_URL != null ? "" : container.getPassword();
+        dataSource = new DriverManagerDataSource(databaseUrl, databaseUsername, databasePassword);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP SCHEMA public CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA public");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+}
@@ -0,0 +1,65 @@
+package no.uio.ifi.trackfind.backend.data;
+
+import alexh.weak.Dynamic;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading and writing of attributes by string paths (as done before, with {@link Dynamic})
+ * and by compiled {@link AttributePath}. Run with <code>main</code> from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttributePathBenchmark {
+
+    private static final String SEPARATOR = "->";
+    private static final String FROM_ATTRIBUTE = "'experiment'->'target'->'term_label'";
+    private static final String TO_ATTRIBUTE = "'target'->'summary'";
+
+    private Map<String, Object> document;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        document = new Gson().fromJson("{\"experiment\": {\"technique\": {\"term_label\": \"ChIP-seq\"}, " +
+                "\"target\": {\"term_id\": \"http://identifiers.org/hgnc:4851\", \"term_label\": \"H3K4me3\"}}}", Map.class);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> stringPath() {
+        Object value = Dynamic.from(document).get(FROM_ATTRIBUTE.replace("'", ""), SEPARATOR).asObject();
+        Map<String, Object> target = new HashMap<>();
+        String[] path = TO_ATTRIBUTE.replace("'", "").split(SEPARATOR);
+        Map<String, Object> nested = target;
+        for (int i = 0; i < path.length - 1; i++) {
+            nested = (Map<String, Object>) nested.computeIfAbsent(path[i], k -> new HashMap<String, Object>());
+        }
+        nested.put(path[path.length - 1], value);
+        return target;
+    }
+
+    @Benchmark
+    public Map<String, Object> compiledPath() {
+        Object value = AttributePath.compile(FROM_ATTRIBUTE, SEPARATOR).get(document);
+        Map<String, Object> target = new HashMap<>();
+        AttributePath.compile(TO_ATTRIBUTE, SEPARATOR).put(target, value);
+        return target;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AttributePathBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,45 @@
+package no.uio.ifi.trackfind.backend.data;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AttributePathTest {
+
+    private static final String SEPARATOR = "->";
+
+    @SuppressWarnings("unchecked")
+    private final Map<String, Object> document = new Gson().fromJson("{\"a\": {\"b\": \"x\"}, " +
+            "\"samples\": [{\"type\": \"t1\"}, {\"type\": [\"t2\", \"t3\"]}, {\"other\": 1}]}", Map.class);
+
+    @Test
+    public void getTest() {
+        assertSame(AttributePath.compile("'a'->'b'", SEPARATOR), AttributePath.compile("'a'->'b'", SEPARATOR));
+        assertEquals("x", AttributePath.compile("'a'->'b'", SEPARATOR).get(document));
+        assertEquals("t1", AttributePath.compile("samples->0->type", SEPARATOR).get(document));
+        assertNull(AttributePath.compile("samples->type", SEPARATOR).get(document));
+        assertNull(AttributePath.compile("a->b->c", SEPARATOR).get(document));
+    }
+
+    @Test
+    public void getAllTest() {
+        assertEquals(Arrays.asList("t1", "t2", "t3"), AttributePath.compile("samples->type", SEPARATOR).getAll(document));
+        assertEquals(Collections.singletonList("x"), AttributePath.compile("a->b", SEPARATOR).getAll(document));
+        assertTrue(AttributePath.compile("a->c", SEPARATOR).getAll(document).isEmpty());
+    }
+
+    @Test
+    public void putTest() {
+        Map<String, Object> target = new HashMap<>();
+        AttributePath.compile("'c'->'d'", SEPARATOR).put(target, "y");
+        AttributePath.compile("'c'->'e'", SEPARATOR).put(target, "z");
+        assertEquals("{\"c\":{\"d\":\"y\",\"e\":\"z\"}}", new Gson().toJson(target));
+    }
+
+}
@@ -0,0 +1,133 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IngestionPipelineTest {
+
+    private static final int CAPACITY = 2;
+
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void backPressureTest() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        IngestionTask task = sink -> {
+            for (int i = 0; i < 100; i++) {
+                sink.accept("samples", String.valueOf(i));
+                produced.incrementAndGet();
+            }
+        };
+        List<String> persisted = new ArrayList<>();
+        int[] producedWhileBlocked = new int[1];
+        new IngestionPipeline("test", CAPACITY, new SimpleMeterRegistry()).run(executorService, Collections.singletonList(task), (objectTypeName, content) -> {
+            if (persisted.isEmpty()) {
+                // persisting stage is stuck: the task can only fill the queue
+                sleep();
+                producedWhileBlocked[0] = produced.get();
+            }
+            persisted.add(content);
+        });
+
+        // one object is being persisted, the queue is full
+        assertEquals(CAPACITY + 1, producedWhileBlocked[0]);
+        assertEquals(IntStream.range(0, 100).mapToObj(String::valueOf).collect(Collectors.toList()), persisted);
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+        IOException failure = new IOException("Connection reset");
+        CountDownLatch stopped = new CountDownLatch(2);
+        IngestionTask failingTask = sink -> {
+            sink.accept("samples", "failing");
+            sleep();
+            throw failure;
+        };
+        IngestionTask endlessTask = sink -> {
+            try {
+                while (true) {
+                    sink.accept("samples", "endless");
+                }
+            } finally {
+                stopped.countDown();
+            }
+        };
+        try {
+            new IngestionPipeline("test", CAPACITY, new SimpleMeterRegistry())
+                    .run(executorService, Arrays.asList(failingTask, endlessTask, endlessTask), (objectTypeName, content) -> {
+                    });
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+        // other tasks are aborted, even those blocked by the full queue
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void sequentialEquivalenceTest() throws Exception {
+        List<IngestionTask> tasks = new ArrayList<>();
+        for (int t = 0; t < 10; t++) {
+            String objectTypeName = t % 2 == 0 ? "samples" : "experiments";
+            int task = t;
+            tasks.add(sink -> {
+                for (int i = 0; i < 50; i++) {
+                    sink.accept(objectTypeName, task + ":" + i);
+                }
+            });
+        }
+        List<String> sequential = new ArrayList<>();
+        for (IngestionTask task : tasks) {
+            task.run((objectTypeName, content) -> sequential.add(objectTypeName + "/" + content));
+        }
+        List<String> pipelined = new ArrayList<>();
+        new IngestionPipeline("test", CAPACITY, new SimpleMeterRegistry())
+                .run(executorService, tasks, (objectTypeName, content) -> pipelined.add(objectTypeName + "/" + content));
+
+        // objects of different tasks are interleaved, objects of the same task keep their order
+        assertEquals(new HashSet<>(sequential), new HashSet<>(pipelined));
+        assertEquals(sequential.size(), pipelined.size());
+        for (int t = 0; t < 10; t++) {
+            String prefix = "/" + t + ":";
+            assertEquals(sequential.stream().filter(o -> o.contains(prefix)).collect(Collectors.toList()),
+                    pipelined.stream().filter(o -> o.contains(prefix)).collect(Collectors.toList()));
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
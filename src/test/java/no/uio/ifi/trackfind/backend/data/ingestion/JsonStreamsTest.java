@@ -0,0 +1,42 @@
+package no.uio.ifi.trackfind.backend.data.ingestion;
+
+import com.google.gson.stream.JsonReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JsonStreamsTest {
+
+    private static final String DOCUMENT = "{\"total\": 2, \"@graph\": [{\"a\": 1.50, \"b\": [true, null, \"x\\ty\"]}, {\"c\": {\"d\": \"e\"}}], \"tail\": {}}";
+
+    @Test
+    public void readArrayElementsTest() throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(DOCUMENT));
+        reader.beginObject();
+        assertTrue(JsonStreams.seek(reader, "@graph"));
+        List<String> objects = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            objects.add(JsonStreams.read(reader));
+        }
+        reader.endArray();
+        assertEquals(2, objects.size());
+        assertEquals("{\"a\":1.50,\"b\":[true,null,\"x\\ty\"]}", objects.get(0));
+        assertEquals("{\"c\":{\"d\":\"e\"}}", objects.get(1));
+        assertFalse(JsonStreams.seek(reader, "@graph"));
+    }
+
+    @Test
+    public void readWithExtraPropertyTest() throws IOException {
+        JsonReader reader = new JsonReader(new StringReader("{\"id1\": {\"x\": 1}}"));
+        reader.beginObject();
+        String id = reader.nextName();
+        assertEquals("{\"tf_dataset_id\":\"id1\",\"x\":1}", JsonStreams.read(reader, "tf_dataset_id", id));
+    }
+
+}
@@ -0,0 +1,359 @@
+package no.uio.ifi.trackfind.backend.data.providers;
+
+import com.google.gson.Gson;
+import no.uio.ifi.trackfind.backend.AbstractDatabaseTest;
+import no.uio.ifi.trackfind.backend.pojo.SearchResult;
+import no.uio.ifi.trackfind.backend.pojo.TfHub;
+import no.uio.ifi.trackfind.backend.pojo.TfMapping;
+import no.uio.ifi.trackfind.backend.pojo.TfObjectType;
+import no.uio.ifi.trackfind.backend.pojo.TfVersion;
+import no.uio.ifi.trackfind.backend.repositories.HubRepository;
+import no.uio.ifi.trackfind.backend.repositories.VersionRepository;
+import no.uio.ifi.trackfind.backend.scripting.coffeescript.CoffeeScriptScriptingEngine;
+import no.uio.ifi.trackfind.backend.services.impl.CurationFingerprintService;
+import no.uio.ifi.trackfind.backend.services.impl.MetamodelService;
+import no.uio.ifi.trackfind.backend.services.impl.ObjectStorageService;
+import no.uio.ifi.trackfind.backend.services.impl.SchemaService;
+import no.uio.ifi.trackfind.backend.services.impl.SearchService;
+import no.uio.ifi.trackfind.backend.services.impl.SqlCurationService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs curations of a hub against the real storage. Everything besides the storage is mocked: versions are kept in memory
+ * (and mirrored to the database), entries of the current version are read from <code>tf_current_objects</code>,
+ * which is refreshed after every committed operation, as on {@link no.uio.ifi.trackfind.backend.events.DataReloadEvent}.
+ */
+public class CurationTest extends AbstractDatabaseTest {
+
+    private static final String HUB = "hub";
+    private static final String SAMPLES = "samples";
+    private static final String EXPERIMENTS = "experiments";
+    // experiments reference samples by "sample_id"
+    private static final String CURRENT_ROWS_SQL = "SELECT s.id AS samples_id, s.content AS samples_content, e.id AS experiments_id, e.content AS experiments_content " +
+            "FROM tf_current_objects s JOIN tf_object_types st ON st.id = s.object_type_id AND st.name = 'samples' " +
+            "LEFT JOIN (tf_current_objects e JOIN tf_object_types et ON et.id = e.object_type_id AND et.name = 'experiments') ON e.content ->> 'sample_id' = s.content ->> 'id'";
+    private static final String DROP_EXPERIMENTS_SCRIPT = "source = JSON.parse(input)\n" +
+            "delete source['experiments']\n" +
+            "source['samples']['y'] = '%s'\n" +
+            "return JSON.stringify(source)";
+
+    private final Gson gson = new Gson();
+    private final List<TfVersion> versions = new ArrayList<>();
+    private final List<TfMapping> mappings = new ArrayList<>();
+
+    private TestDataProvider dataProvider;
+    private ObjectStorageService objectStorageService;
+    private TfHub hub;
+
+    @Before
+    public void setUp() throws Exception {
+        hub = new TfHub("Test", HUB, "test");
+        hub.setId(jdbcTemplate.queryForObject("INSERT INTO tf_hubs (repository, name, uri) VALUES (?, ?, ?) RETURNING id", Long.class, "Test", HUB, "test"));
+
+        HubRepository hubRepository = mock(HubRepository.class);
+        when(hubRepository.findByRepositoryAndName("Test", HUB)).then(invocation -> {
+            hub.setVersions(new HashSet<>(versions));
+            return hub;
+        });
+        VersionRepository versionRepository = mock(VersionRepository.class);
+        when(versionRepository.saveAndFlush(any(TfVersion.class))).then(invocation -> saveVersion(invocation.getArgument(0)));
+        when(versionRepository.save(any(TfVersion.class))).then(invocation -> saveVersion(invocation.getArgument(0)));
+        when(versionRepository.findByHubAndDeltaTrueAndMaterializedTrueAndCurrentFalse(any())).then(invocation -> versions.stream()
+                .filter(v -> v.getDelta() && v.getMaterialized() && !v.getCurrent())
+                .collect(Collectors.toList()));
+        MetamodelService metamodelService = mock(MetamodelService.class);
+        when(metamodelService.getMappings("Test", HUB)).then(invocation -> new ArrayList<>(mappings));
+        SearchService searchService = mock(SearchService.class);
+        when(searchService.buildSearchQuery("Test", HUB, Boolean.TRUE.toString(), Collections.emptySet())).thenReturn(CURRENT_ROWS_SQL);
+        doAnswer(invocation -> {
+            List<SearchResult> entries = readCurrentRows();
+            if (!entries.isEmpty()) {
+                invocation.<SearchService.ChunkHandler>getArgument(5).handle(entries);
+            }
+            return null;
+        }).when(searchService).stream(eq("Test"), eq(HUB), anyString(), any(), anyInt(), any());
+
+        objectStorageService = new ObjectStorageService();
+        objectStorageService.setDataSource(dataSource);
+        objectStorageService.setJdbcTemplate(jdbcTemplate);
+        objectStorageService.setVersionRepository(versionRepository);
+        ReflectionTestUtils.setField(objectStorageService, "batchSize", 2);
+
+        SqlCurationService sqlCurationService = new SqlCurationService();
+        sqlCurationService.setJdbcTemplate(jdbcTemplate);
+        sqlCurationService.setSearchService(searchService);
+        ReflectionTestUtils.setField(sqlCurationService, "separator", "->");
+
+        CurationFingerprintService curationFingerprintService = new CurationFingerprintService();
+        curationFingerprintService.setJdbcTemplate(jdbcTemplate);
+        curationFingerprintService.setGson(gson);
+        ReflectionTestUtils.setField(curationFingerprintService, "scriptingLanguage", "CoffeeScript");
+
+        CoffeeScriptScriptingEngine scriptingEngine = new CoffeeScriptScriptingEngine();
+        ReflectionTestUtils.setField(scriptingEngine, "input", "input");
+
+        dataProvider = new TestDataProvider();
+        dataProvider.setHubRepository(hubRepository);
+        dataProvider.setVersionRepository(versionRepository);
+        dataProvider.setMetamodelService(metamodelService);
+        dataProvider.setSearchService(searchService);
+        dataProvider.setSchemaService(mock(SchemaService.class));
+        dataProvider.setApplicationEventPublisher(mock(ApplicationEventPublisher.class));
+        dataProvider.setObjectStorageService(objectStorageService);
+        dataProvider.setSqlCurationService(sqlCurationService);
+        dataProvider.setCurationFingerprintService(curationFingerprintService);
+        dataProvider.setJdbcTemplate(jdbcTemplate);
+        dataProvider.setCurationPool(ForkJoinPool.commonPool());
+        dataProvider.setScriptingEngines(Collections.singletonList(scriptingEngine));
+        dataProvider.setGson(gson);
+        ReflectionTestUtils.setField(dataProvider, "separator", "->");
+        ReflectionTestUtils.setField(dataProvider, "scriptingLanguage", "CoffeeScript");
+        ReflectionTestUtils.setField(dataProvider, "curationChunkSize", 2);
+        ReflectionTestUtils.setField(dataProvider, "scriptingBatchSize", 2);
+    }
+
+    @Test
+    public void backToBackCurationsTest() {
+        TfVersion crawling = crawl("{\"id\": \"a\", \"x\": \"1\"}", "{\"id\": \"b\", \"x\": \"2\"}", "{\"id\": \"c\", \"x\": \"3\", \"y\": \"3\"}");
+        List<String> originals = getContents(crawling);
+
+        // nothing changes: the first curation only inherits objects of the crawling version
+        TfVersion first = curate(staticMapping(SAMPLES, "x", SAMPLES, "x"));
+        assertEquals(originals, getContents(first));
+
+        // the second curation reads (and diffs against) inherited objects of the first one
+        TfVersion second = curate(staticMapping(SAMPLES, "x", SAMPLES, "y"));
+        assertEquals(Arrays.asList("{\"x\": \"1\", \"y\": \"1\", \"id\": \"a\"}", "{\"x\": \"2\", \"y\": \"2\", \"id\": \"b\"}", "{\"x\": \"3\", \"y\": \"3\", \"id\": \"c\"}"),
+                getContents(second));
+        assertEquals(Integer.valueOf(2), jdbcTemplate.queryForObject("SELECT count(*)::int FROM tf_removed_objects WHERE version_id = ?", Integer.class, second.getId()));
+
+        // the first curation is compacted, but can still be restored
+        assertEquals(Collections.emptyList(), getContents(first));
+        transactionTemplate.executeWithoutResult(status -> objectStorageService.materialize(first));
+        assertEquals(originals, getContents(first));
+    }
+
+    @Test
+    public void duplicatesTest() {
+        // batches hold two objects: duplicates are skipped within the batch and across batches
+        TfVersion crawling = crawl("{\"id\": \"a\"}", "{\"id\": \"a\"}", "{\"id\": \"b\"}", "{\"id\": \"a\"}", "{\"id\": \"b\"}");
+        assertEquals(Arrays.asList("{\"id\": \"a\"}", "{\"id\": \"b\"}"), getContents(crawling));
+    }
+
+    @Test
+    public void pushDownTest() {
+        Map<String, Collection<String>> objects = new HashMap<>();
+        objects.put(SAMPLES, Arrays.asList("{\"id\": \"a\", \"x\": \"1\", \"tags\": [\"p\", \"q\"], \"n\": 1, \"f\": 1.50, \"flag\": true, \"ns\": [2.0, 3]}",
+                "{\"id\": \"b\", \"z\": {\"y\": \"2\", \"w\": {\"k\": 1.0}}, \"ns\": [4.10]}",
+                "{\"id\": \"c\"}"));
+        objects.put(EXPERIMENTS, Collections.singletonList("{\"id\": \"e\", \"sample_id\": \"a\", \"score\": 2.50}"));
+        crawl(objects);
+        TfMapping[] mappings = {
+                staticMapping(SAMPLES, "id", EXPERIMENTS, "sample"),
+                staticMapping(SAMPLES, "x", EXPERIMENTS, "details->x"),
+                staticMapping(SAMPLES, "z->y", EXPERIMENTS, "details->y"),
+                staticMapping(SAMPLES, "tags", EXPERIMENTS, "tags"),
+                staticMapping(SAMPLES, "n", EXPERIMENTS, "details->n"),
+                staticMapping(SAMPLES, "f", EXPERIMENTS, "details->f"),
+                staticMapping(SAMPLES, "flag", EXPERIMENTS, "flag"),
+                staticMapping(SAMPLES, "z", EXPERIMENTS, "details->z"),
+                staticMapping(SAMPLES, "ns", EXPERIMENTS, "ns")
+        };
+
+        // both curations run over the same entries (objects of the previous curation are not read), results are compared before compaction
+        ReflectionTestUtils.setField(dataProvider, "curationPushDown", false);
+        TfVersion java = curate(mappings);
+        List<String> javaContents = getContents(java, EXPERIMENTS);
+        List<String> javaHashes = getHashes(java);
+        ReflectionTestUtils.setField(dataProvider, "curationPushDown", true);
+        TfVersion sql = curate(mappings);
+
+        assertEquals(Arrays.asList(
+                "{\"id\": \"e\", \"ns\": [2, 3], \"flag\": \"true\", \"tags\": [\"p\", \"q\"], \"score\": 2.5, \"sample\": \"a\", " +
+                        "\"details\": {\"f\": \"1.5\", \"n\": \"1\", \"x\": \"1\", \"y\": [], \"z\": []}, \"sample_id\": \"a\"}",
+                "{\"ns\": 4.1, \"flag\": [], \"tags\": [], \"sample\": \"b\", " +
+                        "\"details\": {\"f\": [], \"n\": [], \"x\": [], \"y\": \"2\", \"z\": \"{\\\"w\\\": {\\\"k\\\": 1}, \\\"y\\\": \\\"2\\\"}\"}}",
+                "{\"ns\": [], \"flag\": [], \"tags\": [], \"sample\": \"c\", \"details\": {\"f\": [], \"n\": [], \"x\": [], \"y\": [], \"z\": []}}"),
+                javaContents);
+        assertEquals(javaContents, getContents(sql, EXPERIMENTS));
+        assertEquals(javaHashes, getHashes(sql));
+    }
+
+    @Test
+    public void incrementalStaticCurationTest() {
+        ReflectionTestUtils.setField(dataProvider, "curationIncremental", true);
+        crawl("{\"id\": \"a\", \"x\": \"1\"}", "{\"id\": \"b\", \"x\": \"2\"}", "{\"id\": \"c\", \"x\": \"3\"}");
+        curate(staticMapping(SAMPLES, "x", SAMPLES, "y"));
+        assertEquals(Arrays.asList("a", "b", "c"), dataProvider.getMappedIds());
+
+        // the source attribute of "b" is changed, "a" and "c" are carried forward
+        crawl("{\"id\": \"a\", \"x\": \"1\"}", "{\"id\": \"b\", \"x\": \"22\"}", "{\"id\": \"c\", \"x\": \"3\"}");
+        TfVersion second = curate(staticMapping(SAMPLES, "x", SAMPLES, "y"));
+        assertEquals(Collections.singletonList("b"), dataProvider.getMappedIds());
+        assertEquals(Arrays.asList("{\"x\": \"1\", \"y\": \"1\", \"id\": \"a\"}", "{\"x\": \"22\", \"y\": \"22\", \"id\": \"b\"}", "{\"x\": \"3\", \"y\": \"3\", \"id\": \"c\"}"),
+                getContents(second));
+
+        // another mapping chain: nothing is carried forward
+        TfVersion third = curate(staticMapping(SAMPLES, "x", SAMPLES, "z"));
+        assertEquals(Arrays.asList("a", "b", "c"), dataProvider.getMappedIds());
+        assertEquals(Arrays.asList("{\"x\": \"1\", \"y\": \"1\", \"z\": \"1\", \"id\": \"a\"}", "{\"x\": \"22\", \"y\": \"22\", \"z\": \"22\", \"id\": \"b\"}",
+                "{\"x\": \"3\", \"y\": \"3\", \"z\": \"3\", \"id\": \"c\"}"), getContents(third));
+    }
+
+    @Test
+    public void incrementalDynamicCurationTest() {
+        ReflectionTestUtils.setField(dataProvider, "curationIncremental", true);
+        Map<String, Collection<String>> objects = new HashMap<>();
+        objects.put(SAMPLES, Arrays.asList("{\"id\": \"a\"}", "{\"id\": \"b\"}"));
+        objects.put(EXPERIMENTS, Arrays.asList("{\"id\": \"e1\", \"sample_id\": \"a\"}", "{\"id\": \"e2\", \"sample_id\": \"b\"}"));
+        crawl(objects);
+        TfVersion first = curate(dynamicMapping(String.format(DROP_EXPERIMENTS_SCRIPT, "1")));
+        assertEquals(Arrays.asList("a", "b"), dataProvider.getMappedIds());
+        assertEquals(Collections.emptyList(), getContents(first, EXPERIMENTS));
+
+        // "a" is carried forward: its experiment is dropped again, as the script did before
+        objects.put(EXPERIMENTS, Arrays.asList("{\"id\": \"e1\", \"sample_id\": \"a\"}", "{\"id\": \"e2\", \"sample_id\": \"b\", \"changed\": \"true\"}"));
+        crawl(objects);
+        TfVersion second = curate(dynamicMapping(String.format(DROP_EXPERIMENTS_SCRIPT, "1")));
+        assertEquals(Collections.singletonList("b"), dataProvider.getMappedIds());
+        assertEquals(Collections.emptyList(), getContents(second, EXPERIMENTS));
+        assertEquals(Arrays.asList("{\"y\": \"1\", \"id\": \"a\"}", "{\"y\": \"1\", \"id\": \"b\"}"), getContents(second));
+
+        // the script is changed: the chain fingerprint is different, nothing is carried forward
+        crawl(objects.get(SAMPLES).toArray(new String[0]));
+        TfVersion third = curate(dynamicMapping(String.format(DROP_EXPERIMENTS_SCRIPT, "2")));
+        assertEquals(Arrays.asList("a", "b"), dataProvider.getMappedIds());
+        assertEquals(Arrays.asList("{\"y\": \"2\", \"id\": \"a\"}", "{\"y\": \"2\", \"id\": \"b\"}"), getContents(third));
+    }
+
+    private TfVersion crawl(String... samples) {
+        return crawl(Collections.singletonMap(SAMPLES, Arrays.asList(samples)));
+    }
+
+    private TfVersion crawl(Map<String, Collection<String>> objects) {
+        transactionTemplate.executeWithoutResult(status -> dataProvider.save(HUB, objects));
+        jdbcTemplate.execute("REFRESH MATERIALIZED VIEW tf_current_objects");
+        return versions.stream().filter(TfVersion::getCurrent).findAny().orElseThrow();
+    }
+
+    private TfVersion curate(TfMapping... curationMappings) {
+        mappings.clear();
+        mappings.addAll(Arrays.asList(curationMappings));
+        dataProvider.getMappedIds().clear();
+        transactionTemplate.executeWithoutResult(status -> dataProvider.runCuration(HUB));
+        jdbcTemplate.execute("REFRESH MATERIALIZED VIEW tf_current_objects");
+        return versions.stream().filter(TfVersion::getCurrent).findAny().orElseThrow();
+    }
+
+    private TfMapping staticMapping(String fromObjectType, String fromAttribute, String toObjectType, String toAttribute) {
+        return new TfMapping(null, (long) mappings.size(), null, objectType(fromObjectType), fromAttribute, objectType(toObjectType), toAttribute, null);
+    }
+
+    private TfMapping dynamicMapping(String script) {
+        return new TfMapping(null, (long) mappings.size(), null, null, null, null, null, script);
+    }
+
+    private TfObjectType objectType(String name) {
+        TfObjectType objectType = new TfObjectType();
+        objectType.setName(name);
+        return objectType;
+    }
+
+    private List<String> getContents(TfVersion version) {
+        return getContents(version, SAMPLES);
+    }
+
+    private List<String> getContents(TfVersion version, String objectTypeName) {
+        return jdbcTemplate.queryForList("SELECT d.content::text FROM tf_objects o JOIN tf_object_types ot ON ot.id = o.object_type_id " +
+                "JOIN tf_documents d ON d.hash = o.content_hash WHERE ot.version_id = ? AND ot.name = ? ORDER BY 1", String.class, version.getId(), objectTypeName);
+    }
+
+    private List<String> getHashes(TfVersion version) {
+        return jdbcTemplate.queryForList("SELECT o.content_hash FROM tf_objects o JOIN tf_object_types ot ON ot.id = o.object_type_id " +
+                "WHERE ot.version_id = ? ORDER BY 1", String.class, version.getId());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<SearchResult> readCurrentRows() {
+        return jdbcTemplate.query(CURRENT_ROWS_SQL, (resultSet, rowNum) -> {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            SearchResult searchResult = new SearchResult();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String column = metaData.getColumnName(i);
+                if (column.endsWith("_content") && resultSet.getString(i) != null) {
+                    String objectTypeName = column.replace("_content", "");
+                    searchResult.getIds().put(objectTypeName, resultSet.getLong(objectTypeName + "_id"));
+                    searchResult.getContent().put(objectTypeName, new HashMap(gson.fromJson(resultSet.getString(i), Map.class)));
+                }
+            }
+            return searchResult;
+        });
+    }
+
+    private TfVersion saveVersion(TfVersion version) {
+        if (version.getId() == null) {
+            version.setId(jdbcTemplate.queryForObject("INSERT INTO tf_versions (hub_id, version, based_on, current, operation, time, delta, materialized) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING id", Long.class,
+                    hub.getId(), version.getVersion(), version.getBasedOn() == null ? null : version.getBasedOn().getId(), version.getCurrent(),
+                    version.getOperation().name(), new Timestamp(version.getTime().getTime()), version.getDelta(), version.getMaterialized()));
+            versions.add(version);
+        } else {
+            jdbcTemplate.update("UPDATE tf_versions SET current = ?, materialized = ?, validation = ? WHERE id = ?",
+                    version.getCurrent(), version.getMaterialized(), version.getValidation(), version.getId());
+        }
+        return version;
+    }
+
+    private static class TestDataProvider extends AbstractDataProvider {
+
+        private final List<String> mappedIds = Collections.synchronizedList(new ArrayList<>());
+
+        /**
+         * @return IDs of samples of the entries mapped by the last curation (not carried forward), sorted.
+         */
+        List<String> getMappedIds() {
+            Collections.sort(mappedIds);
+            return mappedIds;
+        }
+
+        @Override
+        protected void runMappings(List<SearchResult> allEntries, Collection<TfMapping> mappings) throws Exception {
+            allEntries.forEach(e -> mappedIds.add(String.valueOf(e.getContent().get(SAMPLES).get("id"))));
+            super.runMappings(allEntries, mappings);
+        }
+
+        @Override
+        protected void fetchData(String hubName) {
+        }
+
+        @Override
+        public String getName() {
+            return "Test";
+        }
+
+        @Override
+        public String getFetchURI(String hubName) {
+            return "test";
+        }
+
+    }
+
+}
@@ -0,0 +1,281 @@
+package no.uio.ifi.trackfind.backend.data.providers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.uio.ifi.trackfind.backend.AbstractDatabaseTest;
+import no.uio.ifi.trackfind.backend.operations.Operation;
+import no.uio.ifi.trackfind.backend.pojo.TfHub;
+import no.uio.ifi.trackfind.backend.pojo.TfVersion;
+import no.uio.ifi.trackfind.backend.repositories.HubRepository;
+import no.uio.ifi.trackfind.backend.repositories.VersionRepository;
+import no.uio.ifi.trackfind.backend.services.impl.FetchUnitService;
+import no.uio.ifi.trackfind.backend.services.impl.HttpService;
+import no.uio.ifi.trackfind.backend.services.impl.ObjectStorageService;
+import no.uio.ifi.trackfind.backend.services.impl.SchemaService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs incremental crawlings of a hub against the real storage. Transactions are demarcated as in the application
+ * (by proxies of the data provider and of {@link FetchUnitService}), versions are read from and written to the database,
+ * resources are served by the mocked {@link HttpService}: one line of the resource is one object.
+ */
+public class IncrementalCrawlingTest extends AbstractDatabaseTest {
+
+    private static final String HUB = "hub";
+    private static final String SAMPLES = "samples";
+    private static final long CHECKPOINT_TTL = 24 * 60 * 60 * 1000;
+    private static final long TIMEOUT = 10000;
+
+    private final Map<String, String> resources = new LinkedHashMap<>();
+    private final Map<String, String> etags = new HashMap<>();
+    private final List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failing = Collections.synchronizedSet(new HashSet<>());
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    private ExecutorService executorService;
+    private TfHub hub;
+    private DataProvider dataProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        hub = new TfHub("Test", HUB, "test");
+        hub.setId(jdbcTemplate.queryForObject("INSERT INTO tf_hubs (repository, name, uri) VALUES (?, ?, ?) RETURNING id", Long.class, "Test", HUB, "test"));
+        for (String uri : Arrays.asList("test://a", "test://b", "test://c")) {
+            resources.put(uri, "{\"id\": \"" + uri + "/1\"}\n{\"id\": \"" + uri + "/2\"}");
+            etags.put(uri, "\"v1\"");
+        }
+
+        HubRepository hubRepository = mock(HubRepository.class);
+        when(hubRepository.findByRepositoryAndName("Test", HUB)).then(invocation -> {
+            hub.setVersions(new HashSet<>(readVersions()));
+            return hub;
+        });
+        VersionRepository versionRepository = mock(VersionRepository.class);
+        when(versionRepository.saveAndFlush(any(TfVersion.class))).then(invocation -> saveVersion(invocation.getArgument(0)));
+        when(versionRepository.save(any(TfVersion.class))).then(invocation -> saveVersion(invocation.getArgument(0)));
+        HttpService httpService = mock(HttpService.class);
+        when(httpService.get(eq("Test"), anyString(), anyMap())).then(invocation -> get(invocation.getArgument(1), invocation.getArgument(2)));
+
+        ObjectStorageService objectStorageService = new ObjectStorageService();
+        objectStorageService.setDataSource(dataSource);
+        objectStorageService.setJdbcTemplate(jdbcTemplate);
+        objectStorageService.setVersionRepository(versionRepository);
+        ReflectionTestUtils.setField(objectStorageService, "batchSize", 2);
+
+        FetchUnitService fetchUnitService = new FetchUnitService();
+        fetchUnitService.setJdbcTemplate(jdbcTemplate);
+        ReflectionTestUtils.setField(fetchUnitService, "checkpointTTL", CHECKPOINT_TTL);
+
+        executorService = Executors.newFixedThreadPool(3);
+        TestDataProvider testDataProvider = new TestDataProvider();
+        testDataProvider.setHubRepository(hubRepository);
+        testDataProvider.setVersionRepository(versionRepository);
+        testDataProvider.setSchemaService(mock(SchemaService.class));
+        testDataProvider.setApplicationEventPublisher(mock(ApplicationEventPublisher.class));
+        testDataProvider.setObjectStorageService(objectStorageService);
+        testDataProvider.setFetchUnitService(transactional(fetchUnitService));
+        testDataProvider.setHttpService(httpService);
+        testDataProvider.setExecutorService(executorService);
+        testDataProvider.setMeterRegistry(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(testDataProvider, "ingestionQueueCapacity", 2);
+        dataProvider = transactional(testDataProvider);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void resumeTest() {
+        interruptedCrawl();
+
+        // only the resource which has failed is fetched again
+        fetched.clear();
+        dataProvider.crawlRemoteRepository(HUB);
+        assertEquals(Collections.singletonList("test://c"), fetched);
+        assertEquals(6, getContents().size());
+        assertEquals(1, readVersions().size());
+        assertCheckpointsCommitted("\"v1\"");
+    }
+
+    @Test
+    public void checkpointTTLTest() {
+        interruptedCrawl();
+
+        // checkpoints of the interrupted crawling are expired: everything is fetched again
+        jdbcTemplate.update("UPDATE tf_fetch_units SET staged_at = ? WHERE staged_at IS NOT NULL", new Timestamp(System.currentTimeMillis() - 2 * CHECKPOINT_TTL));
+        fetched.clear();
+        dataProvider.crawlRemoteRepository(HUB);
+        assertEquals(Arrays.asList("test://a", "test://b", "test://c"), sorted(fetched));
+        assertEquals(6, getContents().size());
+        assertCheckpointsCommitted("\"v1\"");
+    }
+
+    @Test
+    public void unchangedContentTest() {
+        dataProvider.crawlRemoteRepository(HUB);
+        List<String> contents = getContents();
+
+        // resources are modified, but their content is the same: the crawling is rolled back, checkpoints are committed anyway
+        etags.replaceAll((uri, etag) -> "\"v2\"");
+        fetched.clear();
+        dataProvider.crawlRemoteRepository(HUB);
+        assertEquals(3, fetched.size());
+        assertEquals(1, readVersions().size());
+        assertEquals(contents, getContents());
+        assertCheckpointsCommitted("\"v2\"");
+
+        // validators of the rolled back crawling are sent with the next one
+        fetched.clear();
+        dataProvider.crawlRemoteRepository(HUB);
+        assertEquals(3, fetched.size());
+        assertEquals(3, notModified.get());
+        assertEquals(1, readVersions().size());
+        assertCheckpointsCommitted("\"v2\"");
+    }
+
+    /**
+     * Crawls the hub, failing to fetch the last resource once the other ones are staged.
+     */
+    private void interruptedCrawl() {
+        failing.add("test://c");
+        try {
+            dataProvider.crawlRemoteRepository(HUB);
+            fail();
+        } catch (RuntimeException e) {
+            // the crawling is rolled back, the checkpoints are kept
+        }
+        failing.clear();
+        assertEquals(Arrays.asList("test://a", "test://b", "test://c"), sorted(fetched));
+        assertEquals(0, readVersions().size());
+        assertEquals(Arrays.asList("test://a", "test://b"), getStagedUris());
+        assertEquals(Integer.valueOf(4), jdbcTemplate.queryForObject("SELECT count(*)::int FROM tf_staged_objects", Integer.class));
+    }
+
+    private HttpService.Response get(String uri, Map<String, String> headers) throws Exception {
+        fetched.add(uri);
+        if (failing.contains(uri)) {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (getStagedUris().size() != resources.size() - failing.size()) {
+                assertTrue("Other resources are not staged", System.currentTimeMillis() < deadline);
+                Thread.sleep(100);
+            }
+            throw new IOException("Connection reset");
+        }
+        String etag = etags.get(uri);
+        HttpHeaders httpHeaders = HttpHeaders.of(Collections.singletonMap("ETag", Collections.singletonList(etag)), (name, value) -> true);
+        if (etag.equals(headers.get("If-None-Match"))) {
+            notModified.incrementAndGet();
+            return new HttpService.Response(HttpURLConnection.HTTP_NOT_MODIFIED, httpHeaders, InputStream.nullInputStream());
+        }
+        return new HttpService.Response(HttpURLConnection.HTTP_OK, httpHeaders, new ByteArrayInputStream(resources.get(uri).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void assertCheckpointsCommitted(String etag) {
+        assertEquals(Collections.emptyList(), getStagedUris());
+        assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject("SELECT count(*)::int FROM tf_staged_objects", Integer.class));
+        assertEquals(Collections.singletonList(etag), jdbcTemplate.queryForList("SELECT DISTINCT etag FROM tf_fetch_units", String.class));
+    }
+
+    private List<String> getStagedUris() {
+        return jdbcTemplate.queryForList("SELECT uri FROM tf_fetch_units WHERE staged_at IS NOT NULL ORDER BY uri", String.class);
+    }
+
+    private List<String> getContents() {
+        return jdbcTemplate.queryForList("SELECT d.content::text FROM tf_objects o JOIN tf_object_types ot ON ot.id = o.object_type_id " +
+                "JOIN tf_versions v ON v.id = ot.version_id AND v.current JOIN tf_documents d ON d.hash = o.content_hash ORDER BY 1", String.class);
+    }
+
+    private List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T transactional(T target) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionTemplate.getTransactionManager(), new AnnotationTransactionAttributeSource()));
+        return (T) proxyFactory.getProxy();
+    }
+
+    private List<TfVersion> readVersions() {
+        return jdbcTemplate.query("SELECT id, version, current, operation, time FROM tf_versions WHERE hub_id = ?", (resultSet, rowNum) -> {
+            TfVersion version = new TfVersion();
+            version.setId(resultSet.getLong("id"));
+            version.setVersion(resultSet.getLong("version"));
+            version.setCurrent(resultSet.getBoolean("current"));
+            version.setOperation(Operation.valueOf(resultSet.getString("operation")));
+            version.setTime(resultSet.getTimestamp("time"));
+            version.setDelta(false);
+            version.setMaterialized(true);
+            version.setHub(hub);
+            return version;
+        }, hub.getId());
+    }
+
+    private TfVersion saveVersion(TfVersion version) {
+        if (version.getId() == null) {
+            version.setId(jdbcTemplate.queryForObject("INSERT INTO tf_versions (hub_id, version, current, operation, time, delta, materialized) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING id", Long.class,
+                    hub.getId(), version.getVersion(), version.getCurrent(), version.getOperation().name(),
+                    new Timestamp(version.getTime().getTime()), version.getDelta(), version.getMaterialized()));
+        } else {
+            jdbcTemplate.update("UPDATE tf_versions SET current = ? WHERE id = ?", version.getCurrent(), version.getId());
+        }
+        return version;
+    }
+
+    private class TestDataProvider extends AbstractDataProvider {
+
+        @Override
+        protected void fetchData(String hubName) throws Exception {
+            saveIncrementally(hubName, resources.keySet(), (uri, inputStream, sink) -> {
+                for (String line : new String(inputStream.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                    sink.accept(SAMPLES, line);
+                }
+            });
+        }
+
+        @Override
+        public String getName() {
+            return "Test";
+        }
+
+        @Override
+        public String getFetchURI(String hubName) {
+            return "test";
+        }
+
+    }
+
+}
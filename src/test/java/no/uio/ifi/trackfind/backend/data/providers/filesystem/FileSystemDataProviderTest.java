@@ -0,0 +1,104 @@
+package no.uio.ifi.trackfind.backend.data.providers.filesystem;
+
+import no.uio.ifi.trackfind.backend.data.ingestion.IngestionTask;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileSystemDataProviderTest {
+
+    private static final String HUB = "hub";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestDataProvider dataProvider;
+    private File hubFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        dataProvider = new TestDataProvider();
+        ReflectionTestUtils.setField(dataProvider, "root", folder.getRoot().getAbsolutePath());
+        hubFolder = folder.newFolder(HUB);
+    }
+
+    @Test
+    public void straddlingRecordTest() throws IOException {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            records.add("{\"id\":\"sample" + i + "\",\"padding\":\"" + "x".repeat(i * 3) + "\"}");
+        }
+        Path file = write("samples.ndjson", String.join("\n", records) + "\n");
+        byte[] bytes = Files.readAllBytes(file);
+
+        // chunks are shorter than most of the records, so the nominal boundaries fall inside of them
+        List<Long> boundaries = dataProvider.split(file, 40);
+        assertTrue(boundaries.size() > 2);
+        assertEquals(bytes.length, (long) boundaries.get(boundaries.size() - 1));
+        List<String> objects = new ArrayList<>();
+        for (int i = 0; i < boundaries.size() - 1; i++) {
+            int start = boundaries.get(i).intValue();
+            int end = boundaries.get(i + 1).intValue();
+            if (start != 0) {
+                assertEquals('\n', bytes[start - 1]);
+            }
+            ByteBuffer chunk = ByteBuffer.wrap(bytes, start, end - start).slice();
+            dataProvider.readLines(chunk, "samples", (objectTypeName, content) -> objects.add(content));
+        }
+        assertEquals(records, objects);
+    }
+
+    @Test
+    public void missingFinalNewlineTest() throws Exception {
+        write("samples.ndjson", "{\"id\":\"sample1\"}\n\n{\"id\":\"sample2\"}");
+
+        assertEquals(Arrays.asList("samples:{\"id\":\"sample1\"}", "samples:{\"id\":\"sample2\"}"), fetch());
+    }
+
+    @Test
+    public void emptyFileTest() throws Exception {
+        write("samples.ndjson", "");
+
+        assertEquals(Collections.emptyList(), fetch());
+    }
+
+    private Path write(String fileName, String content) throws IOException {
+        return Files.write(new File(hubFolder, fileName).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> fetch() throws Exception {
+        dataProvider.fetchData(HUB);
+        return dataProvider.objects;
+    }
+
+    private static class TestDataProvider extends FileSystemDataProvider {
+
+        private final List<String> objects = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        protected void save(String hubName, Collection<IngestionTask> tasks) throws Exception {
+            for (IngestionTask task : tasks) {
+                task.run((objectTypeName, content) -> objects.add(objectTypeName + ":" + content));
+            }
+        }
+
+    }
+
+}
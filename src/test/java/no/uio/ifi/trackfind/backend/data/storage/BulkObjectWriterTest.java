@@ -0,0 +1,62 @@
+package no.uio.ifi.trackfind.backend.data.storage;
+
+import no.uio.ifi.trackfind.backend.AbstractDatabaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Failures of the flush are reported with the statement that actually failed.
+ */
+public class BulkObjectWriterTest extends AbstractDatabaseTest {
+
+    private Connection connection;
+    private BulkObjectWriter writer;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        writer = new BulkObjectWriter(connection, jdbcTemplate.getExceptionTranslator(), 10, () -> {
+        });
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+    @Test
+    public void invalidDocumentTest() {
+        String content = "{\"samples\": ";
+        writer.write(1, content, BulkObjectWriter.hash(content), null);
+        try {
+            writer.flush();
+            fail();
+        } catch (DataAccessException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("COPY tf_documents_staging"));
+        }
+    }
+
+    @Test
+    public void missingObjectTypeTest() {
+        String content = "{\"samples\": []}";
+        writer.write(1, content, BulkObjectWriter.hash(content), null);
+        try {
+            writer.flush();
+            fail();
+        } catch (DataIntegrityViolationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("INSERT INTO tf_objects"));
+        }
+    }
+
+}
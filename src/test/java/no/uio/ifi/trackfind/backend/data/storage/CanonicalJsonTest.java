@@ -0,0 +1,56 @@
+package no.uio.ifi.trackfind.backend.data.storage;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class CanonicalJsonTest {
+
+    // expected values are printed by PostgreSQL for the same input cast to jsonb and then to text
+
+    @Test
+    public void canonicalizeTest() {
+        assertEquals("{\"a\": [15.0, 0, 100, {}], \"b\": false, \"c\": [], \"ab\": null, \"bb\": 1}",
+                CanonicalJson.canonicalize("{\"bb\":1,\"a\":[1.50e1,-0,1e2,{}], \"c\":[], \"ab\":null, \"b\":true, \"b\":false}"));
+        assertEquals("{\"v\": 0.1000, \"x\": 0.0000001, \"y\": 0.0, \"z\": 100000000000000000000}",
+                CanonicalJson.canonicalize("{\"z\":1.0E20,\"y\":-0.0,\"x\":1e-7,\"v\":0.1000}"));
+        assertEquals("{\"zz\": 2, \"à\": 4, \"é\": 1, \"Ā\": 3}",
+                CanonicalJson.canonicalize("{\"é\":1,\"zz\":2,\"Ā\":3, \"à\":4}"));
+        assertEquals("[\"x\\u0001\\n/\\u001f\", \"\\\" \\\\ \\b\\f\\r\\t\"]",
+                CanonicalJson.canonicalize("[\"x\\u0001\\n\\/\\u001f\", \"\\\" \\\\ \\b\\f\\r\\t\"]"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void toJsonTest() {
+        Map<String, Object> value = new Gson().fromJson("{\"sample\": {\"id\": 1, \"tags\": [\"a\", \"b\"], \"empty\": null}, \"ratio\": 0.5}", Map.class);
+        assertEquals("{\"ratio\": 0.5, \"sample\": {\"id\": 1, \"tags\": [\"a\", \"b\"], \"empty\": null}}", CanonicalJson.toJson(value));
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("list", Arrays.asList("x", 2L, true));
+        map.put("a", null);
+        assertEquals("{\"a\": null, \"list\": [\"x\", 2, true]}", CanonicalJson.toJson(map));
+    }
+
+    @Test
+    public void toTextTest() {
+        // expected values are printed by jsonb_mapping_value for the same input
+        assertEquals("text", CanonicalJson.toText("text"));
+        assertEquals("1", CanonicalJson.toText(1.0));
+        assertEquals("0.0000001", CanonicalJson.toText(1e-7));
+        assertEquals("true", CanonicalJson.toText(true));
+        assertEquals("{\"b\": 1.5, \"aa\": \"x\"}", CanonicalJson.toText(new Gson().fromJson("{\"aa\": \"x\", \"b\": 1.50}", Map.class)));
+    }
+
+    @Test
+    public void hashTest() {
+        // md5('{"b": 1, "a": 2}'::jsonb::text)
+        assertEquals("5e4d14d82c320bafb2f1286fe486d1f8", BulkObjectWriter.hash(CanonicalJson.canonicalize("{\"b\":1,\"a\":2}")));
+        assertEquals(BulkObjectWriter.hash(CanonicalJson.canonicalize("{\"a\":2,  \"b\":1}")), BulkObjectWriter.hash(CanonicalJson.canonicalize("{\n  \"b\": 1,\n  \"a\": 2\n}")));
+    }
+
+}
@@ -0,0 +1,93 @@
+package no.uio.ifi.trackfind.backend.scripting;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Common tests of the scripting engines: the same mappings produce the same results in every engine,
+ * both for single datasets and for batches.
+ */
+public abstract class AbstractScriptingEngineTest {
+
+    public static final String SCRIPT = "source = JSON.parse(input)\n" +
+            "if source['sample']\n" +
+            "  source['sample']['test'] = source['sample']['id'] * 2\n" +
+            "return JSON.stringify(source)";
+    private static final String FAILING_SCRIPT = "source = JSON.parse(input)\n" +
+            "if source['sample']['id'] == 1\n" +
+            "  throw new Error('broken mapping')\n" +
+            "return JSON.stringify(source)";
+
+    protected ScriptingEngine scriptingEngine;
+
+    /**
+     * Generates datasets with sample IDs from 0 to size - 1.
+     *
+     * @param size Number of datasets.
+     * @return Datasets' contents.
+     */
+    public static List<String> contents(int size) {
+        List<String> contents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            contents.add("{\"sample\":{\"id\":" + i + "}}");
+        }
+        return contents;
+    }
+
+    protected abstract ScriptingEngine createScriptingEngine();
+
+    @Before
+    public void setUp() {
+        scriptingEngine = createScriptingEngine();
+    }
+
+    @Test
+    public void executeBatchTest() throws Exception {
+        List<String> results = scriptingEngine.executeBatch(SCRIPT, contents(3));
+        assertEquals(Arrays.asList("{\"sample\":{\"id\":0,\"test\":0}}", "{\"sample\":{\"id\":1,\"test\":2}}", "{\"sample\":{\"id\":2,\"test\":4}}"), results);
+        assertEquals(results.get(2), scriptingEngine.execute(SCRIPT, contents(3).get(2)));
+    }
+
+    @Test
+    public void scriptErrorTest() throws Exception {
+        // the second dataset breaks the mapping: the whole batch fails
+        try {
+            scriptingEngine.executeBatch(FAILING_SCRIPT, contents(3));
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("broken mapping"));
+        }
+        // the engine is returned to the pool and is still usable, also for the failed script
+        assertEquals(Collections.singletonList("{\"sample\":{\"id\":0}}"), scriptingEngine.executeBatch(FAILING_SCRIPT, contents(1)));
+        assertEquals("{\"sample\":{\"id\":2,\"test\":4}}", scriptingEngine.execute(SCRIPT, contents(3).get(2)));
+    }
+
+    @Test
+    public void nonStringResultTest() throws Exception {
+        assertResults(Arrays.asList("0", "2", "4"), "return JSON.parse(input)['sample']['id'] * 2");
+        assertResults(Arrays.asList("0", "0.5", "1"), "return JSON.parse(input)['sample']['id'] / 2");
+        assertResults(Arrays.asList("false", "true", "true"), "return JSON.parse(input)['sample']['id'] > 0");
+        assertResults(Arrays.asList("null", "null", "null"), "return null");
+        assertResults(Arrays.asList("null", "null", "null"), "return undefined");
+        // the object may be returned as is, without stringifying
+        assertResults(Arrays.asList("{\"id\":0}", "{\"id\":1}", "{\"id\":2}"), "return JSON.parse(input)['sample']");
+    }
+
+    private void assertResults(List<String> expected, String script) throws Exception {
+        List<String> contents = contents(3);
+        assertEquals(expected, scriptingEngine.executeBatch(script, contents));
+        for (int i = 0; i < contents.size(); i++) {
+            assertEquals(expected.get(i), scriptingEngine.execute(script, contents.get(i)));
+        }
+    }
+
+}
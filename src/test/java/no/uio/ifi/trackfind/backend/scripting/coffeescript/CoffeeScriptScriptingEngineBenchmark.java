@@ -0,0 +1,56 @@
+package no.uio.ifi.trackfind.backend.scripting.coffeescript;
+
+import no.uio.ifi.trackfind.backend.scripting.AbstractScriptingEngineTest;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares running the mappings script per document and in batches (one engine call per batch).
+ * Both benchmarks process the same number of documents per operation. Run with <code>main</code> from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoffeeScriptScriptingEngineBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private CoffeeScriptScriptingEngine scriptingEngine;
+    private List<String> contents;
+
+    @Setup
+    public void setUp() {
+        scriptingEngine = new CoffeeScriptScriptingEngine();
+        ReflectionTestUtils.setField(scriptingEngine, "input", "input");
+        contents = AbstractScriptingEngineTest.contents(BATCH_SIZE);
+    }
+
+    @Benchmark
+    public List<String> perDocument() throws Exception {
+        List<String> results = new ArrayList<>(contents.size());
+        for (String content : contents) {
+            results.add(scriptingEngine.execute(AbstractScriptingEngineTest.SCRIPT, content));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<String> batch() throws Exception {
+        return scriptingEngine.executeBatch(AbstractScriptingEngineTest.SCRIPT, contents);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CoffeeScriptScriptingEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,16 @@
+package no.uio.ifi.trackfind.backend.scripting.coffeescript;
+
+import no.uio.ifi.trackfind.backend.scripting.AbstractScriptingEngineTest;
+import no.uio.ifi.trackfind.backend.scripting.ScriptingEngine;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class CoffeeScriptScriptingEngineTest extends AbstractScriptingEngineTest {
+
+    @Override
+    protected ScriptingEngine createScriptingEngine() {
+        CoffeeScriptScriptingEngine coffeeScriptScriptingEngine = new CoffeeScriptScriptingEngine();
+        ReflectionTestUtils.setField(coffeeScriptScriptingEngine, "input", "input");
+        return coffeeScriptScriptingEngine;
+    }
+
+}
@@ -0,0 +1,38 @@
+package no.uio.ifi.trackfind.backend.scripting.graaljs;
+
+import no.uio.ifi.trackfind.backend.scripting.AbstractScriptingEngineTest;
+import no.uio.ifi.trackfind.backend.scripting.ScriptingEngine;
+import org.graalvm.polyglot.PolyglotException;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GraalJSScriptingEngineTest extends AbstractScriptingEngineTest {
+
+    @Override
+    protected ScriptingEngine createScriptingEngine() {
+        GraalJSScriptingEngine graalJSScriptingEngine = new GraalJSScriptingEngine();
+        ReflectionTestUtils.setField(graalJSScriptingEngine, "input", "input");
+        ReflectionTestUtils.setField(graalJSScriptingEngine, "coffeeScriptCompilerLocation", "com/netopyr/coffee4java/coffee-script.js");
+        return graalJSScriptingEngine;
+    }
+
+    @After
+    public void tearDown() {
+        ((GraalJSScriptingEngine) scriptingEngine).close();
+    }
+
+    @Test
+    public void guestExceptionTest() throws Exception {
+        try {
+            scriptingEngine.execute("throw new Error('broken mapping')", contents(1).get(0));
+            fail();
+        } catch (PolyglotException e) {
+            assertTrue(e.isGuestException());
+        }
+    }
+
+}
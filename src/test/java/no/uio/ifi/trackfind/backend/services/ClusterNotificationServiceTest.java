@@ -0,0 +1,114 @@
+package no.uio.ifi.trackfind.backend.services;
+
+import com.google.gson.Gson;
+import no.uio.ifi.trackfind.backend.AbstractDatabaseTest;
+import no.uio.ifi.trackfind.backend.events.DataReloadEvent;
+import no.uio.ifi.trackfind.backend.operations.Operation;
+import no.uio.ifi.trackfind.backend.services.impl.CacheService;
+import no.uio.ifi.trackfind.backend.services.impl.ClusterNotificationService;
+import no.uio.ifi.trackfind.backend.services.impl.MetamodelService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs two nodes (application contexts with their own caches) sharing the same database.
+ */
+public class ClusterNotificationServiceTest extends AbstractDatabaseTest {
+
+    private static final String CHANNEL = "test_events";
+    private static final long TIMEOUT = 10000;
+
+    private AnnotationConfigApplicationContext sender;
+    private AnnotationConfigApplicationContext receiver;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        sender = startNode();
+        receiver = startNode();
+        // notifications sent before the listener has subscribed are not delivered
+        awaitListeners(2);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        sender.close();
+        receiver.close();
+        awaitListeners(0);
+    }
+
+    @Test
+    public void evictionTest() {
+        sender.getBean(ClusterNotificationService.class).publishEviction("repository", "hub", "metamodel-tree");
+
+        verify(receiver.getBean(CacheService.class), timeout(TIMEOUT)).evictHub("repository", "hub", "metamodel-tree");
+        verify(receiver.getBean(MetamodelService.class), never()).getObjectTypes(anyString(), anyString());
+        verify(sender.getBean(CacheService.class), after(1000).never()).evictHub(anyString(), anyString(), any());
+    }
+
+    @Test
+    public void reloadTest() {
+        sender.getBean(ClusterNotificationService.class).publishReload(new DataReloadEvent("repository", "hub", Operation.CRAWLING));
+
+        verify(receiver.getBean(CacheService.class), timeout(TIMEOUT)).evictHub("repository", "hub", CacheService.HUB_SCOPED_CACHES);
+        verify(receiver.getBean(MetamodelService.class), timeout(TIMEOUT)).getObjectTypes("repository", "hub");
+        // the sending node has already evicted its caches, it only warms them up
+        verify(sender.getBean(MetamodelService.class), timeout(TIMEOUT)).getObjectTypes("repository", "hub");
+        verify(sender.getBean(CacheService.class), never()).evictHub(anyString(), anyString(), any());
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    private void awaitListeners(int listeners) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (jdbcTemplate.queryForObject("SELECT count(*)::int FROM pg_stat_activity WHERE query = ?", Integer.class, "LISTEN " + CHANNEL) != listeners) {
+            assertTrue("Nodes are not ready", System.currentTimeMillis() < deadline);
+            Thread.sleep(100);
+        }
+    }
+
+    private AnnotationConfigApplicationContext startNode() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("trackfind.cluster.enabled", true);
+        properties.put("trackfind.cluster.channel", CHANNEL);
+        properties.put("spring.datasource.url", databaseUrl);
+        properties.put("spring.datasource.username", databaseUsername);
+        properties.put("spring.datasource.password", databasePassword);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+        // mocks are registered as they are: their autowired setters are not called
+        context.getBeanFactory().registerSingleton("dataSource", dataSource);
+        context.getBeanFactory().registerSingleton("cacheService", mock(CacheService.class));
+        context.getBeanFactory().registerSingleton("metamodelService", mock(MetamodelService.class));
+        context.getBeanFactory().registerSingleton("gson", new Gson());
+        context.register(NodeConfiguration.class, ClusterNotificationService.class);
+        context.refresh();
+        return context;
+    }
+
+    static class NodeConfiguration {
+
+        @Bean(destroyMethod = "shutdownNow")
+        public ExecutorService notificationPool() {
+            return Executors.newSingleThreadExecutor();
+        }
+
+    }
+
+}
@@ -0,0 +1,138 @@
+package no.uio.ifi.trackfind.backend.services;
+
+import no.uio.ifi.trackfind.backend.AbstractDatabaseTest;
+import no.uio.ifi.trackfind.backend.operations.Operation;
+import no.uio.ifi.trackfind.backend.services.impl.CrawlSchedulingService;
+import no.uio.ifi.trackfind.backend.services.impl.JobService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Schedules are checked at fixed moments (using fixed clock), scheduled runs are captured by the mocked scheduler.
+ */
+public class CrawlSchedulingServiceTest extends AbstractDatabaseTest {
+
+    private static final String HOURLY = "0 0 * * * *";
+    private static final long CHECK_INTERVAL = 60000;
+    private static final long JITTER = 600000;
+    private static final Instant NOW = Instant.parse("2026-01-01T10:00:30Z");
+
+    private final List<Runnable> submissions = new ArrayList<>();
+    private final List<Instant> submissionTimes = new ArrayList<>();
+
+    private CrawlSchedulingService crawlSchedulingService;
+    private JobService jobService;
+    private Runnable check;
+
+    @Before
+    public void setUp() {
+        jobService = mock(JobService.class);
+        TaskScheduler taskScheduler = mock(TaskScheduler.class);
+        when(taskScheduler.schedule(any(Runnable.class), any(Instant.class))).then(invocation -> {
+            submissions.add(invocation.getArgument(0));
+            submissionTimes.add(invocation.getArgument(1));
+            return null;
+        });
+
+        crawlSchedulingService = new CrawlSchedulingService();
+        crawlSchedulingService.setJdbcTemplate(jdbcTemplate);
+        crawlSchedulingService.setJobService(jobService);
+        crawlSchedulingService.setTaskScheduler(taskScheduler);
+        crawlSchedulingService.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+        ReflectionTestUtils.setField(crawlSchedulingService, "checkInterval", CHECK_INTERVAL);
+        ReflectionTestUtils.setField(crawlSchedulingService, "jitter", JITTER);
+
+        crawlSchedulingService.onApplicationEvent(null);
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).scheduleWithFixedDelay(captor.capture(), any(Duration.class));
+        check = captor.getValue();
+    }
+
+    @Test
+    public void cronTest() {
+        insertHub("due", HOURLY, NOW.minus(Duration.ofMinutes(30)));
+        insertHub("done", HOURLY, NOW.minus(Duration.ofSeconds(20)));
+        insertHub("new", HOURLY, null);
+        insertHub("invalid", "every hour", null);
+        insertHub("unscheduled", null, null);
+
+        check.run();
+        submissions.forEach(Runnable::run);
+        assertEquals(2, submissions.size());
+        verify(jobService).submit("Test", "due", Operation.CRAWLING, JobService.SCHEDULED_PRIORITY);
+        verify(jobService).submit("Test", "new", Operation.CRAWLING, JobService.SCHEDULED_PRIORITY);
+        assertEquals(Collections.singletonList(new Timestamp(NOW.toEpochMilli())),
+                jdbcTemplate.queryForList("SELECT DISTINCT last_scheduled_crawl FROM tf_hubs WHERE name IN ('due', 'new')", Timestamp.class));
+
+        // runs are claimed: checking again at the same moment schedules nothing
+        check.run();
+        assertEquals(2, submissions.size());
+
+        // the next hour is due
+        crawlSchedulingService.setClock(Clock.fixed(NOW.plus(Duration.ofHours(1)), ZoneOffset.UTC));
+        check.run();
+        assertEquals(5, submissions.size());
+    }
+
+    @Test
+    public void activeJobTest() {
+        insertHub("curated", HOURLY, null);
+        insertHub("crawled", HOURLY, null);
+        when(jobService.isActive("Test", "curated", Operation.CURATION)).thenReturn(true);
+
+        check.run();
+        submissions.forEach(Runnable::run);
+        assertEquals(2, submissions.size());
+        // the curated hub is skipped, the crawled one is submitted (and coalesced with the queued job by JobService)
+        verify(jobService, never()).submit("Test", "curated", Operation.CRAWLING, JobService.SCHEDULED_PRIORITY);
+        verify(jobService).submit("Test", "crawled", Operation.CRAWLING, JobService.SCHEDULED_PRIORITY);
+    }
+
+    @Test
+    public void jitterTest() {
+        for (int i = 0; i < 20; i++) {
+            insertHub("hub" + i, HOURLY, null);
+        }
+
+        check.run();
+        assertEquals(20, submissionTimes.size());
+        assertTrue(submissionTimes.stream().allMatch(t -> !t.isBefore(NOW) && t.isBefore(NOW.plusMillis(JITTER))));
+        // submissions are spread over the jitter window
+        assertTrue(submissionTimes.stream().distinct().count() > 1);
+        verify(jobService, never()).submit(anyString(), anyString(), any(), anyInt());
+
+        ReflectionTestUtils.setField(crawlSchedulingService, "jitter", 0L);
+        crawlSchedulingService.setClock(Clock.fixed(NOW.plus(Duration.ofHours(1)), ZoneOffset.UTC));
+        check.run();
+        assertEquals(Collections.singleton(NOW.plus(Duration.ofHours(1))), submissionTimes.subList(20, 40).stream().collect(Collectors.toSet()));
+    }
+
+    private void insertHub(String name, String crawlSchedule, Instant lastScheduledCrawl) {
+        jdbcTemplate.update("INSERT INTO tf_hubs (repository, name, uri, crawl_schedule, last_scheduled_crawl) VALUES (?, ?, ?, ?, ?)",
+                "Test", name, name, crawlSchedule, lastScheduledCrawl == null ? null : new Timestamp(lastScheduledCrawl.toEpochMilli()));
+    }
+
+}
@@ -0,0 +1,217 @@
+package no.uio.ifi.trackfind.backend.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.uio.ifi.trackfind.backend.services.impl.HttpService;
+import no.uio.ifi.trackfind.backend.services.impl.ResponseArchiveService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs requests against embedded HTTP(S) server. Requests are sent to <code>localhost</code>, one at a time.
+ */
+public class HttpServiceTest {
+
+    private static final String PROVIDER = "Test";
+    private static final String INSECURE_PROVIDER = "Insecure";
+    private static final String HOST = "localhost";
+    private static final String BODY = "{\"samples\": [\"a\", \"b\", \"c\"]}";
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private HttpService httpService;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(HOST, 0), 0);
+        server.createContext("/plain", exchange -> respond(exchange, 200, null));
+        server.createContext("/gzip", exchange -> respond(exchange, 200, "gzip"));
+        server.createContext("/deflate", exchange -> respond(exchange, 200, "deflate"));
+        server.createContext("/missing", exchange -> respond(exchange, 404, null));
+        server.createContext("/unavailable", exchange -> respond(exchange, 503, null));
+        server.start();
+
+        httpService = new HttpService();
+        httpService.setResponseArchiveService(new ResponseArchiveService(ResponseArchiveService.Mode.OFF, folder.getRoot().getAbsolutePath()));
+        httpService.setMeterRegistry(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(httpService, "connectTimeout", 5000);
+        ReflectionTestUtils.setField(httpService, "requestTimeout", 5000);
+        ReflectionTestUtils.setField(httpService, "maxRequestsPerHost", 1);
+        ReflectionTestUtils.setField(httpService, "permitTimeout", 1000);
+        ReflectionTestUtils.setField(httpService, "insecureProviders", Collections.singleton(INSECURE_PROVIDER));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void permitReleasedOnSuccessTest() throws IOException {
+        try (HttpService.Response response = httpService.get(PROVIDER, getUri(server, "/plain"), Collections.emptyMap())) {
+            assertEquals(200, response.getStatusCode());
+            // the permit is held until the body is closed
+            assertEquals(0, getAvailablePermits());
+            assertEquals(BODY, read(response.getBody()));
+        }
+        assertEquals(1, getAvailablePermits());
+    }
+
+    @Test
+    public void permitReleasedOnErrorStatusTest() throws IOException {
+        try {
+            httpService.get(PROVIDER, getUri(server, "/missing"), Collections.emptyMap());
+            fail();
+        } catch (HttpClientErrorException e) {
+            assertEquals(404, e.getRawStatusCode());
+        }
+        assertEquals(1, getAvailablePermits());
+
+        try {
+            httpService.get(PROVIDER, getUri(server, "/unavailable"), Collections.emptyMap());
+            fail();
+        } catch (HttpServerErrorException e) {
+            assertEquals(503, e.getRawStatusCode());
+        }
+        assertEquals(1, getAvailablePermits());
+    }
+
+    @Test
+    public void permitReleasedOnIOExceptionTest() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            httpService.get(PROVIDER, "http://" + HOST + ":" + port + "/plain", Collections.emptyMap());
+            fail();
+        } catch (IOException e) {
+            // connection refused
+        }
+        assertEquals(1, getAvailablePermits());
+
+        // the only permit is free: the next request doesn't time out waiting for it
+        try (InputStream body = httpService.openStream(PROVIDER, getUri(server, "/plain"))) {
+            assertEquals(BODY, read(body));
+        }
+    }
+
+    @Test
+    public void decodingTest() throws IOException {
+        for (String encoding : new String[]{"gzip", "deflate"}) {
+            try (HttpService.Response response = httpService.get(PROVIDER, getUri(server, "/" + encoding), Collections.emptyMap())) {
+                assertEquals(encoding, response.getHeader("Content-Encoding"));
+                assertEquals(BODY, read(response.getBody()));
+            }
+        }
+    }
+
+    @Test
+    public void insecureProviderTest() throws Exception {
+        HttpsServer httpsServer = HttpsServer.create(new InetSocketAddress(HOST, 0), 0);
+        httpsServer.setHttpsConfigurator(new HttpsConfigurator(createSelfSignedContext()));
+        httpsServer.createContext("/plain", exchange -> respond(exchange, 200, null));
+        httpsServer.start();
+        try {
+            String uri = getUri(httpsServer, "/plain");
+            try (InputStream body = httpService.openStream(INSECURE_PROVIDER, uri)) {
+                assertEquals(BODY, read(body));
+            }
+            try {
+                httpService.openStream(PROVIDER, uri).close();
+                fail();
+            } catch (SSLHandshakeException e) {
+                // self-signed certificate is not trusted by other providers
+            }
+            assertEquals(1, getAvailablePermits());
+        } finally {
+            httpsServer.stop(0);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String encoding) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (OutputStream outputStream = "gzip".equals(encoding) ? new GZIPOutputStream(content)
+                : "deflate".equals(encoding) ? new DeflaterOutputStream(content) : content) {
+            outputStream.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        if (encoding != null) {
+            exchange.getResponseHeaders().add("Content-Encoding", encoding);
+        }
+        exchange.sendResponseHeaders(status, content.size());
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            content.writeTo(responseBody);
+        }
+    }
+
+    private SSLContext createSelfSignedContext() throws Exception {
+        File keyStoreFile = new File(folder.getRoot(), "keystore.p12");
+        String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-keyalg", "RSA", "-alias", HOST, "-dname", "CN=" + HOST,
+                "-validity", "1", "-storetype", "PKCS12", "-keystore", keyStoreFile.getAbsolutePath(),
+                "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+                .redirectErrorStream(true)
+                .start();
+        assertEquals(new String(process.getInputStream().readAllBytes()), 0, process.waitFor());
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream inputStream = new FileInputStream(keyStoreFile)) {
+            keyStore.load(inputStream, PASSWORD);
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    private String getUri(HttpServer httpServer, String path) {
+        String scheme = httpServer instanceof HttpsServer ? "https" : "http";
+        return scheme + "://" + HOST + ":" + httpServer.getAddress().getPort() + path;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int getAvailablePermits() {
+        Map<String, Semaphore> hostPermits = (Map<String, Semaphore>) ReflectionTestUtils.getField(httpService, "hostPermits");
+        return hostPermits.get(HOST).availablePermits();
+    }
+
+    private String read(InputStream inputStream) throws IOException {
+        return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,195 @@
+package no.uio.ifi.trackfind.backend.services;
+
+import no.uio.ifi.trackfind.backend.configuration.JobsProperties;
+import no.uio.ifi.trackfind.backend.data.providers.DataProvider;
+import no.uio.ifi.trackfind.backend.jobs.Job;
+import no.uio.ifi.trackfind.backend.jobs.JobStatus;
+import no.uio.ifi.trackfind.backend.operations.Operation;
+import no.uio.ifi.trackfind.backend.services.impl.JobService;
+import no.uio.ifi.trackfind.backend.services.impl.TrackFindService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Jobs are started by the mocked pool only when the test runs them, retries are scheduled by the mocked scheduler.
+ */
+public class JobServiceTest {
+
+    private static final String REPOSITORY = "Test";
+    private static final String OTHER_REPOSITORY = "Other";
+    private static final long BACKOFF = 60000;
+    private static final long MAX_BACKOFF = 100000;
+
+    private final Map<Long, Runnable> startedJobs = new HashMap<>();
+    private final List<Runnable> retries = new ArrayList<>();
+    private final List<Long> retryDelays = new ArrayList<>();
+
+    private JobService jobService;
+    private DataProvider dataProvider;
+
+    @Before
+    public void setUp() {
+        dataProvider = mock(DataProvider.class);
+        TrackFindService trackFindService = mock(TrackFindService.class);
+        when(trackFindService.getDataProvider(anyString())).thenReturn(dataProvider);
+
+        ExecutorService executorService = mock(ExecutorService.class);
+        when(executorService.submit(any(Runnable.class))).then(invocation -> {
+            jobService.getJobs().stream()
+                    .filter(j -> JobStatus.RUNNING.equals(j.getStatus()) && !startedJobs.containsKey(j.getId()))
+                    .forEach(j -> startedJobs.put(j.getId(), invocation.getArgument(0)));
+            return null;
+        });
+        TaskScheduler taskScheduler = mock(TaskScheduler.class);
+        when(taskScheduler.schedule(any(Runnable.class), any(Instant.class))).then(invocation -> {
+            retries.add(invocation.getArgument(0));
+            retryDelays.add(invocation.<Instant>getArgument(1).toEpochMilli() - System.currentTimeMillis());
+            return null;
+        });
+
+        JobsProperties jobsProperties = new JobsProperties();
+        // keys set from the environment are lower-cased
+        jobsProperties.setProviderParallelismOverrides(Collections.singletonMap(OTHER_REPOSITORY.toLowerCase(), 2));
+
+        jobService = new JobService();
+        jobService.setJobsProperties(jobsProperties);
+        jobService.setTrackFindService(trackFindService);
+        jobService.setExecutorService(executorService);
+        jobService.setTaskScheduler(taskScheduler);
+        ReflectionTestUtils.setField(jobService, "parallelism", 3);
+        ReflectionTestUtils.setField(jobService, "providerParallelism", 1);
+        ReflectionTestUtils.setField(jobService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(jobService, "backoff", BACKOFF);
+        ReflectionTestUtils.setField(jobService, "maxBackoff", MAX_BACKOFF);
+    }
+
+    @Test
+    public void priorityTest() {
+        Job first = crawl(REPOSITORY, "first", JobService.SCHEDULED_PRIORITY);
+        Job scheduled = crawl(REPOSITORY, "scheduled", JobService.SCHEDULED_PRIORITY);
+        Job interactive = crawl(REPOSITORY, "interactive", JobService.INTERACTIVE_PRIORITY);
+        assertEquals(Collections.singletonList(first), getRunning());
+
+        finish(first);
+        assertEquals(Collections.singletonList(interactive), getRunning());
+        finish(interactive);
+        assertEquals(Collections.singletonList(scheduled), getRunning());
+    }
+
+    @Test
+    public void parallelismTest() {
+        Job test1 = crawl(REPOSITORY, "hub1", JobService.SCHEDULED_PRIORITY);
+        crawl(REPOSITORY, "hub2", JobService.SCHEDULED_PRIORITY);
+        Job other1 = crawl(OTHER_REPOSITORY, "hub1", JobService.SCHEDULED_PRIORITY);
+        Job other2 = crawl(OTHER_REPOSITORY, "hub2", JobService.SCHEDULED_PRIORITY);
+        Job other3 = crawl(OTHER_REPOSITORY, "hub3", JobService.SCHEDULED_PRIORITY);
+
+        // one job of the provider without override, two of the overridden one, three in total
+        assertEquals(Arrays.asList(test1, other1, other2), getRunning());
+        finish(other1);
+        assertEquals(Arrays.asList(test1, other2, other3), getRunning());
+    }
+
+    @Test
+    public void oneJobPerHubTest() {
+        Job crawling = crawl(OTHER_REPOSITORY, "hub", JobService.SCHEDULED_PRIORITY);
+        Job curation = jobService.submit(OTHER_REPOSITORY, "hub", Operation.CURATION, JobService.INTERACTIVE_PRIORITY);
+        assertEquals(Collections.singletonList(crawling), getRunning());
+
+        finish(crawling);
+        assertEquals(Collections.singletonList(curation), getRunning());
+    }
+
+    @Test
+    public void coalescingTest() {
+        Job running = crawl(REPOSITORY, "hub", JobService.SCHEDULED_PRIORITY);
+        Job queued = crawl(REPOSITORY, "other", JobService.SCHEDULED_PRIORITY);
+        assertSame(running, crawl(REPOSITORY, "hub", JobService.INTERACTIVE_PRIORITY));
+        assertSame(queued, crawl(REPOSITORY, "other", JobService.INTERACTIVE_PRIORITY));
+
+        doThrow(new RuntimeException(new IOException("Connection reset"))).when(dataProvider).crawlRemoteRepository("hub");
+        finish(running);
+        assertEquals(JobStatus.RETRYING, running.getStatus());
+        assertSame(running, crawl(REPOSITORY, "hub", JobService.INTERACTIVE_PRIORITY));
+
+        // the retried job is the only one for the hub
+        finish(queued);
+        retries.get(0).run();
+        assertEquals(Collections.singletonList(running), getRunning());
+        assertEquals(2, jobService.getJobs().size());
+    }
+
+    @Test
+    public void retryTest() {
+        doThrow(new RuntimeException(new IOException("Connection reset"))).when(dataProvider).crawlRemoteRepository("hub");
+        Job job = crawl(REPOSITORY, "hub", JobService.SCHEDULED_PRIORITY);
+
+        finish(job);
+        assertEquals(JobStatus.RETRYING, job.getStatus());
+        retries.get(0).run();
+        finish(job);
+        assertEquals(JobStatus.RETRYING, job.getStatus());
+        retries.get(1).run();
+        finish(job);
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertEquals(3, job.getAttempts());
+
+        // backoff is doubled and capped
+        assertEquals(2, retryDelays.size());
+        assertTrue(retryDelays.get(0) > BACKOFF - 5000 && retryDelays.get(0) <= BACKOFF);
+        assertTrue(retryDelays.get(1) > MAX_BACKOFF - 5000 && retryDelays.get(1) <= MAX_BACKOFF);
+    }
+
+    @Test
+    public void failureClassificationTest() {
+        assertEquals(JobStatus.RETRYING, fail("server-error", new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE)));
+        assertEquals(JobStatus.RETRYING, fail("too-many-requests", new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)));
+        assertEquals(JobStatus.FAILED, fail("client-error", new HttpClientErrorException(HttpStatus.NOT_FOUND)));
+        assertEquals(JobStatus.FAILED, fail("not-found", new RuntimeException(new FileNotFoundException("missing"))));
+        assertEquals(JobStatus.FAILED, fail("bug", new IllegalStateException("bug")));
+    }
+
+    private JobStatus fail(String hub, RuntimeException failure) {
+        doThrow(failure).when(dataProvider).crawlRemoteRepository(hub);
+        Job job = crawl(REPOSITORY, hub, JobService.SCHEDULED_PRIORITY);
+        finish(job);
+        return job.getStatus();
+    }
+
+    private Job crawl(String repository, String hub, int priority) {
+        return jobService.submit(repository, hub, Operation.CRAWLING, priority);
+    }
+
+    private void finish(Job job) {
+        startedJobs.remove(job.getId()).run();
+    }
+
+    private List<Job> getRunning() {
+        return jobService.getJobs().stream()
+                .filter(j -> JobStatus.RUNNING.equals(j.getStatus()))
+                .sorted(Comparator.comparingLong(Job::getId))
+                .collect(Collectors.toList());
+    }
+
+}
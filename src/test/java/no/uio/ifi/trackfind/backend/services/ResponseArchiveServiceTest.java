@@ -0,0 +1,119 @@
+package no.uio.ifi.trackfind.backend.services;
+
+import no.uio.ifi.trackfind.backend.services.impl.HttpService;
+import no.uio.ifi.trackfind.backend.services.impl.ResponseArchiveService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResponseArchiveServiceTest {
+
+    private static final String PROVIDER = "Test";
+    private static final String URI = "https://example.org/hub.json";
+    private static final String BODY = "{\"samples\": [\"a\", \"b\", \"c\"]}";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ResponseArchiveService recorder;
+    private ResponseArchiveService player;
+
+    @Before
+    public void setUp() throws IOException {
+        String directory = folder.getRoot().getAbsolutePath();
+        recorder = new ResponseArchiveService(ResponseArchiveService.Mode.RECORD, directory);
+        player = new ResponseArchiveService(ResponseArchiveService.Mode.REPLAY, directory);
+    }
+
+    @Test
+    public void partlyReadBodyTest() throws IOException {
+        try (HttpService.Response response = recorder.record(PROVIDER, URI, response(BODY))) {
+            // the consumer stops reading early, the remainder is archived on close
+            assertEquals('{', response.getBody().read());
+            assertEquals(5, response.getBody().readNBytes(5).length);
+        }
+
+        try (HttpService.Response response = player.replay(PROVIDER, URI, Collections.emptyMap())) {
+            assertEquals(HttpURLConnection.HTTP_OK, response.getStatusCode());
+            assertEquals(ETAG, response.getHeader("ETag"));
+            assertEquals(LAST_MODIFIED, response.getHeader("Last-Modified"));
+            assertEquals(BODY, new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void notModifiedTest() throws IOException {
+        record(URI, BODY);
+
+        try (HttpService.Response response = player.replay(PROVIDER, URI, Collections.singletonMap("If-None-Match", ETAG))) {
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, response.getStatusCode());
+            assertEquals(0, response.getBody().readAllBytes().length);
+        }
+        try (HttpService.Response response = player.replay(PROVIDER, URI, Collections.singletonMap("If-Modified-Since", LAST_MODIFIED))) {
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, response.getStatusCode());
+        }
+        try (HttpService.Response response = player.replay(PROVIDER, URI, Collections.singletonMap("If-None-Match", "\"v2\""))) {
+            assertEquals(HttpURLConnection.HTTP_OK, response.getStatusCode());
+        }
+    }
+
+    @Test
+    public void identicalResponsesTest() throws IOException {
+        String otherUri = URI + "?page=2";
+        record(URI, BODY);
+        record(otherUri, BODY);
+
+        // the content is stored once, both URIs are served from it
+        try (Stream<Path> blobs = Files.walk(folder.getRoot().toPath().resolve("blobs"))) {
+            assertEquals(1, blobs.filter(Files::isRegularFile).count());
+        }
+        try (HttpService.Response response = player.replay(PROVIDER, otherUri, Collections.emptyMap())) {
+            assertEquals(BODY, new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+        }
+        try (HttpService.Response response = player.replay(PROVIDER, URI, Collections.emptyMap())) {
+            assertEquals(BODY, new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void notArchivedTest() throws IOException {
+        record(URI, BODY);
+
+        player.replay(PROVIDER, URI + "?page=2", Collections.emptyMap());
+    }
+
+    private void record(String uri, String body) throws IOException {
+        try (HttpService.Response response = recorder.record(PROVIDER, uri, response(body))) {
+            response.getBody().readAllBytes();
+        }
+    }
+
+    private HttpService.Response response(String body) {
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("ETag", Collections.singletonList(ETAG));
+        headers.put("Last-Modified", Collections.singletonList(LAST_MODIFIED));
+        InputStream content = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        return new HttpService.Response(HttpURLConnection.HTTP_OK, HttpHeaders.of(headers, (name, value) -> true), content);
+    }
+
+}
@@ -4,14 +4,26 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import no.uio.ifi.trackfind.backend.services.impl.SchemaService;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileCopyUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(SpringRunner.class)
 public class SchemaServiceTest {
@@ -480,6 +492,9 @@ public class SchemaServiceTest {
                     "  ]\n" +
                     "}";
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private Gson gson;
 
     private SchemaService schemaService;
@@ -500,4 +515,32 @@ public class SchemaServiceTest {
         assertEquals(ATTRIBUTES, actual);
     }
 
+    @Test
+    public void getObjectSchemaTest() {
+        assertTrue(schemaService.getObjectSchema("experiments").isPresent());
+        assertFalse(schemaService.getObjectSchema("unknown").isPresent());
+    }
+
+    @Test
+    public void getSchemaVersionTest() throws IOException {
+        File rootSchema = copySchema("test.schema.json");
+        File referencedSchema = copySchema("samples.schema.json");
+        String rootSchemaContent = Files.readString(rootSchema.toPath());
+        String location = rootSchema.toURI().toString();
+
+        String version = new SchemaService(location, "->").getSchemaVersion();
+        assertNotEquals(DigestUtils.md5DigestAsHex(rootSchemaContent.getBytes(StandardCharsets.UTF_8)), version);
+        assertEquals(version, new SchemaService(location, "->").getSchemaVersion());
+
+        // only the referenced schema is changed
+        Files.writeString(referencedSchema.toPath(), Files.readString(referencedSchema.toPath()).replace("Sample ID", "ID of the sample"));
+        assertNotEquals(version, new SchemaService(location, "->").getSchemaVersion());
+    }
+
+    private File copySchema(String name) throws IOException {
+        File file = new File(temporaryFolder.getRoot(), name);
+        FileCopyUtils.copy(new ClassPathResource("schemas/" + name).getInputStream().readAllBytes(), file);
+        return file;
+    }
+
 }
@@ -0,0 +1,140 @@
+package no.uio.ifi.trackfind.backend.services;
+
+import com.google.gson.Gson;
+import no.uio.ifi.trackfind.backend.AbstractDatabaseTest;
+import no.uio.ifi.trackfind.backend.pojo.TfObjectType;
+import no.uio.ifi.trackfind.backend.pojo.TfVersion;
+import no.uio.ifi.trackfind.backend.pojo.ValidationReport;
+import no.uio.ifi.trackfind.backend.repositories.VersionRepository;
+import no.uio.ifi.trackfind.backend.services.impl.MetamodelService;
+import no.uio.ifi.trackfind.backend.services.impl.SchemaService;
+import no.uio.ifi.trackfind.backend.services.impl.SchemaValidationService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SchemaValidationServiceTest extends AbstractDatabaseTest {
+
+    private final Gson gson = new Gson();
+    private final List<TfObjectType> objectTypes = new ArrayList<>();
+
+    private SchemaValidationService validationService;
+    private TfVersion version;
+
+    @Before
+    public void setUp() throws IOException {
+        SchemaService schemaService = new SchemaService(new ClassPathResource("schemas/test.schema.json").getURL().toString(), "->");
+        MetamodelService metamodelService = mock(MetamodelService.class);
+        when(metamodelService.getObjectTypes("Test", "hub")).thenReturn(objectTypes);
+
+        validationService = new SchemaValidationService();
+        validationService.setSchemaService(schemaService);
+        validationService.setJdbcTemplate(jdbcTemplate);
+        validationService.setMetamodelService(metamodelService);
+        validationService.setVersionRepository(mock(VersionRepository.class));
+        validationService.setValidationPool(ForkJoinPool.commonPool());
+        validationService.setGson(gson);
+        ReflectionTestUtils.setField(validationService, "chunkSize", 2);
+        ReflectionTestUtils.setField(validationService, "maxErrors", 100);
+
+        Long hubId = jdbcTemplate.queryForObject("INSERT INTO tf_hubs (repository, name, uri) VALUES ('Test', 'hub', 'test') RETURNING id", Long.class);
+        version = new TfVersion();
+        version.setId(jdbcTemplate.queryForObject("INSERT INTO tf_versions (hub_id, version, current, operation, time) VALUES (?, 1, TRUE, 'CRAWLING', now()) RETURNING id",
+                Long.class, hubId));
+    }
+
+    @Test
+    public void validateTest() {
+        createObjectType("samples", "{\"id\": \"a\"}", "{\"id\": 1}", "{}");
+
+        ValidationReport report = validate();
+        assertEquals(3, report.getDocuments());
+        assertEquals(3, report.getCheckedDocuments());
+        assertEquals(2, report.getInvalidDocuments());
+        assertEquals(2, report.getErrors().size());
+        assertEquals(0, report.getOmittedErrors());
+        assertTrue(report.getErrors().stream().allMatch(e -> "samples".equals(e.getObjectType()) && e.getContentHash() != null));
+        assertFalse(report.isValid());
+    }
+
+    @Test
+    public void maxErrorsTest() {
+        ReflectionTestUtils.setField(validationService, "maxErrors", 1);
+        createObjectType("samples", "{\"id\": \"a\"}", "{\"id\": 1}", "{}");
+
+        ValidationReport report = validate();
+        assertEquals(2, report.getInvalidDocuments());
+        assertEquals(1, report.getErrors().size());
+        assertEquals(1, report.getOmittedErrors());
+        assertFalse(report.isValid());
+    }
+
+    @Test
+    public void undefinedCategoryTest() {
+        createObjectType("samples", "{\"id\": \"a\"}");
+        createObjectType("unknown", "{\"id\": \"a\"}");
+
+        ValidationReport report = validate();
+        assertEquals(1, report.getDocuments());
+        assertEquals(0, report.getInvalidDocuments());
+        assertEquals(1, report.getErrors().size());
+        assertEquals("unknown", report.getErrors().get(0).getObjectType());
+        assertFalse(report.isValid());
+        assertFalse(version.getValidation());
+    }
+
+    @Test
+    public void validateTwiceTest() {
+        TfObjectType samples = createObjectType("samples", "{\"id\": \"a\"}", "{\"id\": \"b\"}", "{\"id\": 1}");
+
+        ValidationReport report = validate();
+        assertEquals(3, report.getDocuments());
+        assertEquals(3, report.getCheckedDocuments());
+        assertEquals(1, report.getInvalidDocuments());
+        assertFalse(version.getValidation());
+
+        // results are taken from the previous run
+        report = validate();
+        assertEquals(3, report.getDocuments());
+        assertEquals(0, report.getCheckedDocuments());
+        assertEquals(1, report.getInvalidDocuments());
+        assertFalse(version.getValidation());
+
+        // the invalid object is removed: the hub is valid, though nothing is validated again
+        jdbcTemplate.update("DELETE FROM tf_objects WHERE object_type_id = ? AND content_hash = tf_content_hash('{\"id\": 1}'::jsonb)", samples.getId());
+        report = validate();
+        assertEquals(2, report.getDocuments());
+        assertEquals(0, report.getCheckedDocuments());
+        assertTrue(version.getValidation());
+    }
+
+    private ValidationReport validate() {
+        return gson.fromJson(validationService.validate("Test", "hub"), ValidationReport.class);
+    }
+
+    private TfObjectType createObjectType(String name, String... contents) {
+        TfObjectType objectType = new TfObjectType();
+        objectType.setName(name);
+        objectType.setVersion(version);
+        objectType.setId(jdbcTemplate.queryForObject("INSERT INTO tf_object_types (name, version_id) VALUES (?, ?) RETURNING id", Long.class, name, version.getId()));
+        for (String content : contents) {
+            jdbcTemplate.update("INSERT INTO tf_documents (hash, content) VALUES (tf_content_hash(?::jsonb), ?::jsonb) ON CONFLICT DO NOTHING", content, content);
+            jdbcTemplate.update("INSERT INTO tf_objects (object_type_id, content_hash) VALUES (?, tf_content_hash(?::jsonb))", objectType.getId(), content);
+        }
+        objectTypes.add(objectType);
+        return objectType;
+    }
+
+}